@@ -15,7 +15,7 @@ Write-Host ""
 Write-Host "Next steps:" -ForegroundColor Cyan
 Write-Host "1. Get your Lichess bot token from: https://lichess.org/account/oauth/token/create?scopes[]=bot:play&description=My+Bot"
 Write-Host "2. Edit bot.properties and replace YOUR_LICHESS_BOT_TOKEN_HERE with your actual token"
-Write-Host "3. Run the bot with: java -cp 'out;path/to/json-20240303.jar' LichessBotStream"
+Write-Host "3. Run the bot with: java --add-modules jdk.incubator.vector -cp 'out;path/to/json-20240303.jar' LichessBotStream"
 Write-Host ""
 Write-Host "Alternative: You can also set environment variables:" -ForegroundColor Cyan
 Write-Host "  `$env:LICHESS_BOT_TOKEN = 'your_token_here'"
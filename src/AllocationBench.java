@@ -0,0 +1,50 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures heap allocation of the search: bytes allocated by the searching thread per node.
+ *
+ * Each bench position is searched single-threaded to a fixed depth (after a warm-up search so
+ * JIT and lazily built tables do not count). Allocation is read from the JVM's per-thread
+ * counter (com.sun.management.ThreadMXBean).
+ *
+ * Usage:
+ *   java -cp out AllocationBench [depth]
+ */
+public final class AllocationBench {
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().threadId();
+
+        Zobrist.initZobrist();
+        try { Nnue.tryAutoLoad(); } catch (Throwable ignored) {}
+        MoveFinder.setThreads(1);
+
+        // Warm-up
+        search(BenchPositions.FENS[1], Math.max(1, depth - 2));
+
+        long totalBytes = 0, totalNodes = 0;
+        System.out.println("=== Allocation bench: depth " + depth + " ===");
+        for (String fen : BenchPositions.FENS) {
+            Board.loadFEN(fen);
+            MoveFinder.tt().clear();
+            MoveFinder.resetNodeCounter();
+            long before = mx.getThreadAllocatedBytes(tid);
+            MoveFinder.searchToDepth(Board.whiteToMove, depth);
+            long bytes = mx.getThreadAllocatedBytes(tid) - before;
+            long nodes = MoveFinder.getNodeCounter();
+            totalBytes += bytes;
+            totalNodes += nodes;
+            System.out.printf("nodes=%9d  allocated=%12d B  %8.1f B/node  %s%n",
+                    nodes, bytes, bytes / (double) Math.max(1, nodes), fen);
+        }
+        System.out.printf("total: nodes=%d  allocated=%d B  %.1f B/node%n",
+                totalNodes, totalBytes, totalBytes / (double) Math.max(1, totalNodes));
+    }
+
+    private static void search(String fen, int depth) {
+        Board.loadFEN(fen);
+        MoveFinder.tt().clear();
+        MoveFinder.searchToDepth(Board.whiteToMove, depth);
+    }
+}
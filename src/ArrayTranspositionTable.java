@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Fixed-size transposition table on parallel Java arrays (tt.impl=array, the default).
+ *
+ * Design notes:
+ * - Uses clusters (buckets) of multiple entries, similar to top engines.
+ * - Replacement is based on a simple depth-vs-age score, inspired by Stockfish's
+ *   "depth minus 8 * age" style heuristic.
+ * - Stores the best move as a {@link Move} int (squares, promotion and flags), so the search can
+ *   compare it directly with generated moves.
+ */
+final class ArrayTranspositionTable extends TranspositionTable {
+
+    // Approx bytes per entry (arrays only, object headers not counted):
+    // key(8) + value(4) + depth(2) + flag(1) + gen(1) + move(4) = 20 bytes
+    private static final int BYTES_PER_ENTRY_APPROX = 20;
+
+    private int clusterCount;
+
+    private long[] keys;
+    private int[] values;
+    private short[] depths;
+    private byte[] flags;
+    private int[] moves;
+
+    private byte[] gens;
+
+    ArrayTranspositionTable(int sizeMb) {
+        resizeMB(sizeMb);
+    }
+
+    @Override
+    public String impl() {
+        return "array";
+    }
+
+    @Override
+    public int sizeMB() {
+        // Approximate; not exact accounting of JVM overhead.
+        int entries = (keys == null) ? 0 : keys.length;
+        long bytes = (long) entries * (long) BYTES_PER_ENTRY_APPROX;
+        return (int) (bytes / (1024L * 1024L));
+    }
+
+    @Override
+    public int capacityEntries() {
+        return keys == null ? 0 : keys.length;
+    }
+
+    @Override
+    public void resizeMB(int sizeMb) {
+        if (sizeMb <= 0) {
+            // Minimal table (still functional).
+            sizeMb = 1;
+        }
+
+        long sizeBytes = (long) sizeMb * 1024L * 1024L;
+        long entries = sizeBytes / BYTES_PER_ENTRY_APPROX;
+        long clusters = entries / CLUSTER_SIZE;
+        if (clusters < 1) clusters = 1;
+
+        // Keep the requested size as closely as possible (no power-of-two rounding).
+        int c = (clusters > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) clusters;
+        if (c < 1) c = 1;
+
+        // Ensure arrays fit into Java's int-indexed arrays.
+        long totalEntriesL = (long) c * (long) CLUSTER_SIZE;
+        if (totalEntriesL > Integer.MAX_VALUE) {
+            c = Integer.MAX_VALUE / CLUSTER_SIZE;
+            totalEntriesL = (long) c * (long) CLUSTER_SIZE;
+        }
+
+        this.clusterCount = c;
+
+        int totalEntries = (int) totalEntriesL;
+        keys = new long[totalEntries];
+        values = new int[totalEntries];
+        depths = new short[totalEntries];
+        flags = new byte[totalEntries];
+        moves = new int[totalEntries];
+        gens = new byte[totalEntries];
+
+        clear();
+    }
+
+    @Override
+    public void clear() {
+        // gens==0 means "empty"; keys can be left as-is.
+        if (gens != null) {
+            Arrays.fill(gens, (byte) 0);
+        }
+        generation = 1;
+    }
+
+    @Override
+    long probeEntry(long key) {
+        int base = baseIndex(key);
+        for (int i = 0; i < CLUSTER_SIZE; i++) {
+            int idx = base + i;
+            byte g = gens[idx];
+            if (g != 0 && keys[idx] == key) {
+                gens[idx] = generation; // refresh age on use
+                return pack(values[idx], depths[idx] & 0xFFFF, flags[idx], moves[idx]);
+            }
+        }
+        return MISS;
+    }
+
+
+    @Override
+    int slotAge(int slot) {
+        return gens[slot] == 0 ? -1 : (generation - gens[slot]) & 0xFF;
+    }
+
+    @Override
+    long dataBytes() {
+        return (long) keys.length * BYTES_PER_ENTRY_APPROX;
+    }
+
+    @Override
+    void writeData(FileChannel ch, long pos) throws IOException {
+        for (Object a : new Object[]{keys, values, depths, flags, moves, gens}) pos = transfer(ch, pos, a, true);
+    }
+
+    @Override
+    void readData(FileChannel ch, long pos) throws IOException {
+        for (Object a : new Object[]{keys, values, depths, flags, moves, gens}) pos = transfer(ch, pos, a, false);
+    }
+
+    @Override
+    void storeEntry(long key, int depth, int flag, int value, int bestMoveCode) {
+        int base = baseIndex(key);
+
+        // 1) Update if key already present
+        for (int i = 0; i < CLUSTER_SIZE; i++) {
+            int idx = base + i;
+            if (gens[idx] != 0 && keys[idx] == key) {
+                // Refresh
+                gens[idx] = generation;
+
+                int oldDepth = depths[idx] & 0xFFFF;
+                int oldFlag = flags[idx];
+
+                // Keep deeper info unless the new info is exact.
+                // This is deliberately simple; top engines use slightly more nuanced rules.
+                if (depth >= oldDepth || flag == 0 /* EXACT */) {
+                    values[idx] = value;
+                    depths[idx] = (short) depth;
+                    flags[idx] = (byte) flag;
+                } else {
+                    // If we don't overwrite value/depth, still allow EXACT to upgrade bounds.
+                    if (oldFlag != 0 && flag == 0) {
+                        values[idx] = value;
+                        depths[idx] = (short) depth;
+                        flags[idx] = (byte) flag;
+                    }
+                }
+
+                if (bestMoveCode != 0) {
+                    moves[idx] = bestMoveCode;
+                }
+                return;
+            }
+        }
+
+        // 2) Use an empty slot if available
+        for (int i = 0; i < CLUSTER_SIZE; i++) {
+            int idx = base + i;
+            if (gens[idx] == 0) {
+                keys[idx] = key;
+                values[idx] = value;
+                depths[idx] = (short) depth;
+                flags[idx] = (byte) flag;
+                moves[idx] = bestMoveCode;
+                gens[idx] = generation;
+                return;
+            }
+        }
+
+        // 3) Choose a victim by lowest (depth - 8*age)
+        int victim = base;
+        int worstScore = Integer.MAX_VALUE;
+        int gNow = generation & 0xFF;
+        for (int i = 0; i < CLUSTER_SIZE; i++) {
+            int idx = base + i;
+            int d = depths[idx] & 0xFFFF;
+            int age = (gNow - (gens[idx] & 0xFF)) & 0xFF;
+            int score = d - (age * 8);
+            if (score < worstScore) {
+                worstScore = score;
+                victim = idx;
+            }
+        }
+
+        countOverwrite(depths[victim] & 0xFFFF);
+        keys[victim] = key;
+        values[victim] = value;
+        depths[victim] = (short) depth;
+        flags[victim] = (byte) flag;
+        moves[victim] = bestMoveCode;
+        gens[victim] = generation;
+    }
+
+    private int baseIndex(long key) {
+        return (int) clusterOf(key, clusterCount) * CLUSTER_SIZE;
+    }
+}
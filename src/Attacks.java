@@ -5,6 +5,10 @@ public final class Attacks {
     // pawnAttack[color][targetSq] = bitboard of squares from which a pawn of 'color' attacks targetSq
     // color: 0 = white, 1 = black
     public static final long[][] pawnAttack = new long[2][64];
+    // between[a][b] = squares strictly between a and b if they share a rank/file/diagonal, else 0
+    public static final long[][] between = new long[64][64];
+    // line[a][b] = the whole rank/file/diagonal through a and b (both included) if aligned, else 0
+    public static final long[][] line = new long[64][64];
 
     static {
         init();
@@ -50,9 +54,146 @@ public final class Attacks {
                 }
             }
         }
+        initLines();
+    }
+
+    private static void initLines() {
+        int[][] dirs = {{1,0},{0,1},{1,1},{1,-1}};
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) { between[a][b] = 0L; line[a][b] = 0L; }
+        }
+        for (int a = 0; a < 64; a++) {
+            int ax = a & 7, ay = a >>> 3;
+            for (int[] d : dirs) {
+                // Full line through a along this axis
+                long full = 1L << a;
+                for (int sign = -1; sign <= 1; sign += 2) {
+                    for (int x = ax + sign*d[0], y = ay + sign*d[1]; x >= 0 && x < 8 && y >= 0 && y < 8; x += sign*d[0], y += sign*d[1]) {
+                        full |= 1L << (y*8 + x);
+                    }
+                }
+                for (int sign = -1; sign <= 1; sign += 2) {
+                    long acc = 0L;
+                    for (int x = ax + sign*d[0], y = ay + sign*d[1]; x >= 0 && x < 8 && y >= 0 && y < 8; x += sign*d[0], y += sign*d[1]) {
+                        int t = y*8 + x;
+                        between[a][t] = acc;
+                        line[a][t] = full;
+                        acc |= 1L << t;
+                    }
+                }
+            }
+        }
+    }
+
+    // --- Magic bitboards ---
+    // Fancy magics: per square a relevant-occupancy mask, a multiplier and an offset into one shared
+    // table. The multipliers below were found once with a fixed-seed xorshift64* search over sparse
+    // candidates; the tables are filled from the ray loops at class init, which also verifies that
+    // every magic maps the occupancy subsets of its square without destructive collisions.
+    private static final long[] ROOK_MAGIC = {
+            0x1080004008801020L, 0x0840092002C03000L, 0x1900200010400900L, 0x0880100008000480L,
+            0x4200100420080200L, 0x8100020100080400L, 0x0200040110886200L, 0x0200008040220411L,
+            0x0404800084400220L, 0x0000401000402000L, 0x0086001081220440L, 0x0408800800100280L,
+            0x000A001201040820L, 0x8848800200840080L, 0x4001000100040200L, 0x0442000102105084L,
+            0x9080010020804100L, 0x0040404000201009L, 0x0000808010002009L, 0x2200090021D00100L,
+            0x0008008008040080L, 0x0004004002010040L, 0x0011040008015042L, 0x00000A0001768104L,
+            0x0000800080204009L, 0x2010004140002001L, 0x9800200280100080L, 0x1000100080080080L,
+            0x0050500500080100L, 0x0000020080040080L, 0x0C10010400420810L, 0x1040008200005104L,
+            0x01808240088004A0L, 0x0882804004802000L, 0x0880402001001100L, 0x2000210409001000L,
+            0x2000480131001500L, 0x0000800400800200L, 0x000002380C001003L, 0x4600084882000431L,
+            0x0080002000504000L, 0x0300500020004002L, 0x0040408200220011L, 0x0010040008004040L,
+            0x0000080004008080L, 0x0010040002008080L, 0x2012004881020004L, 0x8300842444820011L,
+            0x0088403882010200L, 0x0820400080210100L, 0x0110910040A00300L, 0x0801100280080480L,
+            0x0242009008200600L, 0x1002000489500200L, 0x0040800200010080L, 0x0091800041000080L,
+            0x0000209300488001L, 0x04C1002414824001L, 0x020020000B001041L, 0x7000100004200901L,
+            0x8002002004100802L, 0x30010002084C0007L, 0x0888221800813004L, 0x4000002840840112L
+    };
+    private static final long[] BISHOP_MAGIC = {
+            0x20C0090901061081L, 0x0024040094030104L, 0x8210810200290200L, 0x0011040484620000L,
+            0x0081104002221000L, 0x0009012011001350L, 0x0081010802400380L, 0x0000420210010408L,
+            0x0008105002280050L, 0x0001028484040044L, 0x2A00880810408804L, 0x7020022282000100L,
+            0x0084040420100A50L, 0x000401010840E000L, 0x2020020210420888L, 0x0008084202012010L,
+            0x2010400810018800L, 0x0445122008020840L, 0x0804100808002008L, 0x0008002104110100L,
+            0x0061005820080800L, 0x2001000200820100L, 0x480C210084010800L, 0x3004442500480420L,
+            0x1010102240048100L, 0x00182009084220A3L, 0x8803090A10004205L, 0x0208080040202020L,
+            0x000C044084010040L, 0x00A1010002004106L, 0x6008210020640202L, 0x1600902112860801L,
+            0x00042008C1220200L, 0x010C042002440140L, 0x5022080200040820L, 0x0402004042940100L,
+            0x0860108400008020L, 0x000C080022021000L, 0x0264080652822100L, 0x4005031221010401L,
+            0x0004502410008400L, 0x000500B010A20400L, 0x0415094050080800L, 0x080000201800A104L,
+            0x4022A80304000110L, 0x4012140802028020L, 0x40200104010100A0L, 0x12810806008B0C41L,
+            0x0020441008080000L, 0x2002120084045420L, 0x0704020062080002L, 0x0000001084040001L,
+            0x0322200891240200L, 0xF040200210024800L, 0x0140824832008042L, 0x000210020A004602L,
+            0x0083042805141020L, 0x002C12009A011000L, 0x0041A00044140400L, 0x00004004020A0202L,
+            0x0000140010020210L, 0x2864160811012200L, 0x2060080841082A17L, 0xA010041108003100L
+    };
+    private static final long[] ROOK_MASK = new long[64];
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64];
+    private static final int[] BISHOP_OFFSET = new int[64];
+    private static final long[] ROOK_TABLE = new long[102400];
+    private static final long[] BISHOP_TABLE = new long[5248];
+
+    static {
+        initMagics();
     }
 
     public static long bishopAttacks(int fromSq, long occ) {
+        return BISHOP_TABLE[BISHOP_OFFSET[fromSq] + (int) (((occ & BISHOP_MASK[fromSq]) * BISHOP_MAGIC[fromSq]) >>> BISHOP_SHIFT[fromSq])];
+    }
+
+    public static long rookAttacks(int fromSq, long occ) {
+        return ROOK_TABLE[ROOK_OFFSET[fromSq] + (int) (((occ & ROOK_MASK[fromSq]) * ROOK_MAGIC[fromSq]) >>> ROOK_SHIFT[fromSq])];
+    }
+
+    private static void initMagics() {
+        int rookOffset = 0, bishopOffset = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            ROOK_MASK[sq] = relevantMask(sq, false);
+            BISHOP_MASK[sq] = relevantMask(sq, true);
+            ROOK_SHIFT[sq] = 64 - Long.bitCount(ROOK_MASK[sq]);
+            BISHOP_SHIFT[sq] = 64 - Long.bitCount(BISHOP_MASK[sq]);
+            ROOK_OFFSET[sq] = rookOffset;
+            BISHOP_OFFSET[sq] = bishopOffset;
+            rookOffset += fillMagicTable(sq, ROOK_MASK[sq], ROOK_MAGIC[sq], ROOK_SHIFT[sq], ROOK_TABLE, rookOffset, false);
+            bishopOffset += fillMagicTable(sq, BISHOP_MASK[sq], BISHOP_MAGIC[sq], BISHOP_SHIFT[sq], BISHOP_TABLE, bishopOffset, true);
+        }
+    }
+
+    // Ray squares that can block, i.e. without the last square towards the board edge
+    private static long relevantMask(int sq, boolean diag) {
+        int fx = sq & 7, fy = sq >>> 3;
+        int[][] dirs = diag ? new int[][]{{1,1},{1,-1},{-1,1},{-1,-1}} : new int[][]{{1,0},{-1,0},{0,1},{0,-1}};
+        long mask = 0L;
+        for (int[] d : dirs) {
+            for (int x = fx + d[0], y = fy + d[1]; x + d[0] >= 0 && x + d[0] < 8 && y + d[1] >= 0 && y + d[1] < 8; x += d[0], y += d[1]) {
+                mask |= 1L << (y*8 + x);
+            }
+        }
+        return mask;
+    }
+
+    // Writes the attack sets of all occupancy subsets of mask into table[offset..]; returns the slice size
+    private static int fillMagicTable(int sq, long mask, long magic, int shift, long[] table, int offset, boolean diag) {
+        int size = 1 << (64 - shift);
+        boolean[] used = new boolean[size];
+        long subset = 0L;
+        do {
+            long attacks = diag ? bishopAttacksSlow(sq, subset) : rookAttacksSlow(sq, subset);
+            int idx = (int) ((subset * magic) >>> shift);
+            if (used[idx] && table[offset + idx] != attacks) {
+                throw new IllegalStateException("Bad " + (diag ? "bishop" : "rook") + " magic for square " + sq);
+            }
+            used[idx] = true;
+            table[offset + idx] = attacks;
+            subset = (subset - mask) & mask; // carry-rippler: next subset
+        } while (subset != 0);
+        return size;
+    }
+
+    // Reference implementations: walk each ray square by square (used to build and test the magic tables)
+    static long bishopAttacksSlow(int fromSq, long occ) {
         int fx = fromSq & 7; int fy = fromSq >>> 3;
         long attacks = 0L;
         // NW
@@ -74,7 +215,7 @@ public final class Attacks {
         return attacks;
     }
 
-    public static long rookAttacks(int fromSq, long occ) {
+    static long rookAttacksSlow(int fromSq, long occ) {
         int fx = fromSq & 7; int fy = fromSq >>> 3;
         long attacks = 0L;
         // North (y-1..0)
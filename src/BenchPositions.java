@@ -0,0 +1,37 @@
+/**
+ * Positions the benches and tests search (start position, kiwipete, a quiet middlegame and a
+ * rook endgame), and the engine setup they search them with.
+ */
+final class BenchPositions {
+    static final String[] FENS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP2BPPP/R2QKB1R w KQ - 0 8",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    };
+
+    private BenchPositions() {}
+
+    /** FENS followed by the given extra positions. */
+    static String[] with(String... extra) {
+        String[] all = java.util.Arrays.copyOf(FENS, FENS.length + extra.length);
+        System.arraycopy(extra, 0, all, FENS.length, extra.length);
+        return all;
+    }
+
+    /** Fresh single-thread engine with its own 16 MB table (empty) on the position. */
+    static Engine engine(String fen) {
+        return setUp(new Engine(16), fen);
+    }
+
+    /** Single-thread engine searching the given table, on the position. */
+    static Engine engine(TranspositionTable tt, String fen) {
+        return setUp(new Engine(tt), fen);
+    }
+
+    private static Engine setUp(Engine e, String fen) {
+        e.setThreads(1);
+        e.setPosition(fen);
+        return e;
+    }
+}
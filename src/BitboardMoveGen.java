@@ -2,161 +2,424 @@ import java.util.ArrayList;
 
 public final class BitboardMoveGen {
 
+    // Generation modes (bit flags); ALL yields the same moves in the same order as before staging
+    public static final int CAPTURES = 1;   // captures incl. en passant and capture-promotions
+    public static final int PROMOTIONS = 2; // non-capturing promotions
+    public static final int QUIETS = 4;     // everything else (pushes, piece moves, castling)
+    public static final int ALL = CAPTURES | PROMOTIONS | QUIETS;
+
+    // Upper bound for the number of legal moves in a chess position (218) plus slack
+    public static final int MAX_MOVES = 256;
+
     public static ArrayList<Zug> generate(boolean white, Bitboards bb) {
         ArrayList<Zug> moves = new ArrayList<>();
-        long usOcc = white ? bb.occW : bb.occB;
+        generate(white, bb, moves, ALL);
+        return moves;
+    }
+
+    /** Append the pseudo-legal moves selected by mode (CAPTURES/PROMOTIONS/QUIETS flags). */
+    public static void generate(boolean white, Bitboards bb, ArrayList<Zug> moves, int mode) {
+        int[] buf = new int[MAX_MOVES];
+        int n = generate(white, bb, buf, mode);
+        for (int i = 0; i < n; i++) moves.add(Move.toZug(buf[i]));
+    }
+
+    /** Write the pseudo-legal moves selected by mode into buf as {@link Move} ints and return their count. */
+    public static int generate(boolean white, Bitboards bb, int[] buf, int mode) {
+        boolean caps = (mode & CAPTURES) != 0;
+        boolean promos = (mode & PROMOTIONS) != 0;
+        boolean quiets = (mode & QUIETS) != 0;
         long themOcc = white ? bb.occB : bb.occW;
         long allOcc = bb.occ;
+        // Leaper/slider destinations wanted in this mode
+        long targetMask = (caps ? themOcc : 0L) | (quiets ? ~allOcc : 0L);
+        int fwd = white ? -8 : 8;
+        int startRank = white ? 6 : 1;
+        int n = 0;
 
         // Pawns
         long pawns = white ? bb.w[0] : bb.b[0];
         while (pawns != 0) {
             int from = Long.numberOfTrailingZeros(pawns);
             pawns &= pawns - 1;
-            int fx = Bitboards.xOf(from), fy = Bitboards.yOf(from);
-
-            if (white) {
-                int to = from - 8;
-                if (to >= 0 && ((allOcc >>> to) & 1L) == 0) {
-                    addPawnOrPromo(moves, from, to, white);
-                    // Double push from rank 6 (fy == 6)
-                    if (fy == 6) {
-                        int to2 = from - 16;
-                        if (((allOcc >>> to2) & 1L) == 0) {
-                            moves.add(new Zug(Bitboards.xOf(from), Bitboards.yOf(from), Bitboards.xOf(to2), Bitboards.yOf(to2)));
-                        }
-                    }
-                }
-                // Captures
-                if (fx > 0) {
-                    int cap = from - 9;
-                    if (cap >= 0 && (((themOcc >>> cap) & 1L) != 0 || cap == bb.epSquare)) {
-                        addPawnOrPromo(moves, from, cap, white);
-                    }
-                }
-                if (fx < 7) {
-                    int cap = from - 7;
-                    if (cap >= 0 && (((themOcc >>> cap) & 1L) != 0 || cap == bb.epSquare)) {
-                        addPawnOrPromo(moves, from, cap, white);
-                    }
-                }
-            } else {
-                int to = from + 8;
-                if (to < 64 && ((allOcc >>> to) & 1L) == 0) {
-                    addPawnOrPromo(moves, from, to, white);
-                    // Double push from rank 1 (fy == 1)
-                    if (fy == 1) {
-                        int to2 = from + 16;
-                        if (((allOcc >>> to2) & 1L) == 0) {
-                            moves.add(new Zug(Bitboards.xOf(from), Bitboards.yOf(from), Bitboards.xOf(to2), Bitboards.yOf(to2)));
-                        }
-                    }
-                }
-                // Captures
-                if (fx > 0) {
-                    int cap = from + 7;
-                    if (cap < 64 && (((themOcc >>> cap) & 1L) != 0 || cap == bb.epSquare)) {
-                        addPawnOrPromo(moves, from, cap, white);
+            int fx = Bitboards.xOf(from);
+
+            int to = from + fwd;
+            if (((allOcc >>> to) & 1L) == 0) {
+                boolean promo = Bitboards.isPromotionDest(white, to);
+                if (promo ? promos : quiets) n = addPawnOrPromo(buf, n, from, to, white, 0);
+                // Double push from the start rank
+                if (quiets && Bitboards.yOf(from) == startRank) {
+                    int to2 = to + fwd;
+                    if (((allOcc >>> to2) & 1L) == 0) {
+                        buf[n++] = Move.of(from, to2, 0, Move.DOUBLE_PUSH);
                     }
                 }
-                if (fx < 7) {
-                    int cap = from + 9;
-                    if (cap < 64 && (((themOcc >>> cap) & 1L) != 0 || cap == bb.epSquare)) {
-                        addPawnOrPromo(moves, from, cap, white);
-                    }
+            }
+            // Captures towards the lower file first
+            if (!caps) continue;
+            for (int side = 0; side < 2; side++) {
+                if (side == 0 ? fx == 0 : fx == 7) continue;
+                int cap = from + fwd + (side == 0 ? -1 : 1);
+                if (((themOcc >>> cap) & 1L) != 0) {
+                    n = addPawnOrPromo(buf, n, from, cap, white, Move.CAPTURE);
+                } else if (cap == bb.epSquare) {
+                    buf[n++] = Move.of(from, cap, 0, Move.CAPTURE | Move.EN_PASSANT);
                 }
             }
         }
 
         // Knights
         long knights = white ? bb.w[1] : bb.b[1];
-        addLeaperMoves(moves, knights, bb, Attacks.knight, usOcc);
+        n = addLeaperMoves(buf, n, knights, bb, Attacks.knight, targetMask);
         // Kings
         long kings = white ? bb.w[5] : bb.b[5];
-        addLeaperMoves(moves, kings, bb, Attacks.king, usOcc);
+        n = addLeaperMoves(buf, n, kings, bb, Attacks.king, targetMask);
         // Castling (pseudo-legal: empty squares only; check filtered later)
-        if (white) {
-            // King at e1
-            if (bb.wK) {
-                int f1 = Bitboards.sq(5,7), g1 = Bitboards.sq(6,7);
-                if ((((allOcc >>> f1) & 1L) == 0) && (((allOcc >>> g1) & 1L) == 0)) {
-                    moves.add(new Zug("e1g1"));
+        if (quiets) {
+            int y = white ? 7 : 0;
+            int e = Bitboards.sq(4, y);
+            if (white ? bb.wK : bb.bK) {
+                int f = Bitboards.sq(5, y), g = Bitboards.sq(6, y);
+                if ((((allOcc >>> f) & 1L) == 0) && (((allOcc >>> g) & 1L) == 0)) {
+                    buf[n++] = Move.of(e, g, 0, Move.CASTLE);
                 }
             }
-            if (bb.wQ) {
-                int d1 = Bitboards.sq(3,7), c1 = Bitboards.sq(2,7), b1 = Bitboards.sq(1,7);
-                if ((((allOcc >>> d1) & 1L) == 0) && (((allOcc >>> c1) & 1L) == 0) && (((allOcc >>> b1) & 1L) == 0)) {
-                    moves.add(new Zug("e1c1"));
+            if (white ? bb.wQ : bb.bQ) {
+                int d = Bitboards.sq(3, y), c = Bitboards.sq(2, y), b = Bitboards.sq(1, y);
+                if ((((allOcc >>> d) & 1L) == 0) && (((allOcc >>> c) & 1L) == 0) && (((allOcc >>> b) & 1L) == 0)) {
+                    buf[n++] = Move.of(e, c, 0, Move.CASTLE);
                 }
             }
-        } else {
-            // Black
-            if (bb.bK) {
-                int f8 = Bitboards.sq(5,0), g8 = Bitboards.sq(6,0);
-                if ((((allOcc >>> f8) & 1L) == 0) && (((allOcc >>> g8) & 1L) == 0)) {
-                    moves.add(new Zug("e8g8"));
+        }
+
+        // Bishops, rooks, queens (no pins at this stage)
+        n = addSliderMoves(buf, n, white ? bb.w[2] : bb.b[2], bb, true, false, targetMask, 0, 0L);
+        n = addSliderMoves(buf, n, white ? bb.w[3] : bb.b[3], bb, false, true, targetMask, 0, 0L);
+        n = addSliderMoves(buf, n, white ? bb.w[4] : bb.b[4], bb, true, true, targetMask, 0, 0L);
+        return n;
+    }
+
+    /**
+     * Cheap pseudo-legality test for a move that did not come from the generator (e.g. a TT move,
+     * which may stem from a hash collision or another thread's entry). King safety is not checked.
+     * The move's flags must be the ones this position gives it.
+     */
+    public static boolean isPseudoLegal(int move, boolean white, Bitboards bb) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long usOcc = white ? bb.occW : bb.occB;
+        long themOcc = white ? bb.occB : bb.occW;
+        if (((usOcc >>> from) & 1L) == 0 || ((usOcc >>> to) & 1L) != 0) return false;
+        if (move != Move.encode(bb, from, to, Move.promo(move))) return false;
+
+        int type = bb.pieceTypeAt(from, white);
+        int promo = Move.promo(move);
+        if (promo > 4) return false;
+        boolean hasPromo = promo != 0;
+        if (type == 0) {
+            if (Bitboards.isPromotionDest(white, to) != hasPromo) return false;
+            int fwd = white ? -8 : 8;
+            if (to == from + fwd) return ((bb.occ >>> to) & 1L) == 0;
+            if (to == from + 2 * fwd) {
+                int startRank = white ? 6 : 1;
+                return Bitboards.yOf(from) == startRank
+                        && ((bb.occ >>> (from + fwd)) & 1L) == 0 && ((bb.occ >>> to) & 1L) == 0;
+            }
+            if ((Attacks.pawnAttack[white ? 0 : 1][to] & Bitboards.bb(from)) == 0) return false;
+            return ((themOcc >>> to) & 1L) != 0 || to == bb.epSquare;
+        }
+        if (hasPromo) return false;
+
+        long targets = switch (type) {
+            case 1 -> Attacks.knight[from];
+            case 2 -> Attacks.bishopAttacks(from, bb.occ);
+            case 3 -> Attacks.rookAttacks(from, bb.occ);
+            case 4 -> Attacks.bishopAttacks(from, bb.occ) | Attacks.rookAttacks(from, bb.occ);
+            default -> Attacks.king[from];
+        };
+        if ((targets & Bitboards.bb(to)) != 0) return true;
+
+        // Castling, same conditions as in generate()
+        if (type != 5) return false;
+        int y = white ? 7 : 0;
+        if (from != Bitboards.sq(4, y) || Bitboards.yOf(to) != y) return false;
+        if (Bitboards.xOf(to) == 6) {
+            boolean right = white ? bb.wK : bb.bK;
+            return right && ((bb.occ >>> Bitboards.sq(5, y)) & 1L) == 0 && ((bb.occ >>> Bitboards.sq(6, y)) & 1L) == 0;
+        }
+        if (Bitboards.xOf(to) == 2) {
+            boolean right = white ? bb.wQ : bb.bQ;
+            return right && ((bb.occ >>> Bitboards.sq(3, y)) & 1L) == 0 && ((bb.occ >>> Bitboards.sq(2, y)) & 1L) == 0
+                    && ((bb.occ >>> Bitboards.sq(1, y)) & 1L) == 0;
+        }
+        return false;
+    }
+
+    // --- Legal move generation ---
+
+    public static ArrayList<Zug> generateLegal(boolean white, Bitboards bb) {
+        ArrayList<Zug> moves = new ArrayList<>();
+        generateLegal(white, bb, moves, ALL);
+        return moves;
+    }
+
+    /** List variant for callers outside the search (root, tools); converts the int moves to Zug. */
+    public static void generateLegal(boolean white, Bitboards bb, ArrayList<Zug> moves, int mode) {
+        int[] buf = new int[MAX_MOVES];
+        int n = generateLegal(white, bb, buf, mode);
+        for (int i = 0; i < n; i++) moves.add(Move.toZug(buf[i]));
+    }
+
+    /**
+     * Write the legal moves selected by mode into buf as {@link Move} ints and return their count
+     * (same flags and, outside of check, same order as {@link #generate}). Checkers and pinned
+     * pieces are computed once per call: pinned pieces only move along the line through their
+     * king, king moves avoid attacked squares, and in check the dedicated evasion path is used.
+     * Nothing is made on the board and nothing is allocated.
+     */
+    public static int generateLegal(boolean white, Bitboards bb, int[] buf, int mode) {
+        long[] us = white ? bb.w : bb.b;
+        int kSq = Long.numberOfTrailingZeros(us[5]);
+        long checkers = attackersOf(bb, kSq, !white, bb.occ);
+        long pinned = pinnedPieces(bb, white, kSq);
+        if (checkers != 0) {
+            return generateEvasions(white, bb, buf, mode, kSq, checkers, pinned);
+        }
+
+        long themOcc = white ? bb.occB : bb.occW;
+        long targetMask = ((mode & CAPTURES) != 0 ? themOcc : 0L) | ((mode & QUIETS) != 0 ? ~bb.occ : 0L);
+
+        int n = addLegalPawnMoves(white, bb, buf, 0, mode, us[0], kSq, pinned, ~0L, 0L);
+        // A pinned knight can never move
+        n = addLeaperMoves(buf, n, us[1] & ~pinned, bb, Attacks.knight, targetMask);
+        n = addKingMoves(white, bb, buf, n, kSq, targetMask);
+        if ((mode & QUIETS) != 0) n = addLegalCastling(white, bb, buf, n);
+        n = addSliderMoves(buf, n, us[2], bb, true, false, targetMask, kSq, pinned);
+        n = addSliderMoves(buf, n, us[3], bb, false, true, targetMask, kSq, pinned);
+        n = addSliderMoves(buf, n, us[4], bb, true, true, targetMask, kSq, pinned);
+        return n;
+    }
+
+    // Check evasions: king moves; with a single checker also captures of it and interpositions
+    private static int generateEvasions(boolean white, Bitboards bb, int[] buf, int mode, int kSq, long checkers, long pinned) {
+        long[] us = white ? bb.w : bb.b;
+        long themOcc = white ? bb.occB : bb.occW;
+        long targetMask = ((mode & CAPTURES) != 0 ? themOcc : 0L) | ((mode & QUIETS) != 0 ? ~bb.occ : 0L);
+
+        int n = addKingMoves(white, bb, buf, 0, kSq, targetMask);
+        if ((checkers & (checkers - 1)) != 0) return n; // double check: only the king can move
+
+        int checkerSq = Long.numberOfTrailingZeros(checkers);
+        long checkMask = checkers | Attacks.between[kSq][checkerSq];
+        // A pinned piece can never capture the checker or block the check
+        long movable = ~pinned;
+        n = addLegalPawnMoves(white, bb, buf, n, mode, us[0] & movable, kSq, pinned, checkMask, checkers);
+        n = addLeaperMoves(buf, n, us[1] & movable, bb, Attacks.knight, targetMask & checkMask);
+        n = addSliderMoves(buf, n, us[2] & movable, bb, true, false, targetMask & checkMask, kSq, 0L);
+        n = addSliderMoves(buf, n, us[3] & movable, bb, false, true, targetMask & checkMask, kSq, 0L);
+        n = addSliderMoves(buf, n, us[4] & movable, bb, true, true, targetMask & checkMask, kSq, 0L);
+        return n;
+    }
+
+    /**
+     * Legality of a single move from outside the generator (TT move, killer). Expects a move that
+     * passed {@link #isPseudoLegal}; uses the same pin/check logic as {@link #generateLegal}.
+     */
+    public static boolean isLegal(int move, boolean white, Bitboards bb) {
+        long[] us = white ? bb.w : bb.b;
+        int kSq = Long.numberOfTrailingZeros(us[5]);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long checkers = attackersOf(bb, kSq, !white, bb.occ);
+
+        if (from == kSq) {
+            if (Move.isCastle(move)) {
+                int midSq = (from + to) >>> 1;
+                return checkers == 0 && attackersOf(bb, midSq, !white, bb.occ) == 0
+                        && attackersOf(bb, to, !white, bb.occ) == 0;
+            }
+            return attackersOf(bb, to, !white, bb.occ ^ (1L << kSq)) == 0;
+        }
+        if (Move.isEnPassant(move)) {
+            return epLegal(white, bb, from, to, kSq, checkers);
+        }
+        if ((checkers & (checkers - 1)) != 0) return false;
+        if (checkers != 0) {
+            int checkerSq = Long.numberOfTrailingZeros(checkers);
+            if (((checkers | Attacks.between[kSq][checkerSq]) & (1L << to)) == 0) return false;
+        }
+        if ((pinnedPieces(bb, white, kSq) & (1L << from)) != 0) {
+            return (Attacks.line[kSq][from] & (1L << to)) != 0;
+        }
+        return true;
+    }
+
+    private static int addLegalPawnMoves(boolean white, Bitboards bb, int[] buf, int n, int mode,
+                                         long pawns, int kSq, long pinned, long checkMask, long checkers) {
+        boolean caps = (mode & CAPTURES) != 0;
+        boolean promos = (mode & PROMOTIONS) != 0;
+        boolean quiets = (mode & QUIETS) != 0;
+        long themOcc = white ? bb.occB : bb.occW;
+        long allOcc = bb.occ;
+        int fwd = white ? -8 : 8;
+        int startRank = white ? 6 : 1;
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            int fx = Bitboards.xOf(from);
+            long allowed = checkMask;
+            if ((pinned & (1L << from)) != 0) allowed &= Attacks.line[kSq][from];
+
+            int to = from + fwd;
+            if (((allOcc >>> to) & 1L) == 0) {
+                boolean promo = Bitboards.isPromotionDest(white, to);
+                if ((promo ? promos : quiets) && ((allowed >>> to) & 1L) != 0) n = addPawnOrPromo(buf, n, from, to, white, 0);
+                if (quiets && Bitboards.yOf(from) == startRank) {
+                    int to2 = to + fwd;
+                    if (((allOcc >>> to2) & 1L) == 0 && ((allowed >>> to2) & 1L) != 0) {
+                        buf[n++] = Move.of(from, to2, 0, Move.DOUBLE_PUSH);
+                    }
                 }
             }
-            if (bb.bQ) {
-                int d8 = Bitboards.sq(3,0), c8 = Bitboards.sq(2,0), b8 = Bitboards.sq(1,0);
-                if ((((allOcc >>> d8) & 1L) == 0) && (((allOcc >>> c8) & 1L) == 0) && (((allOcc >>> b8) & 1L) == 0)) {
-                    moves.add(new Zug("e8c8"));
+            if (!caps) continue;
+            // Captures towards the lower file first, as in generate()
+            for (int side = 0; side < 2; side++) {
+                if (side == 0 ? fx == 0 : fx == 7) continue;
+                int cap = from + fwd + (side == 0 ? -1 : 1);
+                if (((themOcc >>> cap) & 1L) != 0) {
+                    if (((allowed >>> cap) & 1L) != 0) n = addPawnOrPromo(buf, n, from, cap, white, Move.CAPTURE);
+                } else if (cap == bb.epSquare && epLegal(white, bb, from, cap, kSq, checkers)) {
+                    buf[n++] = Move.of(from, cap, 0, Move.CAPTURE | Move.EN_PASSANT);
                 }
             }
         }
+        return n;
+    }
 
-        // Bishops
-        long bishops = white ? bb.w[2] : bb.b[2];
-        addSliderMoves(moves, bishops, bb, true, false, usOcc);
-        // Rooks
-        long rooks = white ? bb.w[3] : bb.b[3];
-        addSliderMoves(moves, rooks, bb, false, true, usOcc);
-        // Queens
-        long queens = white ? bb.w[4] : bb.b[4];
-        addSliderMoves(moves, queens, bb, true, true, usOcc);
+    // En passant removes two pieces from one rank, so test the resulting position directly
+    private static boolean epLegal(boolean white, Bitboards bb, int from, int to, int kSq, long checkers) {
+        int capSq = white ? to + 8 : to - 8;
+        long[] them = white ? bb.b : bb.w;
+        // A knight or another pawn giving check is not resolved by capturing this pawn
+        if ((checkers & ~(1L << capSq) & (them[0] | them[1])) != 0) return false;
+        long occAfter = (bb.occ ^ (1L << from) ^ (1L << capSq)) | (1L << to);
+        if ((Attacks.rookAttacks(kSq, occAfter) & (them[3] | them[4])) != 0) return false;
+        return (Attacks.bishopAttacks(kSq, occAfter) & (them[2] | them[4])) == 0;
+    }
 
-        return moves;
+    private static int addKingMoves(boolean white, Bitboards bb, int[] buf, int n, int kSq, long targetMask) {
+        long targets = Attacks.king[kSq] & targetMask;
+        // The king must not hide behind itself from a slider
+        long occNoKing = bb.occ ^ (1L << kSq);
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            if (attackersOf(bb, to, !white, occNoKing) == 0) buf[n++] = Move.of(kSq, to, 0, captureFlag(bb, to));
+        }
+        return n;
     }
 
-    private static void addPawnOrPromo(ArrayList<Zug> moves, int from, int to, boolean white) {
-        int ty = Bitboards.yOf(to);
-        int fx = Bitboards.xOf(from), fy = Bitboards.yOf(from), tx = Bitboards.xOf(to);
-        if ((white && ty == 0) || (!white && ty == 7)) {
-            moves.add(new Zug(fx, fy, tx, ty, 'q'));
-            moves.add(new Zug(fx, fy, tx, ty, 'r'));
-            moves.add(new Zug(fx, fy, tx, ty, 'b'));
-            moves.add(new Zug(fx, fy, tx, ty, 'n'));
-        } else {
-            moves.add(new Zug(fx, fy, tx, ty));
+    // Only called when not in check: squares between king and rook empty, transit and target square not attacked
+    private static int addLegalCastling(boolean white, Bitboards bb, int[] buf, int n) {
+        int y = white ? 7 : 0;
+        int e = Bitboards.sq(4, y);
+        long occ = bb.occ;
+        boolean kRight = white ? bb.wK : bb.bK;
+        boolean qRight = white ? bb.wQ : bb.bQ;
+        if (kRight) {
+            int f = Bitboards.sq(5, y), g = Bitboards.sq(6, y);
+            if (((occ >>> f) & 1L) == 0 && ((occ >>> g) & 1L) == 0
+                    && attackersOf(bb, f, !white, occ) == 0 && attackersOf(bb, g, !white, occ) == 0) {
+                buf[n++] = Move.of(e, g, 0, Move.CASTLE);
+            }
+        }
+        if (qRight) {
+            int d = Bitboards.sq(3, y), c = Bitboards.sq(2, y), b = Bitboards.sq(1, y);
+            if (((occ >>> d) & 1L) == 0 && ((occ >>> c) & 1L) == 0 && ((occ >>> b) & 1L) == 0
+                    && attackersOf(bb, d, !white, occ) == 0 && attackersOf(bb, c, !white, occ) == 0) {
+                buf[n++] = Move.of(e, c, 0, Move.CASTLE);
+            }
         }
+        return n;
     }
 
-    private static void addLeaperMoves(ArrayList<Zug> moves, long pieces, Bitboards bb, long[] attackTable, long usOcc) {
+    private static int addLeaperMoves(int[] buf, int n, long pieces, Bitboards bb, long[] attackTable, long targetMask) {
         while (pieces != 0) {
             int from = Long.numberOfTrailingZeros(pieces);
             pieces &= pieces - 1;
-            long targets = attackTable[from] & ~usOcc;
+            long targets = attackTable[from] & targetMask;
             while (targets != 0) {
                 int to = Long.numberOfTrailingZeros(targets);
                 targets &= targets - 1;
-                moves.add(new Zug(Bitboards.xOf(from), Bitboards.yOf(from), Bitboards.xOf(to), Bitboards.yOf(to)));
+                buf[n++] = Move.of(from, to, 0, captureFlag(bb, to));
             }
         }
+        return n;
     }
 
-    private static void addSliderMoves(ArrayList<Zug> moves, long pieces, Bitboards bb, boolean diag, boolean ortho, long usOcc) {
+    private static int addSliderMoves(int[] buf, int n, long pieces, Bitboards bb, boolean diag, boolean ortho,
+                                           long targetMask, int kSq, long pinned) {
         while (pieces != 0) {
             int from = Long.numberOfTrailingZeros(pieces);
             pieces &= pieces - 1;
             long targets = 0L;
             if (diag) targets |= Attacks.bishopAttacks(from, bb.occ);
             if (ortho) targets |= Attacks.rookAttacks(from, bb.occ);
-            targets &= ~usOcc;
+            targets &= targetMask;
+            if ((pinned & (1L << from)) != 0) targets &= Attacks.line[kSq][from];
             while (targets != 0) {
                 int to = Long.numberOfTrailingZeros(targets);
                 targets &= targets - 1;
-                moves.add(new Zug(Bitboards.xOf(from), Bitboards.yOf(from), Bitboards.xOf(to), Bitboards.yOf(to)));
+                buf[n++] = Move.of(from, to, 0, captureFlag(bb, to));
             }
         }
+        return n;
+    }
+
+    private static int addPawnOrPromo(int[] buf, int n, int from, int to, boolean white, int flags) {
+        if (Bitboards.isPromotionDest(white, to)) {
+            // q, r, b, n
+            buf[n++] = Move.of(from, to, 1, flags);
+            buf[n++] = Move.of(from, to, 2, flags);
+            buf[n++] = Move.of(from, to, 3, flags);
+            buf[n++] = Move.of(from, to, 4, flags);
+        } else {
+            buf[n++] = Move.of(from, to, 0, flags);
+        }
+        return n;
+    }
+
+    // Targets never hold own pieces, so any occupied target is a capture
+    private static int captureFlag(Bitboards bb, int to) {
+        return ((bb.occ >>> to) & 1L) != 0 ? Move.CAPTURE : 0;
+    }
+
+    // Pieces of colour byWhite attacking sq, sliders evaluated against the given occupancy
+    private static long attackersOf(Bitboards bb, int sq, boolean byWhite, long occ) {
+        long[] them = byWhite ? bb.w : bb.b;
+        return (Attacks.pawnAttack[byWhite ? 0 : 1][sq] & them[0])
+                | (Attacks.knight[sq] & them[1])
+                | (Attacks.king[sq] & them[5])
+                | (Attacks.bishopAttacks(sq, occ) & (them[2] | them[4]))
+                | (Attacks.rookAttacks(sq, occ) & (them[3] | them[4]));
+    }
+
+    // Own pieces that are the only blocker between our king and an enemy slider
+    private static long pinnedPieces(Bitboards bb, boolean white, int kSq) {
+        long[] them = white ? bb.b : bb.w;
+        long usOcc = white ? bb.occW : bb.occB;
+        long themOcc = white ? bb.occB : bb.occW;
+        // Rays from the king that see through our own pieces
+        long snipers = (Attacks.rookAttacks(kSq, themOcc) & (them[3] | them[4]))
+                | (Attacks.bishopAttacks(kSq, themOcc) & (them[2] | them[4]));
+        long pinned = 0L;
+        while (snipers != 0) {
+            int s = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Attacks.between[kSq][s] & bb.occ;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0 && (blockers & usOcc) != 0) pinned |= blockers;
+        }
+        return pinned;
     }
 }
@@ -1,3 +1,5 @@
+import java.util.Arrays;
+
 public class Bitboards {
     // Piece type indices: 0=P,1=N,2=B,3=R,4=Q,5=K
     public long[] w = new long[6];
@@ -5,19 +7,66 @@ public class Bitboards {
 
     public long occW, occB, occ;
 
+    // Mailbox: piece index per square (0..5 white P..K, 6..11 black P..K, NO_PIECE if empty).
+    // applyMove/undoMove keep it and the occupancy in sync incrementally; after editing w/b
+    // directly (FEN setup) call updateOcc() to rebuild both.
+    public static final byte NO_PIECE = -1;
+    public final byte[] mailbox = new byte[64];
+
+    // Debug mode (e.g. perft): verify mailbox, occupancy and PST totals after every make/unmake
+    private static boolean consistencyChecks = false;
+
+    // Zobrist key of the position incl. side to move, updated incrementally by applyMove/undoMove.
+    // keyHistory holds the key before every applied move, so undo is a pop.
+    // Set up with resetKey(whiteToMove) after loading a position.
+    private long key;
+    private long[] keyHistory = new long[256];
+    private int keyCount;
+    // Undo record of the make/unmake in isLegalMove
+    private final MoveInfo legalityUndo = new MoveInfo();
+
+    static { Zobrist.ensureInitialized(); }
+
     // Castling rights
     public boolean wK, wQ, bK, bQ;
 
     // En passant target square (0..63) or -1 if none
     public int epSquare = -1;
 
+    // NNUE accumulators for this position (null until rebuilt for the loaded network)
+    Nnue.Accumulator nnue;
+
+    // PST eval running totals: sum of Evaluation.PST (packed mg/eg, white minus black) and game
+    // phase over all pieces, updated by applyMove/undoMove and rebuilt by updateOcc()
+    int pstScore, pstPhase;
+
     public Bitboards() { clear(); }
 
-    public void clear() {
+    /** Copy the full position (including NNUE accumulators) so another thread can search it independently. */
+    public void copyFrom(Bitboards o) {
+        System.arraycopy(o.w, 0, w, 0, 6);
+        System.arraycopy(o.b, 0, b, 0, 6);
+        occW = o.occW; occB = o.occB; occ = o.occ;
+        System.arraycopy(o.mailbox, 0, mailbox, 0, 64);
+        key = o.key;
+        if (keyHistory.length < o.keyHistory.length) keyHistory = new long[o.keyHistory.length];
+        System.arraycopy(o.keyHistory, 0, keyHistory, 0, o.keyCount);
+        keyCount = o.keyCount;
+        wK = o.wK; wQ = o.wQ; bK = o.bK; bQ = o.bQ;
+        epSquare = o.epSquare;
+        pstScore = o.pstScore; pstPhase = o.pstPhase;
+        nnue = (o.nnue != null) ? o.nnue.copy() : null;
+    }
+
+    public final void clear() {
         for (int i = 0; i < 6; i++) { w[i] = 0L; b[i] = 0L; }
         occW = occB = occ = 0L;
+        Arrays.fill(mailbox, NO_PIECE);
         wK = wQ = bK = bQ = false;
         epSquare = -1;
+        key = 0L;
+        keyCount = 0;
+        pstScore = pstPhase = 0;
     }
 
     public static int sq(int x, int y) { return y * 8 + x; }
@@ -25,10 +74,100 @@ public class Bitboards {
     public static int yOf(int sq) { return sq >>> 3; }
     public static long bb(int sq) { return 1L << sq; }
 
+    /** Rebuild occupancy, mailbox and PST totals from the piece bitboards (after setting up a position). */
     public void updateOcc() {
         occW = 0L; for (long v : w) occW |= v;
         occB = 0L; for (long v : b) occB |= v;
         occ = occW | occB;
+        Arrays.fill(mailbox, NO_PIECE);
+        for (int t = 0; t < 6; t++) {
+            for (long v = w[t]; v != 0; v &= v - 1) mailbox[Long.numberOfTrailingZeros(v)] = (byte) t;
+            for (long v = b[t]; v != 0; v &= v - 1) mailbox[Long.numberOfTrailingZeros(v)] = (byte) (6 + t);
+        }
+        pstScore = pstPhase = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (mailbox[sq] != NO_PIECE) pstAdd(mailbox[sq], sq);
+        }
+    }
+
+    private void pstAdd(int piece, int sq) {
+        pstScore += Evaluation.PST[piece * 64 + sq];
+        pstPhase += Evaluation.PHASE[piece];
+    }
+
+    private void pstRemove(int piece, int sq) {
+        pstScore -= Evaluation.PST[piece * 64 + sq];
+        pstPhase -= Evaluation.PHASE[piece];
+    }
+
+    /** Zobrist key of the current position (same value as Zobrist.computeHash). */
+    public long key() { return key; }
+
+    /** Moves (incl. null moves) applied since the key was last reset, i.e. the length of the key history. */
+    public int historyLength() { return keyCount; }
+
+    /** Recompute the key from scratch for the given side to move and forget the key history. */
+    public void resetKey(boolean whiteToMove) {
+        key = Zobrist.computeHash(this, whiteToMove);
+        keyCount = 0;
+    }
+
+    private void pushKey() {
+        if (keyCount == keyHistory.length) keyHistory = Arrays.copyOf(keyHistory, keyCount * 2);
+        keyHistory[keyCount++] = key;
+    }
+
+    /** Pass the move: clears the EP square and flips the side to move in the key. Returns the old EP square. */
+    public int applyNullMove(boolean whiteToMove) {
+        pushKey();
+        // The EP key is only part of the key if the side to move could capture en passant
+        key = Zobrist.nullMoveHashUpdate(key, Zobrist.getEnPassantFileFromBB(this, whiteToMove));
+        int oldEp = epSquare;
+        epSquare = -1;
+        return oldEp;
+    }
+
+    public void undoNullMove(int oldEpSquare) {
+        epSquare = oldEpSquare;
+        key = keyHistory[--keyCount];
+    }
+
+    public static void setConsistencyChecks(boolean on) { consistencyChecks = on; }
+    public static boolean consistencyChecks() { return consistencyChecks; }
+
+    /** Compare mailbox, occupancy and PST totals with the piece bitboards; throws IllegalStateException on a mismatch. */
+    public void verifyConsistency() {
+        long ow = 0L, ob = 0L;
+        int count = 0;
+        for (int t = 0; t < 6; t++) {
+            ow |= w[t]; ob |= b[t];
+            count += Long.bitCount(w[t]) + Long.bitCount(b[t]);
+        }
+        if (count != Long.bitCount(ow | ob)) throw new IllegalStateException("two pieces on one square");
+        if (ow != occW || ob != occB || (ow | ob) != occ) {
+            throw new IllegalStateException(String.format("occupancy out of sync: occW=%016x/%016x occB=%016x/%016x",
+                    occW, ow, occB, ob));
+        }
+        for (int sq = 0; sq < 64; sq++) {
+            int expected = NO_PIECE;
+            for (int t = 0; t < 6; t++) {
+                if (((w[t] >>> sq) & 1L) != 0) expected = t;
+                if (((b[t] >>> sq) & 1L) != 0) expected = 6 + t;
+            }
+            if (mailbox[sq] != expected) {
+                throw new IllegalStateException("mailbox out of sync on square " + sq + ": " + mailbox[sq] + " expected " + expected);
+            }
+        }
+        int score = 0, phase = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            if (mailbox[sq] == NO_PIECE) continue;
+            score += Evaluation.PST[mailbox[sq] * 64 + sq];
+            phase += Evaluation.PHASE[mailbox[sq]];
+        }
+        if (score != pstScore || phase != pstPhase) {
+            throw new IllegalStateException("PST totals out of sync: score=" + pstScore + "/" + score
+                    + " phase=" + pstPhase + "/" + phase);
+        }
     }
 
     public void initStartPosition() {
@@ -53,6 +192,7 @@ public class Bitboards {
         wK = wQ = bK = bQ = true;
         epSquare = -1;
         updateOcc();
+        resetKey(true);
     }
 
     public boolean isWhiteAt(int sq) { return (occW & bb(sq)) != 0; }
@@ -60,19 +200,15 @@ public class Bitboards {
     public boolean isOccupied(int sq) { return (occ & bb(sq)) != 0; }
 
     public int pieceTypeAt(int sq) {
-        long mask = bb(sq);
-        for (int t = 0; t < 6; t++) {
-            if ((w[t] & mask) != 0) return t;
-            if ((b[t] & mask) != 0) return t;
-        }
-        return -1;
+        int p = mailbox[sq];
+        return p >= 6 ? p - 6 : p;
     }
 
+    // -1 if there is no piece of that colour on sq
     public int pieceTypeAt(int sq, boolean white) {
-        long mask = bb(sq);
-        long[] arr = white ? w : b;
-        for (int t = 0; t < 6; t++) if ((arr[t] & mask) != 0) return t;
-        return -1;
+        int p = mailbox[sq];
+        if (white) return p < 6 ? p : -1;
+        return p >= 6 ? p - 6 : -1;
     }
 
     public long pieces(boolean white, int type) { return white ? w[type] : b[type]; }
@@ -118,26 +254,6 @@ public class Bitboards {
         return isSquareAttackedBy(!white, kingSq);
     }
 
-    public boolean isCapture(Zug z) {
-        int from = z.startY * 8 + z.startX;
-        int to = z.endY * 8 + z.endX;
-        boolean moverWhite = (occW & (1L << from)) != 0L;
-        int movingType = pieceTypeAt(from, moverWhite);
-        if (((occ >>> to) & 1L) != 0L) return true; // normal capture
-        // En passant: pawn moves diagonally to current ep square
-        if (movingType == 0 && epSquare == to && (z.endX != z.startX)) return true;
-        return false;
-    }
-
-    public boolean willPromote(Zug z) {
-        int from = z.startY * 8 + z.startX;
-        boolean moverWhite = (occW & (1L << from)) != 0L;
-        int movingType = pieceTypeAt(from, moverWhite);
-        if (movingType != 0) return false;
-        int to = z.endY * 8 + z.endX;
-        return isPromotionDest(moverWhite, to);
-    }
-
     public boolean isLegalMove(Zug z, boolean isWhite) {
         int from = z.startY * 8 + z.startX;
         int to = z.endY * 8 + z.endX;
@@ -154,10 +270,10 @@ public class Bitboards {
             // Final square checked after applying the move below
         }
 
-        MoveInfo inf = new MoveInfo();
-        applyMove(z, inf);
+        int move = Move.fromZug(this, z);
+        applyMove(move, legalityUndo);
         boolean ok = !inCheck(isWhite);
-        undoMove(z, inf);
+        undoMove(move, legalityUndo);
         return ok;
     }
 
@@ -169,21 +285,41 @@ public class Bitboards {
         }
     }
 
-    // Apply a move to bitboards and mirror Board.brett, recording info for undo and hashing
+    // Apply a move to bitboards, recording info for undo and hashing
     public void applyMove(Zug z, MoveInfo info) {
-        int from = z.startY * 8 + z.startX;
-        int to = z.endY * 8 + z.endX;
+        applyMove(Move.fromZug(this, z), info);
+    }
+
+    public void undoMove(Zug z, MoveInfo info) {
+        undoMove(Move.NONE, info); // everything needed is in info
+    }
 
-        
+    /** Apply an int-encoded move (see {@link Move}); info is reset and filled for undo and hashing. */
+    public void applyMove(int move, MoveInfo info) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        info.reset();
+        info.from = from;
+        info.to = to;
 
-        boolean moverWhite = isWhiteAt(from);
+        int moving = mailbox[from];
+        boolean moverWhite = moving < 6;
         info.movingPieceWhite = moverWhite;
-        info.movingPieceType = pieceTypeAt(from, moverWhite);
-        info.squareMovedOntoWasEmpty = !isOccupied(to);
+        info.movingPieceType = moverWhite ? moving : moving - 6;
+        int captured = mailbox[to];
+        info.squareMovedOntoWasEmpty = captured == NO_PIECE;
+
+        // Key: remember the old one for undo, drop the EP key hashed for the mover (before pieces move)
+        pushKey();
+        long[][] psk = Zobrist.pieceSquareKeys;
+        long k = key ^ Zobrist.sideToMoveKey;
+        if (epSquare >= 0) {
+            int epFile = Zobrist.getEnPassantFileFromBB(this, moverWhite);
+            if (epFile >= 0) k ^= Zobrist.enPassantKeys[epFile];
+        }
         if (!info.squareMovedOntoWasEmpty) {
-            boolean capW = isWhiteAt(to);
-            info.capturedPieceWhite = capW;
-            info.capturedPieceType = pieceTypeAt(to, capW);
+            info.capturedPieceWhite = captured < 6;
+            info.capturedPieceType = captured < 6 ? captured : captured - 6;
         }
 
         // Save pre-move state to info for undo
@@ -191,82 +327,85 @@ public class Bitboards {
         info.oldEpSquare = epSquare;
 
         int movingType = info.movingPieceType;
-        boolean isCapture = isOccupied(to);
+        boolean isCapture = !info.squareMovedOntoWasEmpty;
 
-        // En passant detection (target square empty but pawn moves diagonally into epSquare)
-        boolean isEnPassant = false;
+        // En passant (flagged by the generator): the captured pawn is behind the target square
+        boolean isEnPassant = Move.isEnPassant(move);
         int capturedSq = to;
-        if (movingType == 0 && !isCapture && epSquare == to) {
-            isEnPassant = true;
+        if (isEnPassant) {
             capturedSq = moverWhite ? (to + 8) : (to - 8);
             info.wasEnPassant = true;
             info.capturedPieceType = 0;
             info.capturedPieceWhite = !moverWhite;
-            info.capEnPassantBauerCoords = new Koordinaten(xOf(capturedSq), yOf(capturedSq));
+            info.epCaptureSq = capturedSq;
             info.squareMovedOntoWasEmpty = true;
         }
 
         // Promotion detection
-        boolean willPromote = (movingType == 0) && isPromotionDest(moverWhite, to) && (z.promoteTo == 'q' || z.promoteTo == 'r' || z.promoteTo == 'b' || z.promoteTo == 'n');
+        int promoType = Move.promoPieceType(move);
+        boolean willPromote = promoType > 0; // only pawn moves to the last rank carry a promotion code
         if (willPromote) {
             info.wasPromotion = true;
-            info.promotionType = promoTypeFromChar(z.promoteTo);
+            info.promotionType = promoType;
         }
 
-        // Castling detection
-        boolean isCastle = (movingType == 5) && Math.abs(z.endX - z.startX) == 2;
+        // Castling (flagged by the generator)
+        boolean isCastle = Move.isCastle(move);
         if (isCastle) {
             info.rookMoved = true;
-            if (moverWhite) {
-                if (z.endX > z.startX) { info.rookStartX = 7; info.rookEndX = 5; }
-                else { info.rookStartX = 0; info.rookEndX = 3; }
-            } else {
-                if (z.endX > z.startX) { info.rookStartX = 7; info.rookEndX = 5; }
-                else { info.rookStartX = 0; info.rookEndX = 3; }
-            }
+            if (xOf(to) > xOf(from)) { info.rookStartX = 7; info.rookEndX = 5; }
+            else { info.rookStartX = 0; info.rookEndX = 3; }
         }
 
+        long[] own = moverWhite ? w : b;
+        long[] opp = moverWhite ? b : w;
+        int base = moverWhite ? 0 : 6;
+        long ownDelta, oppDelta = 0L;
+
         // Remove captured piece
         if (isCapture) {
-            boolean capWhite = isWhiteAt(to);
-            int capType = pieceTypeAt(to, capWhite);
-            if (capWhite) w[capType] &= ~bb(to); else b[capType] &= ~bb(to);
+            opp[info.capturedPieceType] &= ~bb(to);
+            oppDelta = bb(to);
+            k ^= psk[captured][to];
+            pstRemove(captured, to);
         } else if (isEnPassant) {
-            boolean capWhite = isWhiteAt(capturedSq);
-            if (capWhite) w[0] &= ~bb(capturedSq); else b[0] &= ~bb(capturedSq);
+            opp[0] &= ~bb(capturedSq);
+            mailbox[capturedSq] = NO_PIECE;
+            oppDelta = bb(capturedSq);
+            k ^= psk[6 - base][capturedSq];
+            pstRemove(6 - base, capturedSq);
         }
 
         // Move piece
         long fromMask = bb(from), toMask = bb(to);
-        if (moverWhite) {
-            w[movingType] &= ~fromMask;
-            if (!willPromote) w[movingType] |= toMask; else {
-                int promoType = promoTypeFromChar(z.promoteTo);
-                w[promoType] |= toMask;
-            }
-        } else {
-            b[movingType] &= ~fromMask;
-            if (!willPromote) b[movingType] |= toMask; else {
-                int promoType = promoTypeFromChar(z.promoteTo);
-                b[promoType] |= toMask;
-            }
-        }
+        int placed = willPromote ? promoType : movingType;
+        own[movingType] &= ~fromMask;
+        own[placed] |= toMask;
+        mailbox[from] = NO_PIECE;
+        mailbox[to] = (byte) (base + placed);
+        ownDelta = fromMask | toMask;
+        k ^= psk[moving][from] ^ psk[base + placed][to];
+        pstRemove(moving, from);
+        pstAdd(base + placed, to);
 
         // Handle rook move in castling
         if (isCastle) {
-            if (moverWhite) {
-                int rookFrom = (z.endX > z.startX) ? sq(7,7) : sq(0,7);
-                int rookTo   = (z.endX > z.startX) ? sq(5,7) : sq(3,7);
-                long rf = bb(rookFrom), rt = bb(rookTo);
-                w[3] &= ~rf; w[3] |= rt;
-            } else {
-                int rookFrom = (z.endX > z.startX) ? sq(7,0) : sq(0,0);
-                int rookTo   = (z.endX > z.startX) ? sq(5,0) : sq(3,0);
-                long rf = bb(rookFrom), rt = bb(rookTo);
-                b[3] &= ~rf; b[3] |= rt;
-            }
+            int y = yOf(from);
+            int rookFrom = sq(info.rookStartX, y), rookTo = sq(info.rookEndX, y);
+            long rf = bb(rookFrom), rt = bb(rookTo);
+            own[3] &= ~rf; own[3] |= rt;
+            mailbox[rookFrom] = NO_PIECE;
+            mailbox[rookTo] = (byte) (base + 3);
+            ownDelta ^= rf | rt;
+            k ^= psk[base + 3][rookFrom] ^ psk[base + 3][rookTo];
+            pstRemove(base + 3, rookFrom);
+            pstAdd(base + 3, rookTo);
         }
 
+        // Occupancy changes only on the touched squares
+        if (moverWhite) { occW ^= ownDelta; occB ^= oppDelta; } else { occB ^= ownDelta; occW ^= oppDelta; }
+        occ = occW | occB;
+
         // Update castling rights
         if (movingType == 5) { // king moved
             if (moverWhite) { wK = false; wQ = false; } else { bK = false; bQ = false; }
@@ -284,80 +423,87 @@ public class Bitboards {
             if (to == sq(0,0)) bQ = false; if (to == sq(7,0)) bK = false;
         }
 
-        // Update EP square
-        epSquare = -1;
-        if (movingType == 0) {
-            int delta = to - from;
-            if (delta == -16) { // white double push
-                epSquare = from - 8; // square jumped over
-            } else if (delta == 16) { // black double push
-                epSquare = from + 8;
-            }
+        // Update EP square: the square jumped over by a double push
+        epSquare = Move.isDoublePush(move) ? (from + to) >>> 1 : -1;
+
+        // Key: castle rights delta and the EP key as seen by the opponent, who is to move now
+        k ^= Zobrist.castleDeltaKeys[info.oldCastlingRightsMask ^ rightsMask()];
+        if (epSquare >= 0) {
+            int epFile = Zobrist.getEnPassantFileFromBB(this, !moverWhite);
+            if (epFile >= 0) k ^= Zobrist.enPassantKeys[epFile];
         }
+        key = k;
 
-        updateOcc();
+        if (consistencyChecks) verifyConsistency();
 
         // Update NNUE incremental accumulators if available
-        try { if (Nnue.isUsable()) Nnue.onMoveApplied(z, info); } catch (Throwable ignored) {}
-
-        // No mirror updates
+        try { if (Nnue.isUsable()) Nnue.onMoveApplied(this, info); } catch (Throwable ignored) {}
     }
 
-    public void undoMove(Zug z, MoveInfo info) {
-        int from = z.startY * 8 + z.startX;
-        int to = z.endY * 8 + z.endX;
+    public void undoMove(int move, MoveInfo info) {
+        int from = info.from;
+        int to = info.to;
         boolean moverWhite = info.movingPieceWhite;
         int movingType = info.movingPieceType;
+        long[] own = moverWhite ? w : b;
+        long[] opp = moverWhite ? b : w;
+        int base = moverWhite ? 0 : 6;
+        long ownDelta = bb(from) | bb(to), oppDelta = 0L;
 
         // Undo promotion: remove promoted piece and restore pawn at from
-        boolean wasPromotion = info.wasPromotion;
-        if (wasPromotion) {
-            // Remove promoted piece at to (promotionType), restore pawn at from
-            int promoType = info.promotionType;
-            if (moverWhite) w[promoType] &= ~bb(to); else b[promoType] &= ~bb(to);
-            if (moverWhite) w[0] |= bb(from); else b[0] |= bb(from);
+        int placed = info.wasPromotion ? info.promotionType : movingType;
+        pstRemove(base + placed, to);
+        pstAdd(base + movingType, from);
+        if (info.wasPromotion) {
+            own[info.promotionType] &= ~bb(to);
+            own[0] |= bb(from);
         } else {
             // Move piece back from 'to' to 'from'
-            if (moverWhite) { w[movingType] &= ~bb(to); w[movingType] |= bb(from); }
-            else { b[movingType] &= ~bb(to); b[movingType] |= bb(from); }
+            own[movingType] &= ~bb(to);
+            own[movingType] |= bb(from);
         }
+        mailbox[from] = (byte) (base + movingType);
+        mailbox[to] = NO_PIECE;
 
         // Restore captured piece (including en-passant)
-        if (info.wasEnPassant && info.capEnPassantBauerCoords != null) {
-            int capSq = info.capEnPassantBauerCoords.y * 8 + info.capEnPassantBauerCoords.x;
+        if (info.wasEnPassant) {
             // Place captured pawn back
-            if (moverWhite) b[0] |= bb(capSq); else w[0] |= bb(capSq);
-            // Clear destination implicitly by moving piece bits
+            opp[0] |= bb(info.epCaptureSq);
+            mailbox[info.epCaptureSq] = (byte) (6 - base);
+            oppDelta = bb(info.epCaptureSq);
+            pstAdd(6 - base, info.epCaptureSq);
         } else if (!info.squareMovedOntoWasEmpty) {
-            boolean capWhite = info.capturedPieceWhite;
-            int capType = info.capturedPieceType;
-            if (capWhite) w[capType] |= bb(to); else b[capType] |= bb(to);
-        } else {
-            // destination restored implicitly
+            opp[info.capturedPieceType] |= bb(to);
+            mailbox[to] = (byte) (6 - base + info.capturedPieceType);
+            oppDelta = bb(to);
+            pstAdd(6 - base + info.capturedPieceType, to);
         }
 
         // Undo castling rook move
         if (info.rookMoved) {
-            if (moverWhite) {
-                int rookFrom = (z.endX > z.startX) ? sq(7,7) : sq(0,7);
-                int rookTo   = (z.endX > z.startX) ? sq(5,7) : sq(3,7);
-                w[3] &= ~bb(rookTo); w[3] |= bb(rookFrom);
-            } else {
-                int rookFrom = (z.endX > z.startX) ? sq(7,0) : sq(0,0);
-                int rookTo   = (z.endX > z.startX) ? sq(5,0) : sq(3,0);
-                b[3] &= ~bb(rookTo); b[3] |= bb(rookFrom);
-            }
+            int y = yOf(from);
+            int rookFrom = sq(info.rookStartX, y), rookTo = sq(info.rookEndX, y);
+            own[3] &= ~bb(rookTo);
+            own[3] |= bb(rookFrom);
+            mailbox[rookTo] = NO_PIECE;
+            mailbox[rookFrom] = (byte) (base + 3);
+            ownDelta ^= bb(rookFrom) | bb(rookTo);
+            pstRemove(base + 3, rookTo);
+            pstAdd(base + 3, rookFrom);
         }
 
+        if (moverWhite) { occW ^= ownDelta; occB ^= oppDelta; } else { occB ^= ownDelta; occW ^= oppDelta; }
+        occ = occW | occB;
+
         // Restore castling rights and EP square
         setRightsFromMask(info.oldCastlingRightsMask);
         epSquare = info.oldEpSquare;
-        updateOcc();
+        key = keyHistory[--keyCount];
 
-        // Update NNUE incremental accumulators if available
-        try { if (Nnue.isUsable()) Nnue.onMoveUndone(z, info); } catch (Throwable ignored) {}
+        if (consistencyChecks) verifyConsistency();
 
-        // No mirror updates
+        // Update NNUE incremental accumulators if available
+        try { if (Nnue.isUsable()) Nnue.onMoveUndone(this, info); } catch (Throwable ignored) {}
     }
 
     public int rightsMask() {
@@ -368,13 +514,4 @@ public class Bitboards {
     public void setRightsFromMask(int m) {
         wK = (m & 1) != 0; wQ = (m & 2) != 0; bK = (m & 4) != 0; bQ = (m & 8) != 0;
     }
-
-    private static int promoTypeFromChar(char c) {
-        return switch (c) {
-            case 'n' -> 1;
-            case 'b' -> 2;
-            case 'r' -> 3;
-            default -> 4; // 'q' or default to queen
-        };
-    }
 }
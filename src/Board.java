@@ -10,6 +10,14 @@ public class Board {
     }
 
     public static void loadFEN(String fen) {
+        whiteToMove = loadFEN(bitboards, fen);
+
+        // Rebuild NNUE incremental accumulators if available
+        try { if (Nnue.isUsable()) Nnue.rebuildIncremental(); } catch (Throwable ignored) {}
+    }
+
+    /** Load a FEN into the given bitboards; returns true if white is to move. */
+    public static boolean loadFEN(Bitboards bitboards, String fen) {
         bitboards.clear();
         String[] parts = fen.trim().split(" ");
         String boardPart = parts[0];
@@ -46,7 +54,7 @@ public class Board {
             }
         }
 
-        whiteToMove = activeColor.equals("w");
+        boolean whiteToMove = activeColor.equals("w");
         bitboards.wK = castlingRights.contains("K");
         bitboards.wQ = castlingRights.contains("Q");
         bitboards.bK = castlingRights.contains("k");
@@ -65,8 +73,7 @@ public class Board {
         }
 
         bitboards.updateOcc();
-
-        // Rebuild NNUE incremental accumulators if available
-        try { if (Nnue.isUsable()) Nnue.rebuildIncremental(); } catch (Throwable ignored) {}
+        bitboards.resetKey(whiteToMove);
+        return whiteToMove;
     }
 }
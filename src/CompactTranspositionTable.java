@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Dense transposition table (tt.impl=compact): one entry is a single long, 8 bytes instead of
+ * 16-20, so the same tt.size.mb holds 2-2.5x as many positions.
+ *
+ * Entry layout:
+ *   bits  0-15 key check (upper 16 bits of the Zobrist key; clusterOf folds the high bits into
+ *              the cluster index too, so the check is not independent of it)
+ *   bits 16-30 move without flags (from, to, promotion; see {@link #bestMove})
+ *   bits 31-46 value (16 bit, mate scores compressed, see {@link #packValue})
+ *   bits 47-54 depth + 1 (so a stored entry is never 0)
+ *   bits 55-56 bound flag, 57-62 generation (6 bit, 1..63: newSearch wraps at 63, not 255)
+ * A cluster is {@link #CLUSTER_SIZE} longs (32 bytes). Since an entry is one long written with a
+ * single opaque store, concurrent readers never see a torn entry either. The price is the 16-bit
+ * key check: a probe can return an entry of another position in the same cluster now and then
+ * (about 4 in 65536 misses); the search validates TT moves and tolerates the odd wrong bound.
+ */
+final class CompactTranspositionTable extends TranspositionTable {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final long MAX_CLUSTERS = Integer.MAX_VALUE / CLUSTER_SIZE;
+
+    private static final int C_MOVE_SHIFT = 16;
+    private static final int C_VALUE_SHIFT = 31;
+    private static final int C_DEPTH_SHIFT = 47;
+    private static final int C_FLAG_SHIFT = 55;
+    private static final int C_GEN_SHIFT = 57;
+    private static final long C_GEN_BITS = 63L << C_GEN_SHIFT;
+
+    // Values at or beyond +-MATE_BASE (mate scores) keep their distance to it exactly
+    private static final int MATE_BASE = 99000;
+    private static final int MATE_PACKED = 31000;
+
+    private long clusterCount;
+    private long[] table;
+
+    CompactTranspositionTable(int sizeMb) {
+        resizeMB(sizeMb);
+    }
+
+    @Override
+    public String impl() {
+        return "compact";
+    }
+
+    @Override
+    public int sizeMB() {
+        return (int) (clusterCount * CLUSTER_SIZE * 8 / (1024L * 1024L));
+    }
+
+    @Override
+    public int capacityEntries() {
+        return (int) (clusterCount * CLUSTER_SIZE);
+    }
+
+    @Override
+    public void resizeMB(int sizeMb) {
+        if (sizeMb <= 0) {
+            sizeMb = 1;
+        }
+        long clusters = (long) sizeMb * 1024L * 1024L / (CLUSTER_SIZE * 8);
+        if (clusters > MAX_CLUSTERS) clusters = MAX_CLUSTERS;
+
+        table = null;
+        clusterCount = clusters;
+        table = new long[(int) (clusters * CLUSTER_SIZE)];
+        generation = 1;
+    }
+
+    @Override
+    public void clear() {
+        if (table != null) {
+            Arrays.fill(table, 0L);
+        }
+        generation = 1;
+    }
+
+    /** Own generation cycle 1..63, so it fits the 6 entry bits and ages stay right across the wrap. */
+    @Override
+    public void newSearch() {
+        generation = (byte) (generation >= 63 ? 1 : generation + 1);
+    }
+
+    @Override
+    long probeEntry(long key) {
+        long[] t = table;
+        int base = (int) (clusterOf(key, clusterCount) * CLUSTER_SIZE);
+        long check = key >>> 48;
+        for (int i = base; i < base + CLUSTER_SIZE; i++) {
+            long e = (long) LONGS.getOpaque(t, i);
+            if (e != 0 && (e & 0xFFFF) == check) {
+                long fresh = e & ~C_GEN_BITS | currentGen() << C_GEN_SHIFT; // refresh age on use
+                if (fresh != e) LONGS.setOpaque(t, i, fresh);
+                return pack(unpackValue((int) (e >> C_VALUE_SHIFT) & 0xFFFF),
+                        cDepth(e), (int) (e >>> C_FLAG_SHIFT) & 3, (int) (e >>> C_MOVE_SHIFT) & 0x7FFF);
+            }
+        }
+        return MISS;
+    }
+
+    /** Moves are stored without flags; they are derived again from the position. */
+    @Override
+    public int bestMove(long entry, Bitboards bb) {
+        int m = move(entry);
+        if (m == Move.NONE) return Move.NONE;
+        int from = Move.from(m);
+        if (((bb.occ >>> from) & 1L) == 0) {
+            countCollision(); // no piece to move: the entry is another position's
+            return Move.NONE;
+        }
+        return Move.encode(bb, from, Move.to(m), Move.promo(m));
+    }
+
+    @Override
+    int slotAge(int slot) {
+        long e = (long) LONGS.getOpaque(table, slot);
+        return e == 0 ? -1 : age(e);
+    }
+
+    @Override
+    long dataBytes() {
+        return (long) table.length * 8;
+    }
+
+    @Override
+    void writeData(FileChannel ch, long pos) throws IOException {
+        transfer(ch, pos, table, true);
+    }
+
+    @Override
+    void readData(FileChannel ch, long pos) throws IOException {
+        transfer(ch, pos, table, false);
+    }
+
+    @Override
+    void storeEntry(long key, int depth, int flag, int value, int bestMoveCode) {
+        long[] t = table;
+        int base = (int) (clusterOf(key, clusterCount) * CLUSTER_SIZE);
+        long check = key >>> 48;
+
+        // 1) Update if key already present
+        for (int i = base; i < base + CLUSTER_SIZE; i++) {
+            long e = (long) LONGS.getOpaque(t, i);
+            if (e != 0 && (e & 0xFFFF) == check) {
+                int move = bestMoveCode != 0 ? bestMoveCode : (int) (e >>> C_MOVE_SHIFT) & 0x7FFF;
+                // Keep deeper info unless the new info is exact (same rule as the array table)
+                if (depth >= cDepth(e) || flag == 0 /* EXACT */) {
+                    LONGS.setOpaque(t, i, cPack(check, move, value, depth, flag));
+                } else {
+                    long m = (long) (move & 0x7FFF) << C_MOVE_SHIFT;
+                    LONGS.setOpaque(t, i, e & ~(C_GEN_BITS | 0x7FFFL << C_MOVE_SHIFT) | m | currentGen() << C_GEN_SHIFT);
+                }
+                return;
+            }
+        }
+
+        // 2) Use an empty slot if available, 3) else the lowest (depth - 8*age)
+        int victim = base;
+        int worstScore = Integer.MAX_VALUE;
+        for (int i = base; i < base + CLUSTER_SIZE; i++) {
+            long e = (long) LONGS.getOpaque(t, i);
+            if (e == 0) {
+                victim = i;
+                break;
+            }
+            int score = cDepth(e) - (age(e) * 8);
+            if (score < worstScore) {
+                worstScore = score;
+                victim = i;
+            }
+        }
+
+        if (stats != null) {
+            long old = (long) LONGS.getOpaque(t, victim);
+            if (old != 0) countOverwrite(cDepth(old));
+        }
+        LONGS.setOpaque(t, victim, cPack(check, bestMoveCode, value, depth, flag));
+    }
+
+
+    private long currentGen() {
+        return generation & 63;
+    }
+
+    // Searches since the entry was written (generations cycle through 1..63)
+    private int age(long e) {
+        return (int) Math.floorMod(currentGen() - (e >>> C_GEN_SHIFT), 63L);
+    }
+
+    private long cPack(long check, int move, int value, int depth, int flag) {
+        long d = Math.max(0, Math.min(254, depth)) + 1;
+        return check
+                | (long) (move & 0x7FFF) << C_MOVE_SHIFT
+                | (long) packValue(value) << C_VALUE_SHIFT
+                | d << C_DEPTH_SHIFT
+                | (long) (flag & 3) << C_FLAG_SHIFT
+                | currentGen() << C_GEN_SHIFT;
+    }
+
+    private static int cDepth(long e) {
+        return (int) (e >>> C_DEPTH_SHIFT & 0xFF) - 1;
+    }
+
+    // Scores clamped to 16 bits; mate scores (100000 + depth) stay exact up to MATE_BASE + 1767
+    static int packValue(int v) {
+        if (v >= MATE_BASE) return MATE_PACKED + Math.min(v - MATE_BASE, Short.MAX_VALUE - MATE_PACKED);
+        if (v <= -MATE_BASE) return (-MATE_PACKED - Math.min(-v - MATE_BASE, Short.MAX_VALUE - MATE_PACKED)) & 0xFFFF;
+        return Math.max(-(MATE_PACKED - 1), Math.min(MATE_PACKED - 1, v)) & 0xFFFF;
+    }
+
+    static int unpackValue(int packed) {
+        int s = (short) packed;
+        if (s >= MATE_PACKED) return MATE_BASE + (s - MATE_PACKED);
+        if (s <= -MATE_PACKED) return -MATE_BASE - (-s - MATE_PACKED);
+        return s;
+    }
+}
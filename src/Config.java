@@ -1,8 +1,9 @@
 import java.io.*;
 import java.util.Properties;
+import java.util.TreeMap;
 
 public class Config {
-    private static final String CONFIG_FILE = "bot.properties";
+    private static String CONFIG_FILE = "bot.properties";
     private static Config instance;
     private Properties properties;
     
@@ -18,6 +19,39 @@ public class Config {
         return instance;
     }
     
+    /**
+     * For tests: without a bot.properties in the working directory, write the
+     * default config to a temp file instead of creating one in the tree. An existing
+     * bot.properties (e.g. with nnue.path set) is still read. Call before the first getInstance().
+     */
+    static synchronized void useTestFile() {
+        if (instance != null || new File(CONFIG_FILE).exists()) return;
+        try {
+            File tmp = File.createTempFile("bot", ".properties");
+            tmp.delete();
+            tmp.deleteOnExit();
+            CONFIG_FILE = tmp.getPath();
+        } catch (IOException e) {
+            System.err.println("Could not create temp config file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Read bot.properties again (e.g. between games after editing it). Settings that the
+     * engine applies at runtime, like tt.size.mb, take effect through the caller.
+     */
+    public synchronized void reload() {
+        File configFile = new File(CONFIG_FILE);
+        if (!configFile.exists()) return;
+        Properties fresh = new Properties();
+        try (FileInputStream fis = new FileInputStream(configFile)) {
+            fresh.load(fis);
+            properties = fresh;
+        } catch (IOException e) {
+            System.err.println("Error reloading config file: " + e.getMessage());
+        }
+    }
+
     private void loadConfig() {
         // Try to load from properties file first
         File configFile = new File(CONFIG_FILE);
@@ -45,6 +79,8 @@ public class Config {
 
         // Engine TT defaults
         defaultProps.setProperty("tt.size.mb", "64");
+        // Search threads (1 = single-threaded, >1 = Lazy SMP helpers)
+        defaultProps.setProperty("threads", "1");
         
         try (FileOutputStream fos = new FileOutputStream(CONFIG_FILE)) {
             defaultProps.store(fos, "Bot Configuration - Replace YOUR_LICHESS_BOT_TOKEN_HERE with your actual token");
@@ -113,6 +149,44 @@ public class Config {
         return file.getAbsolutePath();
     }
 
+    // Several nets (nnue.nets / NNUE_NETS), picked per search by think time, see Nnue.selectNet:
+    // comma-separated "path@minThinkMs", e.g. "nnue2/quantised.bin@0,nnue/quantised.bin@1500".
+    // Returns minThinkMs -> absolute path; empty when not set (then nnue.path is used)
+    public TreeMap<Long, String> getNnueNets() {
+        String env = System.getenv("NNUE_NETS");
+        String p = (env != null && !env.isEmpty()) ? env : properties.getProperty("nnue.nets", "");
+        TreeMap<Long, String> nets = new TreeMap<>();
+        for (String entry : p.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) continue;
+            int at = entry.lastIndexOf('@');
+            long minMs = 0;
+            String path = entry;
+            if (at >= 0) {
+                path = entry.substring(0, at).trim();
+                try {
+                    minMs = Long.parseLong(entry.substring(at + 1).trim());
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring nnue.nets entry with bad think time: " + entry);
+                    continue;
+                }
+            }
+            File file = new File(path);
+            if (!file.isAbsolute()) {
+                file = new File(System.getProperty("user.dir"), path);
+            }
+            nets.put(Math.max(0, minMs), file.getAbsolutePath());
+        }
+        return nets;
+    }
+
+    // Pick the net once per game from the clock (game) or for every search from its budget (search)
+    public boolean isNnueNetPerGame() {
+        String env = System.getenv("NNUE_NETS_SELECT");
+        String p = (env != null && !env.isEmpty()) ? env : properties.getProperty("nnue.nets.select", "search");
+        return p.trim().equalsIgnoreCase("game");
+    }
+
     // Optional NNUE sign-flip for debugging integration mismatches.
     public boolean getNnueFlipSign() {
         String env = System.getenv("NNUE_FLIP_SIGN");
@@ -130,6 +204,13 @@ public class Config {
         return m.toLowerCase();
     }
 
+    // NNUE inner loops on the Vector API when available (needs --add-modules jdk.incubator.vector)
+    public boolean isNnueSimd() {
+        String env = System.getenv("NNUE_SIMD");
+        String p = (env != null && !env.isEmpty()) ? env : properties.getProperty("nnue.simd", "true");
+        return !(p.equalsIgnoreCase("0") || p.equalsIgnoreCase("false") || p.equalsIgnoreCase("no") || p.equalsIgnoreCase("off"));
+    }
+
     // --- Transposition Table configuration ---
     public int getTtSizeMB() {
         // Env override
@@ -152,11 +233,102 @@ public class Config {
         }
     }
 
-    private static int clampTtSize(int mb) {
+    // 32 GB is the most the off-heap table can address (int slot index)
+    static int clampTtSize(int mb) {
         if (mb < 1) return 1;
-        if (mb > 4096) return 4096;
+        if (mb > 32768) return 32768;
         return mb;
     }
+
+    // TT implementation: array, offheap or lockless, see TranspositionTable.create.
+    // Default: array for one search thread, lockless (no torn entries) for Lazy SMP
+    public String getTtImpl() {
+        String env = System.getenv("TT_IMPL");
+        String impl = (env != null && !env.isEmpty()) ? env : properties.getProperty("tt.impl");
+        if (impl == null || impl.isBlank()) return getThreads() > 1 ? "lockless" : "array";
+        return impl.trim().toLowerCase();
+    }
+
+    // True if tt.impl / TT_IMPL names an implementation (then the thread count never changes it)
+    public boolean isTtImplConfigured() {
+        String env = System.getenv("TT_IMPL");
+        String impl = (env != null && !env.isEmpty()) ? env : properties.getProperty("tt.impl");
+        return impl != null && !impl.isBlank();
+    }
+
+    // Optional file the TT is restored from at startup and saved to on exit (empty = off)
+    public String getTtPersistPath() {
+        String env = System.getenv("TT_PERSIST_PATH");
+        String path = (env != null && !env.isEmpty()) ? env : properties.getProperty("tt.persist.path", "");
+        if (path == null || path.isBlank()) return null;
+        File file = new File(path.trim());
+        if (!file.isAbsolute()) {
+            file = new File(System.getProperty("user.dir"), path.trim());
+        }
+        return file.getAbsolutePath();
+    }
+
+    // Keep the TT between games instead of clearing it on a new game
+    public boolean isTtKeepWarm() {
+        String env = System.getenv("TT_KEEP_WARM");
+        String p = (env != null) ? env : properties.getProperty("tt.keep.warm", "false");
+        return p.equalsIgnoreCase("1") || p.equalsIgnoreCase("true") || p.equalsIgnoreCase("yes");
+    }
+
+    // Count TT probes/hits/stores (TtStats) and print them after every search
+    public boolean isTtStats() {
+        String env = System.getenv("TT_STATS");
+        String p = (env != null) ? env : properties.getProperty("tt.stats", "false");
+        return p.equalsIgnoreCase("1") || p.equalsIgnoreCase("true") || p.equalsIgnoreCase("yes");
+    }
+
+    // Eval cache size in MB (0 = off), see EvalCache
+    public int getEvalCacheMB() {
+        String env = System.getenv("EVAL_CACHE_MB");
+        String p = (env != null && !env.isEmpty()) ? env : properties.getProperty("eval.cache.mb", "0");
+        try {
+            return Math.max(0, Math.min(1024, Integer.parseInt(p.trim())));
+        } catch (NumberFormatException ignored) {
+            return 0;
+        }
+    }
+
+    // Lazy eval margin in cp (0 = off), see Evaluation.evaluation(Bitboards, boolean, int, int)
+    public int getEvalLazyMargin() {
+        String env = System.getenv("EVAL_LAZY_MARGIN");
+        String p = (env != null && !env.isEmpty()) ? env : properties.getProperty("eval.lazy.margin", "0");
+        try {
+            return Math.max(0, Integer.parseInt(p.trim()));
+        } catch (NumberFormatException ignored) {
+            return 0;
+        }
+    }
+
+    // --- Search threads (Lazy SMP) ---
+    public int getThreads() {
+        // Env override
+        String env = System.getenv("THREADS");
+        if (env != null && !env.isEmpty()) {
+            try {
+                return clampThreads(Integer.parseInt(env.trim()));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        // Properties fallback
+        String p = properties.getProperty("threads", "1");
+        try {
+            return clampThreads(Integer.parseInt(p.trim()));
+        } catch (NumberFormatException ignored) {
+            return 1;
+        }
+    }
+
+    static int clampThreads(int n) {
+        if (n < 1) return 1;
+        if (n > 256) return 256;
+        return n;
+    }
     
     public void validateConfiguration() {
         try {
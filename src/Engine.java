@@ -0,0 +1,300 @@
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Self-contained engine instance.
+ *
+ * An engine owns its position (bitboards, side to move, Zobrist hash and NNUE accumulators),
+ * its search contexts (main thread plus Lazy SMP helpers) and either owns its transposition
+ * table or shares one passed in by the caller. Several engines can therefore search different
+ * positions in the same JVM at the same time.
+ *
+ * The static API in {@link MoveFinder} and {@link Board} is backed by one default engine that
+ * searches the global {@code Board.bitboards} with {@code MoveFinder.tt()}.
+ *
+ * The table can be replaced at runtime ({@link #resizeTt}): the new table is allocated on a
+ * background thread while searches keep using the old one, and the next search (or new game)
+ * switches over. A search therefore never sees its table change underneath it.
+ */
+public final class Engine {
+    private final Bitboards board;
+    private volatile TranspositionTable tt;
+    // False for a table passed in by the caller: it is shared, so the engine never replaces it itself
+    private final boolean ownsTt;
+    private final SearchContext main;
+
+    // Resized table, allocated by TT_ALLOCATOR and installed at the start of the next search
+    private final AtomicReference<TranspositionTable> pendingTt = new AtomicReference<>();
+    // Latest resize request and its size; older requests still queued are dropped
+    private volatile int ttRequest;
+    private volatile int ttRequestMb;
+
+    // One allocation at a time, so two huge tables are never built at once
+    private static final ExecutorService TT_ALLOCATOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "tt-alloc");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Side to move for the instance API (the static API passes it explicitly); the Zobrist key
+    // is maintained by the board itself
+    private boolean whiteToMove = true;
+
+    // Lazy SMP: number of search threads (main + helpers) and the helper pool
+    private volatile int threads = Config.getInstance().getThreads();
+    private final ArrayList<SearchContext> helpers = new ArrayList<>();
+    private final ArrayList<Future<?>> helperTasks = new ArrayList<>();
+    private int activeHelpers = 0;
+    private ExecutorService helperPool;
+
+    /** Engine with its own transposition table of the given size. */
+    public Engine(int ttSizeMb) {
+        this(new Bitboards(), TranspositionTable.create(ttSizeMb), true);
+    }
+
+    /** Engine sharing an existing transposition table (e.g. several analysis jobs on one table). */
+    public Engine(TranspositionTable sharedTt) {
+        this(new Bitboards(), sharedTt, false);
+    }
+
+    Engine(Bitboards board, TranspositionTable tt, boolean ownsTt) {
+        this.board = board;
+        this.tt = tt;
+        this.ownsTt = ownsTt;
+        this.ttRequestMb = tt.requestedMB();
+        this.main = new SearchContext(0, board, tt);
+    }
+
+    SearchContext mainContext() { return main; }
+
+    public Bitboards board() { return board; }
+    public TranspositionTable tt() { return tt; }
+    public boolean whiteToMove() { return whiteToMove; }
+    public long hash() { return board.key(); }
+
+    /**
+     * Number of search threads. Going to Lazy SMP with an own table and no tt.impl configured
+     * switches the table to the lockless one (same size), since the others can hand helper
+     * threads torn entries; waits for the allocation, so the next search already uses it.
+     */
+    public void setThreads(int n) {
+        threads = Config.clampThreads(n);
+        if (threads > 1 && ownsTt && !Config.getInstance().isTtImplConfigured()) {
+            if (!latestTt().impl().equals("lockless")) resizeTt("lockless", ttRequestMb).join();
+        }
+    }
+    public int getThreads() { return threads; }
+
+    /** Enable/disable killer and history ordering of quiet moves for all search threads. */
+    public void setQuietHeuristics(boolean on) {
+        main.useQuietHeuristics = on;
+        for (SearchContext h : helpers) h.useQuietHeuristics = on;
+    }
+
+    // --- Transposition table ---
+
+    /**
+     * Replace the table by one of the given implementation and size. Allocation happens on a
+     * background thread (the JVM zeroes the new arrays/buffers there, so every page is touched
+     * before a search uses it); the old table keeps serving searches until the next search
+     * starts after the allocation. No-op if the table already has this implementation and size.
+     * Allocations run one after another on the single {@code tt-alloc} thread (of all engines).
+     * A request superseded by a newer one is skipped if it has not started yet; if it is already
+     * allocating, its table is dropped right after instead of being returned. The future completes
+     * with the new table, or with the current one if the request failed or was superseded.
+     */
+    public synchronized CompletableFuture<TranspositionTable> resizeTt(String impl, int sizeMb) {
+        int request = ++ttRequest;
+        ttRequestMb = sizeMb;
+        TranspositionTable current = latestTt();
+        if (current.impl().equals(impl) && current.requestedMB() == sizeMb) {
+            return CompletableFuture.completedFuture(current);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            if (request != ttRequest) return latestTt(); // superseded by a newer request
+            pendingTt.set(null); // let a pending table go before building the next one
+            try {
+                TranspositionTable next = TranspositionTable.create(impl, sizeMb);
+                // A newer request came in during the allocation: let this table go to the GC
+                if (request != ttRequest) return latestTt();
+                if (current.stats() != null) next.enableStats(true);
+                pendingTt.set(next);
+                return next;
+            } catch (OutOfMemoryError e) {
+                System.err.println("TT resize to " + sizeMb + " MB failed (" + e.getMessage() + "), keeping " + tt.sizeMB() + " MB");
+                return tt;
+            }
+        }, TT_ALLOCATOR);
+    }
+
+    /** Resize with the configured implementation (tt.impl; unset: lockless while threads > 1). */
+    public CompletableFuture<TranspositionTable> resizeTt(int sizeMb) {
+        Config cfg = Config.getInstance();
+        return resizeTt(threads > 1 && !cfg.isTtImplConfigured() ? "lockless" : cfg.getTtImpl(), sizeMb);
+    }
+
+    // Table the next search will use
+    private TranspositionTable latestTt() {
+        TranspositionTable next = pendingTt.get();
+        return next != null ? next : tt;
+    }
+
+    /** Switch to a resized table if one is ready. Only call between searches. */
+    void installPendingTt() {
+        TranspositionTable next = pendingTt.getAndSet(null);
+        if (next != null) {
+            tt = next;
+            main.tt = next;
+        }
+    }
+
+    // --- Position API ---
+
+    /** Reset to the start position and forget everything learned in the TT. */
+    public void newGame() {
+        installPendingTt();
+        tt.clear();
+        setStartPosition();
+    }
+
+    public void setStartPosition() {
+        board.initStartPosition();
+        whiteToMove = true;
+        afterPositionChange();
+    }
+
+    public void setPosition(String fen) {
+        whiteToMove = Board.loadFEN(board, fen);
+        afterPositionChange();
+    }
+
+    /** Play a move given in UCI notation (e.g. "e2e4", "e7e8q"). */
+    public void makeMove(String uci) {
+        makeMove(new Zug(uci));
+    }
+
+    public void makeMove(Zug zug) {
+        board.applyMove(zug, new MoveInfo());
+        whiteToMove = !whiteToMove;
+    }
+
+    private void afterPositionChange() {
+        board.resetKey(whiteToMove);
+        try { if (Nnue.isUsable()) Nnue.rebuildIncremental(board); } catch (Throwable ignored) {}
+    }
+
+    // --- Search API ---
+
+    /** Search the current position for up to timeLimitMs and return the best move (null if none). */
+    public Zug search(long timeLimitMs) {
+        return iterativeDeepening(whiteToMove, timeLimitMs, 64);
+    }
+
+    /** Single-threaded fixed-depth search of the current position. */
+    public Zug searchDepth(int depth) {
+        installPendingTt();
+        return MoveFinder.searchToDepth(main, whiteToMove, depth);
+    }
+
+    /** Ask a running search to stop as soon as possible; safe to call from any thread. */
+    public void stop() {
+        main.stop = true;
+        for (int i = 0; i < activeHelpers; i++) helpers.get(i).stop = true;
+    }
+
+    // Node counter for benchmarking (main thread plus helpers of the last search)
+    public void resetNodeCounter() {
+        main.nodes = 0;
+        for (SearchContext h : helpers) h.nodes = 0;
+    }
+
+    public long getNodeCounter() {
+        long total = main.nodes;
+        for (int i = 0; i < activeHelpers; i++) total += helpers.get(i).nodes;
+        return total;
+    }
+
+    // Time-limited iterative deepening; stops after the deadline or once the main thread completed maxDepth
+    Zug iterativeDeepening(boolean isWhite, long timeLimitMs, int maxDepth) {
+        installPendingTt();
+        // With several NNUE nets: the one for this budget (before the helpers copy the position)
+        try { if (Nnue.isUsable()) Nnue.selectNet(board, timeLimitMs); } catch (Throwable ignored) {}
+        TranspositionTable tt = this.tt;
+        tt.newSearch();
+        TtStats stats = tt.stats();
+        if (stats != null) stats.reset();
+        long startMs = System.currentTimeMillis();
+
+        main.resetForSearch();
+        main.tt = tt;
+        main.searchEndTimeMs = startMs + Math.max(1, timeLimitMs);
+        MoveFinder.IterationResult result;
+        startHelpers(isWhite);
+        try {
+            result = MoveFinder.searchIterations(main, isWhite, maxDepth);
+        } finally {
+            stopHelpers();
+        }
+        if (result.best == Move.NONE) return null;
+
+        // Emit exactly one minimal UCI info line so GUIs like fastchess don't warn
+        long nodes = getNodeCounter();
+        long elapsed = Math.max(1, System.currentTimeMillis() - startMs);
+        System.out.printf("info depth %d score cp %d nodes %d nps %d hashfull %d%n",
+                Math.max(1, result.depth), result.score, nodes, nodes * 1000L / elapsed, tt.hashfull());
+        if (stats != null) System.out.println("info string tt " + stats.format(tt));
+
+        return Move.toZug(result.best);
+    }
+
+    // --- Lazy SMP helpers ---
+
+    // Start threads-1 helpers on private copies of the current position; they share the TT.
+    private void startHelpers(boolean isWhite) {
+        activeHelpers = threads - 1;
+        if (activeHelpers <= 0) {
+            activeHelpers = 0;
+            return;
+        }
+        if (helperPool == null) {
+            helperPool = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "search-helper");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        while (helpers.size() < activeHelpers) {
+            SearchContext h = new SearchContext(helpers.size() + 1, new Bitboards(), tt);
+            h.useQuietHeuristics = main.useQuietHeuristics;
+            helpers.add(h);
+        }
+        for (int i = 0; i < activeHelpers; i++) {
+            SearchContext helper = helpers.get(i);
+            helper.resetForSearch();
+            helper.tt = tt;
+            helper.searchEndTimeMs = main.searchEndTimeMs;
+            helper.board.copyFrom(board);
+            helperTasks.add(helperPool.submit(() -> MoveFinder.searchIterations(helper, isWhite, 64)));
+        }
+    }
+
+    // Called by the main thread once it is done; waits until every helper has left the tree.
+    private void stopHelpers() {
+        for (int i = 0; i < activeHelpers; i++) helpers.get(i).stop = true;
+        for (Future<?> f : helperTasks) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                System.err.println("Search helper failed: " + e.getCause());
+            }
+        }
+        helperTasks.clear();
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that independent Engine instances do not share search state.
+ *
+ * Two engines (each with its own TT) play a few plies from different positions at a
+ * fixed depth, once one after the other and once concurrently on two threads. Fixed-depth
+ * single-threaded search is deterministic, so both runs must produce the same moves.
+ *
+ * Usage:
+ *   java -cp out EngineIsolationTest [depth] [plies]
+ */
+public final class EngineIsolationTest {
+    private static final String FEN_A = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String FEN_B = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    public static void main(String[] args) throws Exception {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+
+        try { Nnue.tryAutoLoad(); } catch (Throwable ignored) {}
+
+        // Sequential reference
+        List<String> seqA = play(FEN_A, depth, plies);
+        List<String> seqB = play(FEN_B, depth, plies);
+
+        // Concurrent run
+        List<List<String>> par = Arrays.asList(null, null);
+        Thread ta = new Thread(() -> par.set(0, play(FEN_A, depth, plies)));
+        Thread tb = new Thread(() -> par.set(1, play(FEN_B, depth, plies)));
+        ta.start(); tb.start();
+        ta.join(); tb.join();
+
+        System.out.println("A sequential: " + seqA);
+        System.out.println("A concurrent: " + par.get(0));
+        System.out.println("B sequential: " + seqB);
+        System.out.println("B concurrent: " + par.get(1));
+
+        if (!seqA.equals(par.get(0)) || !seqB.equals(par.get(1))) {
+            System.err.println("FAIL: concurrent engines diverged from sequential run");
+            System.exit(1);
+        }
+        System.out.println("OK: engines are isolated");
+    }
+
+    private static List<String> play(String fen, int depth, int plies) {
+        Engine engine = new Engine(16);
+        engine.setPosition(fen);
+        List<String> moves = new ArrayList<>();
+        for (int i = 0; i < plies; i++) {
+            Zug best = engine.searchDepth(depth);
+            if (best == null) break;
+            moves.add(best.processZug());
+            engine.makeMove(best);
+        }
+        return moves;
+    }
+}
@@ -0,0 +1,72 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Direct-mapped cache of static evaluations (eval.cache.mb), in front of NNUE and the PST eval.
+ *
+ * One entry is a single long: the upper 48 bits of the lookup key and the eval as 16 bits.
+ * The slot comes from the low bits of the key, so a hit needs 48 matching bits beyond the slot
+ * index. Entries are read and written with single opaque accesses, so all search threads (and
+ * engines) can share one cache without torn entries; a lost update only costs a recompute.
+ *
+ * The lookup key is the Zobrist key mixed with the perspective and the evaluator in use
+ * (see {@link Evaluation#evaluation(Bitboards, boolean)}), so a net reload or switching to PST
+ * never returns stale values. Evals outside the 16-bit range are not cached.
+ */
+public final class EvalCache {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final long KEY_MASK = ~0xFFFFL;
+
+    private final long[] table;
+    private final int mask;
+
+    // Plain counters like TtStats: a slight undercount with several search threads
+    long probes, hits;
+
+    /** sizeMb: table size, rounded down to a power of two entries (at least 1024). */
+    EvalCache(int sizeMb) {
+        long entries = Math.max(1024L, sizeMb * 1024L * 1024L / 8);
+        int n = Integer.highestOneBit((int) Math.min(entries, 1 << 30));
+        table = new long[n];
+        mask = n - 1;
+    }
+
+    int sizeMB() {
+        return (int) ((long) table.length * 8 / (1024 * 1024));
+    }
+
+    /** Cached eval for the key, or Integer.MIN_VALUE on a miss. */
+    int probe(long key) {
+        probes++;
+        long e = (long) LONGS.getOpaque(table, (int) key & mask);
+        if (e != 0 && ((e ^ key) & KEY_MASK) == 0) {
+            hits++;
+            return (short) e;
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    void store(long key, int eval) {
+        if (eval != (short) eval) return;
+        LONGS.setOpaque(table, (int) key & mask, (key & KEY_MASK) | (eval & 0xFFFFL));
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0L);
+        resetStats();
+    }
+
+    public void resetStats() {
+        probes = hits = 0;
+    }
+
+    public double hitRate() {
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    public String format() {
+        return String.format("%d MB probes %d hits %d (%.1f%%)", sizeMB(), probes, hits, 100.0 * hitRate());
+    }
+}
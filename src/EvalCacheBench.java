@@ -0,0 +1,74 @@
+/**
+ * Eval cache ({@link EvalCache}, eval.cache.mb) on vs. off.
+ *
+ * Fixed-depth single-thread searches on the bench positions, with the NNUE eval (if loaded) and
+ * with the PST eval, each without and with the cache. The cache returns exactly the values the
+ * evaluator would, so both runs must search the same tree (same nodes and best moves). Reports
+ * the best time of 3 interleaved rounds, NPS, static eval calls per second (the calls are the
+ * cache probes) and the hit rate.
+ *
+ * Usage:
+ *   java -cp out EvalCacheBench [depth] [cacheMb]
+ */
+public final class EvalCacheBench {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        int cacheMb = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, Config.getInstance().getEvalCacheMB());
+
+        Zobrist.initZobrist();
+        try { Nnue.tryAutoLoad(); } catch (Throwable ignored) {}
+
+        // JIT warm-up, both paths
+        for (int mb : new int[]{0, cacheMb}) {
+            Evaluation.setEvalCacheMB(mb);
+            for (String fen : BenchPositions.FENS) BenchPositions.engine(fen).searchDepth(depth - 1);
+        }
+
+        System.out.println("=== Eval cache bench: depth " + depth + ", " + cacheMb + " MB ===");
+        boolean failed = false;
+        for (boolean pst : new boolean[]{false, true}) {
+            if (!pst && !Nnue.isUsable()) continue;
+            Evaluation.setForcePstOnly(pst);
+            long[] nodes = new long[2], ms = {Long.MAX_VALUE, Long.MAX_VALUE};
+            String[] best = new String[2];
+            long calls = 0, hits = 0;
+            // Modes interleaved, best time of ROUNDS (the machine's noise is larger than the effect)
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int mode = 0; mode < 2; mode++) {
+                    Evaluation.setEvalCacheMB(mode == 0 ? 0 : cacheMb);
+                    long time = 0;
+                    nodes[mode] = 0;
+                    best[mode] = "";
+                    // Fresh engine (empty TT) per position; the eval cache is kept across positions
+                    // like it is across the moves of a game, its counters cover all of them
+                    for (String fen : BenchPositions.FENS) {
+                        Engine e = BenchPositions.engine(fen);
+                        long t0 = System.nanoTime();
+                        Zug z = e.searchDepth(depth);
+                        time += (System.nanoTime() - t0) / 1_000_000L;
+                        nodes[mode] += e.getNodeCounter();
+                        best[mode] += (z == null ? "-" : z.processZug()) + " ";
+                    }
+                    ms[mode] = Math.min(ms[mode], time);
+                    EvalCache c = Evaluation.evalCache();
+                    if (c != null) { calls = c.probes; hits = c.hits; }
+                }
+            }
+            String name = pst ? "PST " : "NNUE";
+            for (int mode = 0; mode < 2; mode++) {
+                double sec = Math.max(1, ms[mode]) / 1000.0;
+                System.out.printf("%s cache %-3s nodes %9d  time %6d ms  NPS %8.0f  evals/s %9.0f%n",
+                        name, mode == 0 ? "off" : "on", nodes[mode], ms[mode], nodes[mode] / sec, calls / sec);
+            }
+            System.out.printf("%s hit rate %.1f%% (%d of %d eval calls)%n", name, 100.0 * hits / Math.max(1, calls), hits, calls);
+            if (nodes[0] != nodes[1] || !best[0].equals(best[1])) {
+                System.out.println("  MISMATCH: the cache changed the search");
+                failed = true;
+            }
+        }
+        Evaluation.setForcePstOnly(false);
+        if (failed) System.exit(1);
+    }
+}
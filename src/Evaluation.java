@@ -154,6 +154,32 @@ public class Evaluation {
             eg_king,
     };
 
+    // Material + PST per piece (mailbox index: 0..5 white P..K, 6..11 black) and square at
+    // [piece * 64 + sq], white positive, black negative, mg and eg packed into one int (mg * 65536
+    // + eg, see pstMg/pstEg; sums stay far inside 16 bits per half), and the game phase per
+    // piece. Bitboards keeps the sums as running totals (pstScore, pstPhase) through make/unmake.
+    static final int[] PST = new int[12 * 64];
+    static final int[] PHASE = new int[12];
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            int type = piece % 6;
+            int color = piece < 6 ? WHITE : BLACK;
+            PHASE[piece] = gamePhaseInc[pieceCode(type, color)];
+            for (int sq = 0; sq < 64; sq++) {
+                int tableIndex = (color == WHITE) ? sq : flip(sq);
+                int sign = color == WHITE ? 1 : -1;
+                int mg = sign * (mgValue[type] + mgTables[type][tableIndex]);
+                int eg = sign * (egValue[type] + egTables[type][tableIndex]);
+                PST[piece * 64 + sq] = mg * 65536 + eg;
+            }
+        }
+    }
+
+    static int pstMg(int packed) { return (packed + 0x8000) >> 16; }
+
+    static int pstEg(int packed) { return (short) packed; }
+
     private static int flip(int sq) {
         return sq ^ 56;
     }
@@ -166,34 +192,120 @@ public class Evaluation {
 
     public static void setForcePstOnly(boolean v) { forcePstOnly = v; }
 
+    // Static evals shared by all search threads (eval.cache.mb, null = off)
+    private static volatile EvalCache cache = createCache(Config.getInstance().getEvalCacheMB());
+    // Mixed into the cache key: perspective and evaluator (NNUE keys use the net's salt)
+    private static final long BLACK_SALT = 0x6A09E667F3BCC908L;
+    private static final long PST_SALT = 0xBB67AE8584CAA73BL;
+
+    private static EvalCache createCache(int mb) {
+        return mb > 0 ? new EvalCache(mb) : null;
+    }
+
+    /** Replace the eval cache by an empty one of the given size (0 = off). */
+    public static void setEvalCacheMB(int mb) {
+        cache = createCache(mb);
+    }
+
+    /** The eval cache, null when off. */
+    public static EvalCache evalCache() {
+        return cache;
+    }
+
+    // Lazy eval (eval.lazy.margin in cp, 0 = off): the PST score decides a qsearch stand-pat on its
+    // own when it is further than the margin outside [alpha, beta], without the NNUE call
+    private static volatile int lazyMargin = Config.getInstance().getEvalLazyMargin();
+    // Plain counters like EvalCache: lazy checks, and NNUE calls they saved
+    static long lazyProbes, lazySkips;
+
+    public static void setLazyMargin(int cp) { lazyMargin = Math.max(0, cp); }
+
+    public static int lazyMargin() { return lazyMargin; }
+
+    public static void resetLazyStats() { lazyProbes = lazySkips = 0; }
+
+    /** Share of the lazy checks that skipped the NNUE call. */
+    public static double lazySkipRate() {
+        return lazyProbes == 0 ? 0 : (double) lazySkips / lazyProbes;
+    }
+
     public static int evaluation(boolean isWhite) {
-        if (forcePstOnly) return evaluatePstOnly(isWhite);
+        return evaluation(Board.bitboards, isWhite);
+    }
+
+    /** Static eval for isWhite; served from the eval cache when the position was evaluated before. */
+    public static int evaluation(Bitboards bitboards, boolean isWhite) {
+        EvalCache c = cache;
+        if (c == null) return evaluationUncached(bitboards, isWhite);
+        boolean pst = forcePstOnly || !Nnue.isUsable();
+        long key = bitboards.key() ^ (isWhite ? 0L : BLACK_SALT) ^ (pst ? PST_SALT : Nnue.netSalt(bitboards));
+        int v = c.probe(key);
+        if (v != Integer.MIN_VALUE) return v;
+        v = pst ? evaluatePstOnly(bitboards, isWhite) : evaluationUncached(bitboards, isWhite);
+        c.store(key, v);
+        return v;
+    }
+
+    /**
+     * Static eval for a node searched with [alpha, beta]: with lazy eval on and NNUE in use, the
+     * PST score is returned when it is more than the margin below alpha or above beta (the NNUE
+     * eval would decide the same way there); otherwise the full evaluation().
+     */
+    public static int evaluation(Bitboards bitboards, boolean isWhite, int alpha, int beta) {
+        int margin = lazyMargin;
+        if (margin > 0 && !forcePstOnly && Nnue.isUsable()) {
+            lazyProbes++;
+            int pst = evaluatePstOnly(bitboards, isWhite);
+            if (pst - margin >= beta) { lazySkips++; return pst - margin; }
+            if (pst + margin <= alpha) { lazySkips++; return pst + margin; }
+        }
+        return evaluation(bitboards, isWhite);
+    }
+
+    private static int evaluationUncached(Bitboards bitboards, boolean isWhite) {
+        if (forcePstOnly) return evaluatePstOnly(bitboards, isWhite);
         // Prefer NNUE if available
         if (Nnue.isUsable()) {
             try {
-                return Nnue.evaluate(isWhite);
+                return Nnue.evaluate(bitboards, isWhite);
             } catch (Throwable t) {
                 // If NNUE fails for any reason, fall back to classic PST eval
                 System.err.println("NNUE evaluation failed, falling back to PST: " + t.getMessage());
             }
         }
-        return evaluatePstOnly(isWhite);
+        return evaluatePstOnly(bitboards, isWhite);
+    }
+
+    public static int evaluatePstOnly(boolean isWhite) {
+        return evaluatePstOnly(Board.bitboards, isWhite);
     }
 
     /**
-     * Classic PST/material evaluation only (no NNUE).
+     * Classic PST/material evaluation only (no NNUE), from the running totals of the board.
      * Returns side-to-move perspective: positive = good for isWhite, negative = bad.
      */
-    public static int evaluatePstOnly(boolean isWhite) {
+    public static int evaluatePstOnly(Bitboards bitboards, boolean isWhite) {
+        int gamePhase = bitboards.pstPhase;
+        if (gamePhase > 24) gamePhase = 24;
+        int egPhase = 24 - gamePhase;
+        int packed = bitboards.pstScore;
+        int mgScore = isWhite ? pstMg(packed) : -pstMg(packed);
+        int egScore = isWhite ? pstEg(packed) : -pstEg(packed);
+        // evaluation based on weighted average of middlegame and endgame
+        return (mgScore * gamePhase + egScore * egPhase) / 24;
+    }
+
+    /** evaluatePstOnly recomputed from all pieces (reference for the running totals). */
+    static int evaluatePstFull(Bitboards bitboards, boolean isWhite) {
         int[] mg = new int[2]; // middlegame scores for white and black
         int[] eg = new int[2]; // endgame scores for white and black
         int gamePhase = 0;
 
         // Evaluate white pieces via bitboards
-        gamePhase += evaluatePiecesForColorBB(true, mg, eg);
+        gamePhase += evaluatePiecesForColorBB(bitboards, true, mg, eg);
 
         // Evaluate black pieces via bitboards
-        gamePhase += evaluatePiecesForColorBB(false, mg, eg);
+        gamePhase += evaluatePiecesForColorBB(bitboards, false, mg, eg);
 
         if (gamePhase > 24) gamePhase = 24;
         int egPhase = 24 - gamePhase;
@@ -208,12 +320,12 @@ public class Evaluation {
     /**
      * Evaluate all pieces for a given color using bitboards
      */
-    private static int evaluatePiecesForColorBB(boolean white, int[] mg, int[] eg) {
+    private static int evaluatePiecesForColorBB(Bitboards bitboards, boolean white, int[] mg, int[] eg) {
         int gamePhase = 0;
         int color = white ? WHITE : BLACK;
 
         for (int pieceType = 0; pieceType < 6; pieceType++) {
-            long bb = Board.bitboards.pieces(white, pieceType);
+            long bb = bitboards.pieces(white, pieceType);
             while (bb != 0) {
                 int sq = Long.numberOfTrailingZeros(bb);
                 bb &= bb - 1;
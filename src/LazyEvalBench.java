@@ -0,0 +1,135 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Lazy eval (eval.lazy.margin) on vs. off, with the NNUE eval.
+ *
+ * 1. Speed: fixed-depth single-thread searches on the bench positions, without and with the
+ *    margin (best time of 3 interleaved rounds): nodes, time, NPS and how many qsearch stand-pats
+ *    were decided by the PST bound alone (NNUE calls skipped).
+ * 2. Strength: a match at a fixed node budget per move, lazy vs. full eval, both colours of
+ *    the first 8 plies of every n-th line of the opening book. Each move deepens until the budget is
+ *    spent (the last completed depth plays). Games end on mate, stalemate, threefold repetition,
+ *    or after 200 plies by PST material (more than 200 cp = win, otherwise draw). Reports the
+ *    lazy side's score and the Elo difference; with the same nodes the lazy side may only lose
+ *    by the positions the PST bound misjudges.
+ *
+ * Usage:
+ *   java -cp out LazyEvalBench [margin] [depth] [games] [nodesPerMove]
+ */
+public final class LazyEvalBench {
+    private static final String BOOK = "openingdatabank/gm_games5moves.txt";
+    private static final int ROUNDS = 3;
+    private static final int MAX_PLIES = 200;
+
+    public static void main(String[] args) throws IOException {
+        int configured = Config.getInstance().getEvalLazyMargin();
+        int margin = args.length > 0 ? Integer.parseInt(args[0]) : configured > 0 ? configured : 600;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+        int games = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        long nodesPerMove = args.length > 3 ? Long.parseLong(args[3]) : 20_000;
+
+        Zobrist.initZobrist();
+        Nnue.tryAutoLoad();
+        if (!Nnue.isUsable()) {
+            System.err.println("NNUE not usable, nothing to measure");
+            return;
+        }
+
+        // JIT warm-up, both paths
+        for (int m : new int[]{0, margin}) {
+            Evaluation.setLazyMargin(m);
+            for (String fen : BenchPositions.FENS) BenchPositions.engine(fen).searchDepth(depth - 1);
+        }
+
+        System.out.println("=== Lazy eval bench: margin " + margin + " cp, depth " + depth + ", H=" + Nnue.hiddenSize() + " ===");
+        long[] nodes = new long[2], ms = {Long.MAX_VALUE, Long.MAX_VALUE};
+        long probes = 0, skips = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int mode = 0; mode < 2; mode++) {
+                Evaluation.setLazyMargin(mode == 0 ? 0 : margin);
+                Evaluation.resetLazyStats();
+                long time = 0;
+                nodes[mode] = 0;
+                for (String fen : BenchPositions.FENS) {
+                    Engine e = BenchPositions.engine(fen);
+                    long t0 = System.nanoTime();
+                    e.searchDepth(depth);
+                    time += (System.nanoTime() - t0) / 1_000_000L;
+                    nodes[mode] += e.getNodeCounter();
+                }
+                ms[mode] = Math.min(ms[mode], time);
+                if (mode == 1) { probes = Evaluation.lazyProbes; skips = Evaluation.lazySkips; }
+            }
+        }
+        for (int mode = 0; mode < 2; mode++) {
+            System.out.printf("lazy %-3s nodes %9d  time %6d ms  NPS %8.0f%n", mode == 0 ? "off" : "on",
+                    nodes[mode], ms[mode], nodes[mode] * 1000.0 / Math.max(1, ms[mode]));
+        }
+        System.out.printf("NNUE calls skipped: %d of %d stand-pats (%.1f%%)%n", skips, probes, 100.0 * skips / Math.max(1, probes));
+
+        if (games > 0) match(margin, games, nodesPerMove);
+        Evaluation.setLazyMargin(configured);
+    }
+
+    // Lazy (margin) vs. full eval at a fixed node budget; prints the lazy side's result
+    private static void match(int margin, int games, long nodesPerMove) throws IOException {
+        List<String> book = Files.readAllLines(Paths.get(BOOK));
+        int wins = 0, draws = 0, losses = 0;
+        Evaluation.resetLazyStats();
+        for (int g = 0; g < games; g++) {
+            String[] line = book.get((g / 2) * (book.size() / Math.max(1, (games + 1) / 2))).trim().split("\\s+");
+            boolean lazyWhite = g % 2 == 0;
+            int r = play(line, lazyWhite, margin, nodesPerMove);
+            if (r == 0) draws++;
+            else if ((r > 0) == lazyWhite) wins++;
+            else losses++;
+        }
+        double score = (wins + draws / 2.0) / games;
+        double elo = score <= 0 || score >= 1 ? Double.NaN : -400 * Math.log10(1 / score - 1);
+        System.out.printf("match %d nodes/move: lazy +%d =%d -%d  score %.1f%%  Elo %+.0f  (skipped %.1f%% of its stand-pats)%n",
+                nodesPerMove, wins, draws, losses, 100 * score, elo, 100 * Evaluation.lazySkipRate());
+    }
+
+    // One game from the opening line; 1 = white won, -1 = black won, 0 = draw
+    private static int play(String[] opening, boolean lazyWhite, int margin, long nodesPerMove) {
+        Engine white = BenchPositions.engine(BenchPositions.FENS[0]), black = BenchPositions.engine(BenchPositions.FENS[0]);
+        HashMap<Long, Integer> seen = new HashMap<>();
+        int[] buf = new int[BitboardMoveGen.MAX_MOVES];
+        for (int ply = 0; ply < MAX_PLIES; ply++) {
+            boolean wtm = white.whiteToMove();
+            if (BitboardMoveGen.generateLegal(wtm, white.board(), buf, BitboardMoveGen.ALL) == 0) {
+                return white.board().inCheck(wtm) ? (wtm ? -1 : 1) : 0;
+            }
+            if (seen.merge(white.hash(), 1, Integer::sum) >= 3) return 0;
+            Zug z;
+            if (ply < 8 && ply < opening.length) {
+                z = new Zug(opening[ply]);
+            } else {
+                Evaluation.setLazyMargin(wtm == lazyWhite ? margin : 0);
+                z = searchNodes(wtm ? white : black, nodesPerMove);
+                if (z == null) return 0;
+            }
+            white.makeMove(z);
+            black.makeMove(z);
+        }
+        int pst = Evaluation.evaluatePstOnly(white.board(), true);
+        return pst > 200 ? 1 : pst < -200 ? -1 : 0;
+    }
+
+    // Deepen until the node budget is spent; the move of the last completed depth
+    private static Zug searchNodes(Engine e, long budget) {
+        Zug best = null;
+        long spent = 0;
+        for (int d = 1; d < SearchContext.MAX_PLY && spent < budget; d++) {
+            Zug z = e.searchDepth(d);
+            if (z == null) break;
+            best = z;
+            spent += e.getNodeCounter();
+        }
+        return best;
+    }
+}
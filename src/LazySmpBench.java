@@ -0,0 +1,60 @@
+/**
+ * Lazy SMP scaling benchmark.
+ *
+ * For 1/2/4/8 threads (or the counts given on the command line) this runs
+ *  - a fixed-time search and reports total nodes and NPS over all threads
+ *  - a search to a fixed depth and reports the time the main thread needed to reach it
+ * on a few bench positions. The TT is cleared before every run.
+ *
+ * Usage:
+ *   java -cp out LazySmpBench [depth] [timeMs] [threads...]
+ */
+public final class LazySmpBench {
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        long timeMs = args.length > 1 ? Long.parseLong(args[1]) : 3000;
+        int[] threadCounts = {1, 2, 4, 8};
+        if (args.length > 2) {
+            threadCounts = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) threadCounts[i - 2] = Integer.parseInt(args[i]);
+        }
+
+        Zobrist.initZobrist();
+        try { Nnue.tryAutoLoad(); } catch (Throwable ignored) {}
+
+        // Warm up the JIT so the first thread count is not penalised
+        MoveFinder.setThreads(1);
+        setup(BenchPositions.FENS[1]);
+        MoveFinder.iterativeDeepening(Board.whiteToMove, timeMs);
+
+        System.out.println("=== Lazy SMP bench: fixed time " + timeMs + " ms, time-to-depth " + depth + " ===");
+        for (int threads : threadCounts) {
+            MoveFinder.setThreads(threads);
+
+            long nodes = 0, elapsedMs = 0, depthMs = 0;
+            for (String fen : BenchPositions.FENS) {
+                // Fixed time: NPS over all threads
+                setup(fen);
+                MoveFinder.resetNodeCounter();
+                long start = System.nanoTime();
+                MoveFinder.iterativeDeepening(Board.whiteToMove, timeMs);
+                elapsedMs += (System.nanoTime() - start) / 1_000_000L;
+                nodes += MoveFinder.getNodeCounter();
+
+                // Time to depth: main thread stops after completing 'depth'
+                setup(fen);
+                start = System.nanoTime();
+                MoveFinder.iterativeDeepening(Board.whiteToMove, Long.MAX_VALUE / 4, depth);
+                depthMs += (System.nanoTime() - start) / 1_000_000L;
+            }
+
+            System.out.printf("threads=%d  nodes=%d  NPS=%d  time-to-depth-%d=%d ms%n",
+                    threads, nodes, nodes * 1000L / Math.max(1, elapsedMs), depth, depthMs);
+        }
+    }
+
+    private static void setup(String fen) {
+        Board.loadFEN(fen);
+        MoveFinder.tt().clear();
+    }
+}
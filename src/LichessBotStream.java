@@ -16,7 +16,6 @@ public class LichessBotStream {
     static String moves; //alle bisherigen züge aber in einem string
     static int moveCount; //um herauszufinden, wer dran ist
     private static int lastProcessedMoveCount = 0; //für gui update und game state update
-    public static long startHash;
 
     // Zeitkontrolle (Basiszeit in Sekunden und Inkrement in Sekunden)
     private static int baseTimeSeconds = -1;
@@ -35,6 +34,7 @@ public class LichessBotStream {
     public static void main(String[] args) {
         // Validate configuration before starting
         config.validateConfiguration();
+        MoveFinder.enableTtPersistence();
         
         HttpClient client = HttpClient.newHttpClient();
 
@@ -226,6 +226,13 @@ else if ("gameFull".equals(type)) { // erster state nach gamestart
                                     } catch (Exception e) {
                                         System.err.println("Fehler beim Lesen der Zeitkontrolle aus gameFull: " + e.getMessage());
                                     }
+                                    // bot.properties neu lesen; geänderte tt.size.mb wird im Hintergrund angelegt
+                                    config.reload();
+                                    MoveFinder.resizeTt(config.getTtSizeMB());
+                                    // nnue.nets.select=game: Netz einmal pro Partie nach der Bedenkzeit des ersten Zuges
+                                    Nnue.setGameThinkTime(config.isNnueNetPerGame() && baseTimeSeconds > 0
+                                            ? TimeManager.computeThinkTimeMs(baseTimeSeconds * 1000L, Math.max(0, incrementSeconds) * 1000L)
+                                            : -1);
                                     Spiel.newGame();
                                     if(isWhite) {
                                         doFirstMove(gameId);
@@ -265,7 +272,7 @@ else if ("gameFull".equals(type)) { // erster state nach gamestart
                                                     Zug best;
 
                                                     long thinkMs = TimeManager.computeThinkTimeMs(timeLeft, incMs);
-                                                    best = MoveFinder.iterativeDeepening(true, startHash, thinkMs);
+                                                    best = MoveFinder.iterativeDeepening(true, thinkMs);
 
                                                     playMove(gameId, best.processZug());
                                                 }
@@ -282,7 +289,7 @@ else if ("gameFull".equals(type)) { // erster state nach gamestart
                                                     Zug best;
 
                                                     long thinkMs = TimeManager.computeThinkTimeMs(timeLeft, incMs);
-                                                    best = MoveFinder.iterativeDeepening(false, startHash, thinkMs);
+                                                    best = MoveFinder.iterativeDeepening(false, thinkMs);
 
                                                     playMove(gameId, best.processZug());
                                                 }
@@ -341,7 +348,7 @@ else if ("gameFull".equals(type)) { // erster state nach gamestart
             long timeLeft = (whiteTimeMs > 0) ? whiteTimeMs : (long) Math.max(0, baseTimeSeconds) * 1000L;
             long incMs = (whiteIncMs > 0) ? whiteIncMs : Math.max(0, incrementSeconds) * 1000L;
             long thinkMs = TimeManager.computeThinkTimeMs(timeLeft, incMs);
-            zug = MoveFinder.iterativeDeepening(true, startHash, thinkMs);
+            zug = MoveFinder.iterativeDeepening(true, thinkMs);
         }
 
         if (zug == null) {
@@ -351,7 +358,7 @@ else if ("gameFull".equals(type)) { // erster state nach gamestart
 
         playMove(gameId, zug.processZug());
         MoveInfo info = MoveFinder.saveMoveInfo(zug);
-        startHash = MoveFinder.doMoveUpdateHash(zug, info, startHash);
+        MoveFinder.doMoveUpdateHash(zug, info);
         lastProcessedMoveCount++;
     }
 
@@ -382,7 +389,7 @@ else if ("gameFull".equals(type)) { // erster state nach gamestart
                 }
                 zug = new Zug(norm);
                 MoveInfo info = MoveFinder.saveMoveInfo(zug);
-                startHash = MoveFinder.doMoveUpdateHash(new Zug(norm), info, startHash);
+                MoveFinder.doMoveUpdateHash(new Zug(norm), info);
             }
             lastProcessedMoveCount = moveList.length;
         }
@@ -427,9 +434,9 @@ else if ("gameFull".equals(type)) { // erster state nach gamestart
     }
 
     private static Zug panicBest(boolean whiteToMove){
-        return MoveFinder.searchToDepth(whiteToMove, startHash, 2);
+        return MoveFinder.searchToDepth(whiteToMove, 2);
     }
     private static Zug ultraPanicBest(boolean whiteToMove){
-        return MoveFinder.searchToDepth(whiteToMove, startHash, 1);
+        return MoveFinder.searchToDepth(whiteToMove, 1);
     }
 }
@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Transposition table for several search threads (tt.impl=lockless), without locks.
+ *
+ * Every entry is two longs in one array: key ^ data and data, where data is the packed entry
+ * ({@link TranspositionTable}). A writer stores both words, a reader loads both and only accepts
+ * the entry if key ^ data equals its key again. If another thread overwrote one of the words in
+ * between, the check fails and the probe is a miss, so a hit always returns value, depth, bound
+ * and move of one store of that very key (the classic "lockless hashing" scheme).
+ *
+ * The words are accessed with opaque VarHandle reads/writes: each long is read and written
+ * atomically (plain long accesses are not guaranteed to be, JLS 17.7), and on x86/ARM64 this
+ * costs the same as a plain access. A cluster of {@link #CLUSTER_SIZE} entries is 8 longs = 64
+ * bytes; replacement is the same as {@link ArrayTranspositionTable}.
+ */
+final class LocklessTranspositionTable extends TranspositionTable {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // 2 longs per entry
+    private static final int CLUSTER_LONGS = CLUSTER_SIZE * 2;
+    private static final long MAX_CLUSTERS = Integer.MAX_VALUE / CLUSTER_LONGS;
+
+    private long clusterCount;
+    private long[] table;
+
+    LocklessTranspositionTable(int sizeMb) {
+        resizeMB(sizeMb);
+    }
+
+    @Override
+    public String impl() {
+        return "lockless";
+    }
+
+    @Override
+    public int sizeMB() {
+        return (int) (clusterCount * CLUSTER_LONGS * 8 / (1024L * 1024L));
+    }
+
+    @Override
+    public int capacityEntries() {
+        return (int) (clusterCount * CLUSTER_SIZE);
+    }
+
+    @Override
+    public void resizeMB(int sizeMb) {
+        if (sizeMb <= 0) {
+            sizeMb = 1;
+        }
+        long clusters = (long) sizeMb * 1024L * 1024L / (CLUSTER_LONGS * 8);
+        if (clusters < 1) clusters = 1;
+        if (clusters > MAX_CLUSTERS) clusters = MAX_CLUSTERS;
+
+        table = null;
+        clusterCount = clusters;
+        table = new long[(int) (clusters * CLUSTER_LONGS)];
+        generation = 1;
+    }
+
+    @Override
+    public void clear() {
+        if (table != null) {
+            Arrays.fill(table, 0L);
+        }
+        generation = 1;
+    }
+
+    @Override
+    long probeEntry(long key) {
+        long[] t = table;
+        int base = (int) (clusterOf(key, clusterCount) * CLUSTER_LONGS);
+        for (int i = base; i < base + CLUSTER_LONGS; i += 2) {
+            long data = (long) LONGS.getOpaque(t, i + 1);
+            if ((data & GEN_BITS) != 0 && ((long) LONGS.getOpaque(t, i) ^ data) == key) {
+                long fresh = withGeneration(data); // refresh age on use
+                if (fresh != data) {
+                    LONGS.setOpaque(t, i + 1, fresh);
+                    LONGS.setOpaque(t, i, key ^ fresh);
+                }
+                return fresh;
+            }
+        }
+        return MISS;
+    }
+
+
+    @Override
+    int slotAge(int slot) {
+        int g = generation((long) LONGS.getOpaque(table, 2 * slot + 1));
+        return g == 0 ? -1 : (generation - g) & 0xFF;
+    }
+
+    @Override
+    long dataBytes() {
+        return (long) table.length * 8;
+    }
+
+    @Override
+    void writeData(FileChannel ch, long pos) throws IOException {
+        transfer(ch, pos, table, true);
+    }
+
+    @Override
+    void readData(FileChannel ch, long pos) throws IOException {
+        transfer(ch, pos, table, false);
+    }
+
+    @Override
+    void storeEntry(long key, int depth, int flag, int value, int bestMoveCode) {
+        long[] t = table;
+        int base = (int) (clusterOf(key, clusterCount) * CLUSTER_LONGS);
+
+        // 1) Update if key already present
+        for (int i = base; i < base + CLUSTER_LONGS; i += 2) {
+            long data = (long) LONGS.getOpaque(t, i + 1);
+            if ((data & GEN_BITS) != 0 && ((long) LONGS.getOpaque(t, i) ^ data) == key) {
+                int move = bestMoveCode != 0 ? bestMoveCode : move(data);
+                long fresh;
+                // Keep deeper info unless the new info is exact (same rule as the array table)
+                if (depth >= depth(data) || flag == 0 /* EXACT */) {
+                    fresh = pack(value, depth, flag, move);
+                } else {
+                    fresh = withGeneration(data & ~MOVE_MASK | move);
+                }
+                write(t, i, key, fresh);
+                return;
+            }
+        }
+
+        // 2) Use an empty slot if available, 3) else the lowest (depth - 8*age).
+        // Torn or foreign entries just look like other keys here.
+        int victim = base;
+        int worstScore = Integer.MAX_VALUE;
+        int gNow = generation & 0xFF;
+        for (int i = base; i < base + CLUSTER_LONGS; i += 2) {
+            long data = (long) LONGS.getOpaque(t, i + 1);
+            int g = generation(data);
+            if (g == 0) {
+                victim = i;
+                break;
+            }
+            int age = (gNow - g) & 0xFF;
+            int score = depth(data) - (age * 8);
+            if (score < worstScore) {
+                worstScore = score;
+                victim = i;
+            }
+        }
+
+        if (stats != null) {
+            long old = (long) LONGS.getOpaque(t, victim + 1);
+            if (generation(old) != 0) countOverwrite(depth(old));
+        }
+        write(t, victim, key, pack(value, depth, flag, bestMoveCode));
+    }
+
+    private static void write(long[] t, int i, long key, long data) {
+        LONGS.setOpaque(t, i + 1, data);
+        LONGS.setOpaque(t, i, key ^ data);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Moves as plain ints, used by move generation, make/unmake, ordering, search and the TT.
+ * {@link Zug} only appears at the UCI/Lichess boundary ({@link #fromZug}/{@link #toZug}).
+ *
+ * Layout:
+ *   bits  0-5   from square (Bitboards indexing, a8=0 .. h1=63)
+ *   bits  6-11  to square
+ *   bits 12-14  promotion: 0=none, 1=q, 2=r, 3=b, 4=n
+ *   bit  15     capture (incl. en passant)
+ *   bit  16     en passant
+ *   bit  17     castling (king move e1g1/e1c1/e8g8/e8c8)
+ *   bit  18     pawn double push
+ * The flags are fully determined by the position, so equal moves always have equal ints and a
+ * TT-move lookup is a plain int compare. 0 (a8a8) is never a legal move and means "no move".
+ */
+public final class Move {
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int EN_PASSANT = 1 << 16;
+    public static final int CASTLE = 1 << 17;
+    public static final int DOUBLE_PUSH = 1 << 18;
+
+    private Move() { }
+
+    public static int of(int from, int to) {
+        return from | (to << 6);
+    }
+
+    public static int of(int from, int to, int promo, int flags) {
+        return from | (to << 6) | (promo << 12) | flags;
+    }
+
+    public static int from(int move) { return move & 63; }
+    public static int to(int move) { return (move >>> 6) & 63; }
+    public static int promo(int move) { return (move >>> 12) & 7; }
+
+    public static boolean isCapture(int move) { return (move & CAPTURE) != 0; }
+    public static boolean isEnPassant(int move) { return (move & EN_PASSANT) != 0; }
+    public static boolean isCastle(int move) { return (move & CASTLE) != 0; }
+    public static boolean isDoublePush(int move) { return (move & DOUBLE_PUSH) != 0; }
+    public static boolean isPromotion(int move) { return (move & (7 << 12)) != 0; }
+
+    /** Neither a capture nor a promotion. */
+    public static boolean isQuiet(int move) { return (move & (CAPTURE | (7 << 12))) == 0; }
+
+    /** Piece type (1..4) a promotion code turns into, -1 for no promotion. */
+    public static int promoPieceType(int move) {
+        return switch (promo(move)) {
+            case 1 -> 4;
+            case 2 -> 3;
+            case 3 -> 2;
+            case 4 -> 1;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Move from squares and promotion code with the flags derived from the position
+     * (the piece on 'from' must belong to the side to move).
+     */
+    public static int encode(Bitboards bb, int from, int to, int promo) {
+        int flags = 0;
+        int type = bb.pieceTypeAt(from, bb.isWhiteAt(from));
+        int dx = (to & 7) - (from & 7);
+        if (((bb.occ >>> to) & 1L) != 0) {
+            flags |= CAPTURE;
+        } else if (type == 0 && to == bb.epSquare && dx != 0) {
+            flags |= CAPTURE | EN_PASSANT;
+        }
+        if (type == 0 && Math.abs(to - from) == 16) flags |= DOUBLE_PUSH;
+        if (type == 5 && Math.abs(dx) == 2) flags |= CASTLE;
+        return of(from, to, promo, flags);
+    }
+
+    /** Move played in the given position, e.g. parsed from UCI or the Lichess stream. */
+    public static int fromZug(Bitboards bb, Zug z) {
+        if (z == null) return NONE;
+        return encode(bb, z.startY * 8 + z.startX, z.endY * 8 + z.endX, promoCode(z.promoteTo));
+    }
+
+    public static Zug toZug(int move) {
+        if (move == NONE) return null;
+        int from = from(move), to = to(move);
+        return new Zug(from & 7, from >>> 3, to & 7, to >>> 3, promoChar(promo(move)));
+    }
+
+    public static String toUci(int move) {
+        int from = from(move), to = to(move);
+        StringBuilder sb = new StringBuilder(5)
+                .append((char) ('a' + (from & 7))).append(8 - (from >>> 3))
+                .append((char) ('a' + (to & 7))).append(8 - (to >>> 3));
+        if (promo(move) != 0) sb.append(promoChar(promo(move)));
+        return sb.toString();
+    }
+
+    static int promoCode(char c) {
+        return switch (c) {
+            case 'q' -> 1;
+            case 'r' -> 2;
+            case 'b' -> 3;
+            case 'n' -> 4;
+            default -> 0;
+        };
+    }
+
+    static char promoChar(int promo) {
+        return switch (promo) {
+            case 1 -> 'q';
+            case 2 -> 'r';
+            case 3 -> 'b';
+            case 4 -> 'n';
+            default -> 0;
+        };
+    }
+}
@@ -1,13 +1,11 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class MoveFinder {
 
-    // Time control for search
-    private static volatile long searchEndTimeMs = Long.MAX_VALUE;
-    private static volatile boolean timeUp = false;
-    // Set to true if an iteration was aborted due to timeout inside the search
-    private static volatile boolean depthAborted = false;
-
 
     static final int EXACT = 0;
     static final int LOWERBOUND = 1;
@@ -20,69 +18,149 @@ public class MoveFinder {
     static final int NMP_MIN_DEPTH = 3;
     static final int REDUCTION_NMP = 2;
 
-    // Fixed-size TT (fast + bounded memory). Size configurable via Config (tt.size.mb / TT_SIZE_MB).
-    static final TranspositionTable tt = new TranspositionTable(Config.getInstance().getTtSizeMB());
+    // Fixed-size TT (fast + bounded memory). Size and layout configurable via Config
+    // (tt.size.mb / TT_SIZE_MB, tt.impl / TT_IMPL) and at runtime (UCI Hash, see resizeTt).
+    // Tables up to SYNC_TT_MB are allocated right here; larger ones start at SYNC_TT_MB and are
+    // built in the background, so startup and the first move don't wait for gigabytes of zeroing.
+    private static final int SYNC_TT_MB = 256;
+
+    // Default engine behind the static API: searches the global Board with its own table.
+    static final Engine engine = new Engine(Board.bitboards,
+            TranspositionTable.create(Math.min(Config.getInstance().getTtSizeMB(), SYNC_TT_MB)), true);
+    private static final SearchContext mainContext = engine.mainContext();
+    // Completes once the configured table size is in place (or allocating it failed)
+    private static CompletableFuture<TranspositionTable> ttReady = engine.resizeTt(Config.getInstance().getTtSizeMB());
+
+    /** Table of the default engine (may be replaced between searches by {@link #resizeTt}). */
+    static TranspositionTable tt() {
+        return engine.tt();
+    }
+
+    /**
+     * Resize the table of the default engine (UCI "setoption name Hash", config reload).
+     * Returns at once; the new table is built in the background and used from the next search on.
+     */
+    public static void resizeTt(int sizeMb) {
+        ttReady = engine.resizeTt(Config.clampTtSize(sizeMb));
+    }
+
+    /**
+     * If tt.persist.path is set: restore the table saved there (if the file matches the table)
+     * and save it there again when the JVM exits.
+     */
+    public static void enableTtPersistence() {
+        String path = Config.getInstance().getTtPersistPath();
+        if (path == null) return;
+        Path file = Path.of(path);
+        // The saved table has the configured size: wait for it, then restore into it
+        ttReady.join();
+        engine.installPendingTt();
+        if (Files.exists(file)) {
+            try {
+                long start = System.nanoTime();
+                boolean ok = tt().load(file);
+                System.err.println(ok ? "TT restored from " + file + " in " + (System.nanoTime() - start) / 1_000_000L + " ms"
+                        : "TT file " + file + " does not match tt.impl/tt.size.mb, starting empty");
+            } catch (IOException e) {
+                System.err.println("TT restore failed: " + e.getMessage());
+            }
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                tt().save(file);
+            } catch (IOException e) {
+                System.err.println("TT save failed: " + e.getMessage());
+            }
+        }, "tt-save"));
+    }
+
+    public static void setThreads(int n) { engine.setThreads(n); }
+    public static int getThreads() { return engine.getThreads(); }
+
+    // Killer/history quiet move ordering (on by default; switchable for benchmarks)
+    public static void setQuietHeuristics(boolean on) { engine.setQuietHeuristics(on); }
 
-    // Node counter for benchmarking
-    private static long nodes;
-    public static void resetNodeCounter() { nodes = 0; }
-    public static long getNodeCounter() { return nodes; }
+    // Node counter for benchmarking (main thread plus helpers of the last search)
+    public static void resetNodeCounter() { engine.resetNodeCounter(); }
+    public static long getNodeCounter() { return engine.getNodeCounter(); }
 
     public static ArrayList<Zug> possibleMoves(boolean white) {
+        return possibleMoves(mainContext, white);
+    }
+
+    static ArrayList<Zug> possibleMoves(SearchContext ctx, boolean white) {
         // Bitboard-based move generation
-        return BitboardMoveGen.generate(white, Board.bitboards);
+        return BitboardMoveGen.generate(white, ctx.board);
+    }
+
+    // Legal root moves (pin/check aware generator, no make/unmake per move) into ctx.rootMoves; returns the count
+    static int legalMoves(SearchContext ctx, boolean white) {
+        return BitboardMoveGen.generateLegal(white, ctx.board, ctx.rootMoves, BitboardMoveGen.ALL);
     }
 
-    public static SearchResult findBestMovesWithAspirationWindow(int depth, boolean isWhite, ArrayList<Zug> orderedMoves, long hash, int alpha, int beta) {
-        if (System.currentTimeMillis() >= searchEndTimeMs) { timeUp = true; return new SearchResult(orderedMoves, 0, false); }
+    private static boolean outOfTime(SearchContext ctx) {
+        return ctx.stop || System.currentTimeMillis() >= ctx.searchEndTimeMs;
+    }
+
+    public static SearchResult findBestMovesWithAspirationWindow(int depth, boolean isWhite, int[] orderedMoves, int alpha, int beta) {
+        return findBestMovesWithAspirationWindow(mainContext, depth, isWhite, orderedMoves, orderedMoves.length, alpha, beta);
+    }
 
-        // Remove illegal moves using bitboards
-        orderedMoves.removeIf(zug -> !Board.bitboards.isLegalMove(zug, isWhite));
-        if (orderedMoves.isEmpty()) return new SearchResult(new ArrayList<>(), 0, false);
+    /**
+     * Searches orderedMoves[0..n) at the root. The result (new order and best score) is written
+     * to the context's reused {@link SearchContext#rootResult}, so it is only valid until the next call.
+     */
+    static SearchResult findBestMovesWithAspirationWindow(SearchContext ctx, int depth, boolean isWhite, int[] orderedMoves, int n, int alpha, int beta) {
+        SearchResult result = ctx.rootResult;
+        if (outOfTime(ctx)) { ctx.timeUp = true; return result.set(orderedMoves, n, 0, false); }
+
+        // Root moves come from the legal generator
+        if (n == 0) return result.set(orderedMoves, 0, 0, false);
 
         // Prefer TT best move at root if available
-        int rootTtIdx = tt.probe(hash);
-        if (rootTtIdx != -1) {
-            int bm = tt.moveAt(rootTtIdx);
-            if (bm != 0) {
-                moveToFront(orderedMoves, bm);
+        long rootTte = ctx.tt.probe(ctx.board.key());
+        if (rootTte != TranspositionTable.MISS) {
+            int bm = ctx.tt.bestMove(rootTte, ctx.board);
+            if (bm != Move.NONE) {
+                moveToFront(orderedMoves, n, bm);
             }
         }
 
-        // List to hold moves with their scores (only fully searched moves)
-        ArrayList<ZugScore> scoredMoves = new ArrayList<>();
-        HashSet<Zug> completed = new HashSet<>();
+        // Moves with their scores (only fully searched moves); moves are searched in order,
+        // so the completed ones are always a prefix of orderedMoves
+        int[] scoredMoves = result.moves;
+        int[] scores = ctx.rootScores;
+        int scoredCount = 0;
 
         int bestScore = Integer.MIN_VALUE;
         boolean failedLow = false;
         boolean failedHigh = false;
+        MoveInfo info = ctx.undo[0];
 
-        for (Zug zug : orderedMoves) {
-            if (System.currentTimeMillis() >= searchEndTimeMs) { timeUp = true; break; }
-
-            MoveInfo info = saveMoveInfo(zug);
-            long oldHash = hash;
+        for (int i = 0; i < n; i++) {
+            int move = orderedMoves[i];
+            if (outOfTime(ctx)) { ctx.timeUp = true; break; }
 
-            hash = doMoveUpdateHash(zug, info, hash);
+            ctx.board.applyMove(move, info);
 
             // Search with aspiration window
-            int score = -negamax(depth-1, -beta, -alpha, !isWhite, hash, true);
+            int score = -negamax(ctx, depth-1, 1, -beta, -alpha, !isWhite, true);
 
             // Always undo before any potential early return/break
-            undoMove(zug, info);
-            hash = oldHash;
+            ctx.board.undoMove(move, info);
 
             // If time ran out or depth aborted during this move's search, do not
             // accept this (potentially misleading) score; stop here and keep
             // previously completed results only.
-            if (timeUp || depthAborted || System.currentTimeMillis() >= searchEndTimeMs) {
-                timeUp = true;
-                depthAborted = true;
+            if (ctx.timeUp || ctx.depthAborted || outOfTime(ctx)) {
+                ctx.timeUp = true;
+                ctx.depthAborted = true;
                 break;
             }
 
-            scoredMoves.add(new ZugScore(zug, score));
-            completed.add(zug);
+            scoredMoves[scoredCount] = move;
+            scores[scoredCount] = score;
+            scoredCount++;
 
             // Track best score and check for aspiration window failures
             if (score > bestScore) {
@@ -102,119 +180,116 @@ public class MoveFinder {
         }
 
         // Check for fail-low (bestScore <= original alpha)
-        if (bestScore <= alpha && !scoredMoves.isEmpty()) {
+        if (bestScore <= alpha && scoredCount > 0) {
             failedLow = true;
         }
 
         // If nothing was fully evaluated at this depth, fall back to previous ordering
-        if (scoredMoves.isEmpty()) {
-            return new SearchResult(orderedMoves, 0, false);
+        if (scoredCount == 0) {
+            return result.set(orderedMoves, n, 0, false);
+        }
+
+        // Sort completed moves descending by score (stable, best moves first)
+        for (int i = 1; i < scoredCount; i++) {
+            int m = scoredMoves[i], sc = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < sc) {
+                scoredMoves[j + 1] = scoredMoves[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            scoredMoves[j + 1] = m;
+            scores[j + 1] = sc;
         }
 
-        // Sort completed moves descending by score (best moves first)
-        scoredMoves.sort((a, b) -> Integer.compare(b.score, a.score));
-
         // Build new order: completed scored moves first, then remaining moves in prior order
-        ArrayList<Zug> newOrder = new ArrayList<>();
-        for (ZugScore zs : scoredMoves) {
-            newOrder.add(zs.zug);
-        }
-        for (Zug z : orderedMoves) {
-            if (!completed.contains(z)) newOrder.add(z);
-        }
+        System.arraycopy(orderedMoves, scoredCount, scoredMoves, scoredCount, n - scoredCount);
 
         // Return the best score from the sorted moves
-        int actualBestScore = scoredMoves.getFirst().score;
-        return new SearchResult(newOrder, actualBestScore, true);
-    }
-
-    // helfer klasse um züge zug sortieren und mit score zu versehen
-    static class ZugScore {
-        Zug zug;
-        int score;
-
-        ZugScore(Zug zug, int score) {
-            this.zug = zug;
-            this.score = score;
-        }
+        return result.set(scoredMoves, n, scores[0], true);
     }
 
-    // Result class to return both moves and best score
+    // Result class to return both moves and best score (one per context, reused every iteration)
     static class SearchResult {
-        ArrayList<Zug> moves;
+        final int[] moves = new int[BitboardMoveGen.MAX_MOVES];
+        int count;
         int bestScore;
         boolean hasScore; // true if we have a valid score
 
-        SearchResult(ArrayList<Zug> moves, int bestScore, boolean hasScore) {
-            this.moves = moves;
+        SearchResult set(int[] moves, int count, int bestScore, boolean hasScore) {
+            if (moves != this.moves) System.arraycopy(moves, 0, this.moves, 0, count);
+            this.count = count;
             this.bestScore = bestScore;
             this.hasScore = hasScore;
+            return this;
         }
     }
 
 
     // Backward-compatible wrapper: allow null moves by default
-    public static int negamax(int depth, int alpha, int beta, boolean isWhite, long hash) {
-        return negamax(depth, alpha, beta, isWhite, hash, true);
+    public static int negamax(int depth, int alpha, int beta, boolean isWhite) {
+        return negamax(mainContext, depth, 0, alpha, beta, isWhite, true);
     }
 
-    public static int negamax(int depth, int alpha, int beta, boolean isWhite, long hash, boolean canNull) {
-        nodes++;
-        if (System.currentTimeMillis() >= searchEndTimeMs) {
-            timeUp = true;
-            depthAborted = true;
-            return Evaluation.evaluation(isWhite);
+    public static int negamax(int depth, int alpha, int beta, boolean isWhite, boolean canNull) {
+        return negamax(mainContext, depth, 0, alpha, beta, isWhite, canNull);
+    }
+
+    static int negamax(SearchContext ctx, int depth, int ply, int alpha, int beta, boolean isWhite, boolean canNull) {
+        ctx.nodes++;
+        if (outOfTime(ctx)) {
+            ctx.timeUp = true;
+            ctx.depthAborted = true;
+            return Evaluation.evaluation(ctx.board, isWhite);
         }
 
         int alphaOrig = alpha;
 
-        int ttIdx = tt.probe(hash);
+        // Zobrist key maintained incrementally by the board's make/unmake
+        long hash = ctx.board.key();
+        long tte = ctx.tt.probe(hash);
 
-        if (ttIdx != -1 && tt.depthAt(ttIdx) >= depth) {
-            int ttVal = tt.valueAt(ttIdx);
-            int ttFlag = tt.flagAt(ttIdx);
-            if (ttLookup(alpha, beta, ttVal, ttFlag)) { return ttVal; }
+        if (tte != TranspositionTable.MISS && TranspositionTable.depth(tte) >= depth) {
+            int ttVal = TranspositionTable.value(tte);
+            int ttFlag = TranspositionTable.flag(tte);
+            if (ttLookup(alpha, beta, ttVal, ttFlag)) { ctx.tt.countCutoff(); return ttVal; }
         }
 
-        if (depth == 0){
-            return qSearch(alpha, beta, isWhite, hash);
+        if (depth == 0 || ply >= SearchContext.MAX_PLY){
+            return qSearch(ctx, ply, alpha, beta, isWhite);
         }
 
+        // Staged move picker: TT move first, later stages are generated only if needed
+        // (picker and undo record come from the per-ply stack, nothing is allocated per node).
+        // Set up before the prunes below so they can check for mate/stalemate first.
+        int ttMove = ctx.tt.bestMove(tte, ctx.board);
+        MovePicker picker = ctx.pickers[ply].init(ctx, ply, isWhite, ttMove);
+        if (ttMove != Move.NONE && picker.ttMove() == Move.NONE) ctx.tt.countCollision();
+
         // Futility context
-        boolean inCheckNow = Board.bitboards.inCheck(isWhite);
+        boolean inCheckNow = ctx.board.inCheck(isWhite);
         boolean nearMateBounds = (alpha <= -(100000 - 200)) || (beta >= (100000 - 200));
         int staticEval = 0;
         boolean haveStaticEval = false;
         if (!inCheckNow && !nearMateBounds && depth <= 2) {
-            staticEval = Evaluation.evaluation(isWhite);
+            staticEval = Evaluation.evaluation(ctx.board, isWhite);
             haveStaticEval = true;
         }
 
-        ArrayList<Zug> pseudoLegalMoves = possibleMoves(isWhite);
-
-        pseudoLegalMoves.removeIf(zug -> !Board.bitboards.isLegalMove(zug, isWhite));
-
-        if (pseudoLegalMoves.isEmpty()) {
-            if (inCheckNow) {
-                return -(100000 + depth);
-            } else {
-                return 0;
-            }
-        }
-
         // Node-level futility pruning (frontier and extended)
         if (!inCheckNow && !nearMateBounds && haveStaticEval) {
             // Depth 1: frontier futility pruning
             if (depth == 1) {
                 int margin1 = 300; // ~ minor piece
-                if (staticEval + margin1 <= alpha) {
+                // Not for a stalemate: that is a draw (0), not a fail-low
+                if (staticEval + margin1 <= alpha && picker.hasMove()) {
                     return alpha; // fail-low hard as per CPW/TR
                 }
             }
             // Depth 2: extended futility pruning
             if (depth == 2) {
                 int margin2 = 500; // ~ rook
-                if (staticEval + margin2 <= alpha) {
+                if (staticEval + margin2 <= alpha && picker.hasMove()) {
                     return alpha; // fail-low hard
                 }
             }
@@ -225,57 +300,45 @@ public class MoveFinder {
         // Null Move Pruning (guard against consecutive null, pawn-only, in-check, and near-mate bounds)
         // Adaptive reduction: r = 2 normally, r = 3 for deeper nodes
         int nmpR = 2 + (depth >= 7 ? 1 : 0);
-        if (canNull && nonPV && !inCheckNow && !nearMateBounds && !Board.bitboards.onlyHasPawns(isWhite) && depth >= (nmpR + 1)) {
+        if (canNull && nonPV && !inCheckNow && !nearMateBounds && !ctx.board.onlyHasPawns(isWhite) && depth >= (nmpR + 1)) {
 
-            long oldHash = hash;
-            NullState ns = new  NullState();
-            hash = doNullMoveUpdateHash(hash, ns, isWhite);
-            int nullMoveScore = -negamax(depth - 1 - nmpR, -beta, -beta + 1, !isWhite, hash, false);
-            undoNullMove(ns);
-            hash = oldHash;
+            ctx.nullMoveEp[ply] = ctx.board.applyNullMove(isWhite);
+            int nullMoveScore = -negamax(ctx, depth - 1 - nmpR, ply + 1, -beta, -beta + 1, !isWhite, false);
+            ctx.board.undoNullMove(ctx.nullMoveEp[ply]);
 
-            if(nullMoveScore >= beta) {
-                tt.store(hash, depth, LOWERBOUND, nullMoveScore, 0);
+            if(nullMoveScore >= beta && picker.hasMove()) {
+                ctx.tt.store(hash, depth, LOWERBOUND, nullMoveScore, 0);
                 return beta;
             }
         }
 
-        MoveOrdering.orderMoves(pseudoLegalMoves, isWhite);
-
-        // If we have a TT entry for this node, try its best move first
-        if (ttIdx != -1) {
-            int bm = tt.moveAt(ttIdx);
-            if (bm != 0) {
-                moveToFront(pseudoLegalMoves, bm);
-            }
-        }
+        MoveInfo info = ctx.undo[ply];
 
         int value = Integer.MIN_VALUE;
-        Zug bestMove = null;
+        int bestMove = Move.NONE;
         int moveIndex = 0;
+        int legalMoves = 0;
         boolean firstMove = true;
-        for (Zug zug : pseudoLegalMoves){
+        int move;
+        while ((move = picker.next()) != Move.NONE) {
+            legalMoves++;
 
-            // Precompute quietness once for this move (before making it)
-            boolean isQuietMove = !Board.bitboards.isCapture(zug) && !Board.bitboards.willPromote(zug);
+            // Quietness is known from the picker stage (before making the move)
+            boolean isQuietMove = picker.isQuiet();
 
-            MoveInfo info = saveMoveInfo(zug);
-            long oldHash = hash;
-
-            hash = doMoveUpdateHash(zug, info, hash);
+            ctx.board.applyMove(move, info);
 
             // Determine if gives check after making the move
-            boolean givesCheck = Board.bitboards.inCheck(!isWhite);
+            boolean givesCheck = ctx.board.inCheck(!isWhite);
 
             // Move-level futility pruning at frontier (depth 1), after we know if it gives check:
             if (!inCheckNow && !nearMateBounds && depth == 1 && isQuietMove && !givesCheck) {
                 // ensure staticEval available
-                if (!haveStaticEval) { staticEval = Evaluation.evaluation(isWhite); haveStaticEval = true; }
+                if (!haveStaticEval) { staticEval = Evaluation.evaluation(ctx.board, isWhite); haveStaticEval = true; }
                 int moveMargin = 150; // safety margin
                 if (staticEval + moveMargin <= alpha) {
                     // prune this quiet move
-                    undoMove(zug, info);
-                    hash = oldHash;
+                    ctx.board.undoMove(move, info);
                     moveIndex++;
                     continue;
                 }
@@ -288,7 +351,7 @@ public class MoveFinder {
             int child;
             if (firstMove) {
                 // Principal variation move: full-window search
-                child = -negamax(depth - 1, -beta, -alpha, !isWhite, hash);
+                child = -negamax(ctx, depth - 1, ply + 1, -beta, -alpha, !isWhite, true);
             } else {
                 // PVS for later moves: start with null-window, possibly reduced by LMR
                 boolean applyLMR = nonPV && !inCheckNow && depth >= 3 && moveIndex >= 3 && isQuietMove && !givesCheck;
@@ -297,38 +360,48 @@ public class MoveFinder {
                 if (searchDepth < 1) searchDepth = depth - 1; // safety
 
                 // Null-window probe
-                child = -negamax(searchDepth, -alpha - 1, -alpha, !isWhite, hash);
+                child = -negamax(ctx, searchDepth, ply + 1, -alpha - 1, -alpha, !isWhite, true);
 
                 // If raised alpha in reduced probe, re-search
                 if (child > alpha) {
                     // If reduced, re-search at full depth null-window first
                     if (r > 0 && (depth - 1) >= 1) {
-                        child = -negamax(depth - 1, -alpha - 1, -alpha, !isWhite, hash);
+                        child = -negamax(ctx, depth - 1, ply + 1, -alpha - 1, -alpha, !isWhite, true);
                     }
                     // If still raises alpha and not fail-high, re-search full window
                     if (child > alpha && child < beta) {
-                        child = -negamax(depth - 1, -beta, -alpha, !isWhite, hash);
+                        child = -negamax(ctx, depth - 1, ply + 1, -beta, -alpha, !isWhite, true);
                     }
                 }
             }
 
             if (child > value) {
                 value = child;
-                bestMove = zug;
+                bestMove = move;
             }
 
-            undoMove(zug, info);
-            hash = oldHash;
+            ctx.board.undoMove(move, info);
 
             alpha = Math.max(alpha, value);
 
-            if(alpha >= beta)
+            if(alpha >= beta) {
+                // Quiet cutoff move: remember as killer and in the history table
+                if (isQuietMove) ctx.updateQuietCutoff(move, isWhite, depth, ply);
                 break; //alpha beta cutoff
+            }
 
             firstMove = false;
             moveIndex++;
            }
 
+        if (legalMoves == 0) {
+            return inCheckNow ? -(100000 + depth) : 0;
+        }
+        if (value == Integer.MIN_VALUE) {
+            // Every move was pruned by futility: fail low
+            value = alphaOrig;
+        }
+
         int flag;
         if (value <= alphaOrig) {
             flag = UPPERBOUND;
@@ -338,34 +411,43 @@ public class MoveFinder {
             flag = EXACT;
         }
 
-        if (!timeUp) {
-            tt.store(hash, depth, flag, value, TranspositionTable.encodeMove(bestMove));
+        if (!ctx.timeUp) {
+            ctx.tt.store(hash, depth, flag, value, bestMove);
         }
 
         return value;
     }
 
-    public static int qSearch(int alpha, int beta, boolean isWhite, long hash){
-        nodes++;
-        if (System.currentTimeMillis() >= searchEndTimeMs) {
-            timeUp = true;
-            depthAborted = true;
-            return Evaluation.evaluation(isWhite);
+    public static int qSearch(int alpha, int beta, boolean isWhite){
+        return qSearch(mainContext, 0, alpha, beta, isWhite);
+    }
+
+    static int qSearch(SearchContext ctx, int ply, int alpha, int beta, boolean isWhite){
+        ctx.nodes++;
+        if (outOfTime(ctx)) {
+            ctx.timeUp = true;
+            ctx.depthAborted = true;
+            return Evaluation.evaluation(ctx.board, isWhite);
+        }
+        if (ply >= SearchContext.MAX_PLY) {
+            return Evaluation.evaluation(ctx.board, isWhite);
         }
         
         // Near mate bounds guard for pruning heuristics
         boolean nearMateBounds = (alpha <= -(100000 - 200)) || (beta >= (100000 - 200));
         
-        int ttIdx = tt.probe(hash);
-        if (ttIdx != -1) {
-            int ttVal = tt.valueAt(ttIdx);
-            int ttFlag = tt.flagAt(ttIdx);
-            if (ttLookup(alpha, beta, ttVal, ttFlag)) { return ttVal; }
+        long hash = ctx.board.key();
+        long tte = ctx.tt.probe(hash);
+        if (tte != TranspositionTable.MISS) {
+            int ttVal = TranspositionTable.value(tte);
+            int ttFlag = TranspositionTable.flag(tte);
+            if (ttLookup(alpha, beta, ttVal, ttFlag)) { ctx.tt.countCutoff(); return ttVal; }
         }
 
         int alphaOrig = alpha;
 
-        int best_value = Evaluation.evaluation(isWhite);
+        // Stand pat; far outside the window the PST bound is enough (lazy eval)
+        int best_value = Evaluation.evaluation(ctx.board, isWhite, alpha, beta);
         
         if( best_value >= beta ) {
             return best_value;
@@ -375,66 +457,73 @@ public class MoveFinder {
             alpha = best_value;
         
         // Detect if side to move is in check – disable delta pruning if so
-        boolean inCheckNow = Board.bitboards.inCheck(isWhite);
+        boolean inCheckNow = ctx.board.inCheck(isWhite);
         
-        ArrayList<Zug> moves = possibleMoves(isWhite);
+        // Move and score buffers of this ply (no allocation per node)
+        int[] moves = ctx.qMoves[ply];
+        int[] scores = ctx.qScores[ply];
+        int n = BitboardMoveGen.generateLegal(isWhite, ctx.board, moves, BitboardMoveGen.ALL);
 
-        moves.removeIf(zug -> !Board.bitboards.isLegalMove(zug, isWhite));
-
-        if (moves.isEmpty()) {
-            if (Board.bitboards.inCheck(isWhite)) {
+        if (n == 0) {
+            if (ctx.board.inCheck(isWhite)) {
                 return -100000;
             } else {
                 return 0;
             }
         }
 
-        ArrayList<Zug> forcingMoves = new ArrayList<>();
-
-        for(Zug zug : moves){
-            if(Board.bitboards.isCapture(zug) || (Board.bitboards.willPromote(zug) && zug.promoteTo == 'q'))
-                forcingMoves.add(zug);
+        // Forcing moves only (captures and queen promotions), scored once, stable insertion sort
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            int m = moves[i];
+            boolean capture = Move.isCapture(m);
+            if (!capture && Move.promo(m) != 1) continue;
+            int s = capture ? MoveOrdering.captureScore(ctx.board, m, isWhite) : 0;
+            if (Move.isPromotion(m)) s += 800;
+            int j = count - 1;
+            while (j >= 0 && scores[j] < s) {
+                scores[j + 1] = scores[j];
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            scores[j + 1] = s;
+            moves[j + 1] = m;
+            count++;
         }
 
-        MoveOrdering.orderMoves(forcingMoves, isWhite);
-
         // If we have a TT entry for this node, try its best move first
-        if (ttIdx != -1) {
-            int bm = tt.moveAt(ttIdx);
-            if (bm != 0) {
-                moveToFront(forcingMoves, bm);
+        if (tte != TranspositionTable.MISS) {
+            int bm = ctx.tt.bestMove(tte, ctx.board);
+            if (bm != Move.NONE) {
+                moveToFront(moves, count, bm);
             }
         }
 
         int flag;
 
-        Zug bestMove = null;
+        int bestMove = Move.NONE;
+        MoveInfo info = ctx.undo[ply];
 
-        for(Zug zug : forcingMoves)  {
-        
-            MoveInfo info = saveMoveInfo(zug);
+        for (int i = 0; i < count; i++)  {
+            int move = moves[i];
         
-            long oldHash = hash;
+            ctx.board.applyMove(move, info);
         
-            hash = doMoveUpdateHash(zug, info, hash);
+            int score = -qSearch(ctx, ply + 1, -beta, -alpha, !isWhite);
         
-            int score = -qSearch(-beta, -alpha, !isWhite, hash);
-        
-            undoMove(zug, info);
-        
-            hash = oldHash;
+            ctx.board.undoMove(move, info);
 
             if( score >= beta ) {
 
                 flag = LOWERBOUND;
-                if (!timeUp) {
-                    tt.store(hash, 0, flag, score, TranspositionTable.encodeMove(zug));
+                if (!ctx.timeUp) {
+                    ctx.tt.store(hash, 0, flag, score, move);
                 }
                 return score;
             }
             if( score > best_value ) {
                 best_value = score;
-                bestMove = zug;
+                bestMove = move;
             }
             if( score > alpha )
                 alpha = score;
@@ -442,8 +531,8 @@ public class MoveFinder {
         if (best_value <= alphaOrig) flag = UPPERBOUND;
         else flag = EXACT;
 
-        if (!timeUp) {
-            tt.store(hash, 0, flag, best_value, TranspositionTable.encodeMove(bestMove));
+        if (!ctx.timeUp) {
+            ctx.tt.store(hash, 0, flag, best_value, bestMove);
         }
         return best_value;
     }
@@ -460,147 +549,151 @@ public class MoveFinder {
     }
 
 
-    public static long doMoveUpdateHash(Zug zug, MoveInfo info, long hash) {
-
-        // Use bitboards for castle rights and en-passant file to avoid relying on mirror flags
-        boolean[] castleRightsBefore = rightsFromMask(Board.bitboards.rightsMask());
-        int fromSqForColor = zug.startY * 8 + zug.startX;
-        boolean moverWhiteForHash = (Board.bitboards.occW & (1L << fromSqForColor)) != 0L;
-        int epBefore = Zobrist.getEnPassantFileFromBB(Board.bitboards, moverWhiteForHash);
-
-        doMoveNoHash(zug, info);
-
-        boolean[] castleRightsAfter = rightsFromMask(Board.bitboards.rightsMask());
-        int epAfter = Zobrist.getEnPassantFileFromBB(Board.bitboards, !moverWhiteForHash);
-
-        hash = Zobrist.updateHash(hash, zug, info, castleRightsBefore, castleRightsAfter, epBefore, epAfter);
-
-        return hash;
+    /** Play a move on the default board; returns the new Zobrist key (maintained by the board). */
+    public static long doMoveUpdateHash(Zug zug, MoveInfo info) {
+        return doMoveUpdateHash(mainContext, zug, info);
     }
 
-    public static long doNullMoveUpdateHash(long hash, NullState ns, boolean whiteToMove) {
-        // Save old EP square and clear EP for null move.
-        // IMPORTANT: computeHash() only includes an en-passant key if the side to move has a pawn that can capture.
-        // So for null moves we must XOR-out the EP key using the same semantics, not just epSquare's file.
-        int epFileHashed = Zobrist.getEnPassantFileFromBB(Board.bitboards, whiteToMove);
-        ns.oldEpSquare = Board.bitboards.epSquare;
-        Board.bitboards.epSquare = -1;
-        return Zobrist.nullMoveHashUpdate(hash, epFileHashed);
+    static long doMoveUpdateHash(SearchContext ctx, Zug zug, MoveInfo info) {
+        ctx.board.applyMove(zug, info);
+        return ctx.board.key();
     }
 
-    public static void undoNullMove(NullState ns) {
-        // Restore previous EP square in bitboards (no mirror flags needed)
-        Board.bitboards.epSquare = ns.oldEpSquare;
+    /**
+     * Undo record for playing zug on the default board. Reused per position of the game history:
+     * keep it until the move is undone, and play the move before asking for the next record.
+     */
+    public static MoveInfo saveMoveInfo(Zug zug) {
+        return mainContext.gameUndo();
+    }
+    public static void undoMove(Zug zug, MoveInfo info) {
+        undoMove(mainContext, zug, info);
     }
 
-    // --- Null Move helpers ---
-    private static class NullState {
-        int oldEpSquare; // -1 or 0..63 square that was EP target before null move
+    static void undoMove(SearchContext ctx, Zug zug, MoveInfo info) {
+        // Undo on the context's bitboards
+        ctx.board.undoMove(zug, info);
     }
 
-    public static MoveInfo saveMoveInfo(Zug zug) {
-        // Bitboard-driven make/undo will populate MoveInfo fields as needed.
-        return new MoveInfo();
+    // Time-limited iterative deepening; search runs until deadline and returns best-so-far
+    public static Zug iterativeDeepening (boolean isWhite, long timeLimitMs){
+        return engine.iterativeDeepening(isWhite, timeLimitMs, 64);
     }
-    public static void undoMove(Zug zug, MoveInfo info) {
-        // Undo on bitboards (also mirrors to Board.brett)
-        Board.bitboards.undoMove(zug, info);
 
-        // No PieceTracker updates (bitboards are authoritative now)
+    // Same as above but also stops once the main thread completed maxDepth (used by benchmarks)
+    static Zug iterativeDeepening(boolean isWhite, long timeLimitMs, int maxDepth) {
+        return engine.iterativeDeepening(isWhite, timeLimitMs, maxDepth);
     }
 
-    // Time-limited iterative deepening; search runs until deadline and returns best-so-far
-    public static Zug iterativeDeepening (boolean isWhite, long hash, long timeLimitMs){
-        tt.newSearch();
-        setSearchDeadline(System.currentTimeMillis() + Math.max(1, timeLimitMs));
+    // Outcome of one thread's iterative deepening loop (best is Move.NONE without legal moves)
+    static final class IterationResult {
+        final int best;
+        final int score;
+        final int depth;
 
-        ArrayList<Zug> order = possibleMoves(isWhite);
-        if (order.isEmpty()) return null;
+        IterationResult(int best, int score, int depth) {
+            this.best = best;
+            this.score = score;
+            this.depth = depth;
+        }
+    }
+
+    // Iterative deepening loop run by the main thread and by every Lazy SMP helper.
+    static IterationResult searchIterations(SearchContext ctx, boolean isWhite, int maxDepth) {
+        ctx.ageHeuristics();
+        int[] order = ctx.rootMoves;
+        int n = legalMoves(ctx, isWhite);
+        if (n == 0) return new IterationResult(Move.NONE, 0, 0);
 
-        MoveOrdering.orderMoves(order, isWhite);
+        MoveOrdering.orderMoves(ctx.board, order, n, isWhite, ctx.rootScores);
 
-        Zug bestSoFar = order.getFirst();
+        int bestSoFar = order[0];
         int previousScore = 0;
         boolean hasPreviousScore = false;
 
-        int depth = 1;
-        while (depth <= 64) {
-            if (System.currentTimeMillis() >= searchEndTimeMs) break;
+        // Helpers with odd ids skip depth 1 so threads do not all search the same iteration in lockstep
+        int depth = ctx.isMainThread() ? 1 : 1 + (ctx.id & 1);
+        while (depth <= maxDepth) {
+            if (outOfTime(ctx)) break;
 
-            timeUp = false;
-            depthAborted = false;
+            ctx.timeUp = false;
+            ctx.depthAborted = false;
 
             SearchResult result;
 
             if (depth == 1 || !hasPreviousScore) {
-                result = findBestMovesWithAspirationWindow(depth, isWhite, order, hash, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1);
+                result = findBestMovesWithAspirationWindow(ctx, depth, isWhite, order, n, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1);
             } else {
                 final int ASPIRATION_WINDOW = 50;
                 int alpha = previousScore - ASPIRATION_WINDOW;
                 int beta = previousScore + ASPIRATION_WINDOW;
 
-                result = searchWithAspirationWindowRetries(depth, isWhite, order, hash, alpha, beta, previousScore);
+                result = searchWithAspirationWindowRetries(ctx, depth, isWhite, order, n, alpha, beta, previousScore);
             }
 
-            if (result.hasScore && !result.moves.isEmpty()) {
-                bestSoFar = result.moves.getFirst();
+            if (result.hasScore && result.count > 0) {
+                bestSoFar = result.moves[0];
                 previousScore = result.bestScore;
                 hasPreviousScore = true;
             }
-            if (!result.moves.isEmpty()) {
-                order = result.moves;
+            if (result.count > 0) {
+                System.arraycopy(result.moves, 0, order, 0, result.count);
             }
 
-            if (depthAborted || timeUp || System.currentTimeMillis() >= searchEndTimeMs) {
+            if (ctx.depthAborted || ctx.timeUp || outOfTime(ctx)) {
                 break;
             }
 
+            ctx.completedDepth = depth;
             depth++;
         }
 
-        // Emit exactly one minimal UCI info line so GUIs like fastchess don't warn
-        int reportedDepth = Math.max(1, depth - 1);
-        int reportScore = hasPreviousScore ? previousScore : 0;
-        System.out.printf("info depth %d score cp %d%n", reportedDepth, reportScore);
-
-        return bestSoFar;
+        return new IterationResult(bestSoFar, hasPreviousScore ? previousScore : 0, ctx.completedDepth);
     }
 
     // Helper method to handle aspiration window retries on fail-high/fail-low
-    private static SearchResult searchWithAspirationWindowRetries(int depth, boolean isWhite, ArrayList<Zug> order, long hash, int alpha, int beta, int expectedScore) {
-        SearchResult result = findBestMovesWithAspirationWindow(depth, isWhite, order, hash, alpha, beta);
+    private static SearchResult searchWithAspirationWindowRetries(SearchContext ctx, int depth, boolean isWhite, int[] order, int n, int alpha, int beta, int expectedScore) {
+        SearchResult result = findBestMovesWithAspirationWindow(ctx, depth, isWhite, order, n, alpha, beta);
 
         // If we have a score and it's outside our aspiration window, we need to re-search with wider window
         if (result.hasScore) {
             if (result.bestScore <= alpha) {
                 // Fail low - research with lowered alpha
-                return findBestMovesWithAspirationWindow(depth, isWhite, order, hash, Integer.MIN_VALUE + 1, beta);
+                return findBestMovesWithAspirationWindow(ctx, depth, isWhite, order, n, Integer.MIN_VALUE + 1, beta);
             } else if (result.bestScore >= beta) {
                 // Fail high - research with raised beta
-                return findBestMovesWithAspirationWindow(depth, isWhite, order, hash, alpha, Integer.MAX_VALUE - 1);
+                return findBestMovesWithAspirationWindow(ctx, depth, isWhite, order, n, alpha, Integer.MAX_VALUE - 1);
             }
         }
 
         return result;
     }
     public static void setSearchDeadline(long deadlineMs) {
-        searchEndTimeMs = deadlineMs;
-        timeUp = false;
+        mainContext.searchEndTimeMs = deadlineMs;
+        mainContext.timeUp = false;
     }
 
     // Fixed-depth search utility used for low-time situations
-    public static Zug searchToDepth(boolean isWhite, long hash, int depth) {
-        tt.newSearch();
-        setSearchDeadline(Long.MAX_VALUE);
-        ArrayList<Zug> order = possibleMoves(isWhite);
-        if (order.isEmpty()) return null;
+    public static Zug searchToDepth(boolean isWhite, int depth) {
+        engine.installPendingTt();
+        return searchToDepth(mainContext, isWhite, depth);
+    }
+
+    static Zug searchToDepth(SearchContext ctx, boolean isWhite, int depth) {
+        ctx.tt.newSearch();
+        ctx.resetForSearch();
+        ctx.ageHeuristics();
+        ctx.searchEndTimeMs = Long.MAX_VALUE;
+        int[] order = ctx.rootMoves;
+        int n = legalMoves(ctx, isWhite);
+        if (n == 0) return null;
 
-        MoveOrdering.orderMoves(order, isWhite);
+        MoveOrdering.orderMoves(ctx.board, order, n, isWhite, ctx.rootScores);
 
         int prevScore = 0;
         boolean hasPreviousScore = false;
 
-        Zug bestSoFar = order.getFirst();
+        int bestSoFar = order[0];
 
         for(int i = 1; i <= depth; i++){
 
@@ -608,20 +701,20 @@ public class MoveFinder {
 
             if (depth == 1 || !hasPreviousScore) {
                 // First depth or no previous score - use full window
-                result = findBestMovesWithAspirationWindow(i, isWhite, order, hash, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1);
+                result = findBestMovesWithAspirationWindow(ctx, i, isWhite, order, n, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1);
             } else {
                 // Use aspiration window based on previous score
                 final int ASPIRATION_WINDOW = 50;
                 int alpha = prevScore - ASPIRATION_WINDOW;
                 int beta = prevScore + ASPIRATION_WINDOW;
 
-                result = searchWithAspirationWindowRetries(i, isWhite, order, hash, alpha, beta, prevScore);
+                result = searchWithAspirationWindowRetries(ctx, i, isWhite, order, n, alpha, beta, prevScore);
             }
 
             // Adopt improvements found so far at this depth
-            if (!result.moves.isEmpty()) {
-                bestSoFar = result.moves.getFirst();
-                order = result.moves;
+            if (result.count > 0) {
+                bestSoFar = result.moves[0];
+                System.arraycopy(result.moves, 0, order, 0, result.count);
 
                 // Update previous score for next iteration if we have a valid score
                 if (result.hasScore) {
@@ -630,7 +723,7 @@ public class MoveFinder {
                 }
             }
         }
-        return bestSoFar;
+        return Move.toZug(bestSoFar);
     }
 
     public static void doMoveNoHash(Zug zug, MoveInfo info) {
@@ -641,51 +734,12 @@ public class MoveFinder {
         // No PieceTracker updates (bitboards are authoritative now)
     }
 
-    private static boolean[] rightsFromMask(int m) {
-        return new boolean[]{ (m & 1) != 0, (m & 2) != 0, (m & 4) != 0, (m & 8) != 0 };
-    }
-
-    // Helpers to prioritize TT best move in ordering
-    private static boolean sameMove(Zug a, Zug b) {
-        if (a == null || b == null) return false;
-        if (a.startX != b.startX || a.startY != b.startY || a.endX != b.endX || a.endY != b.endY) return false;
-        return a.promoteTo == b.promoteTo;
-    }
-
-    private static void moveToFront(List<Zug> moves, Zug target) {
-        if (moves == null || moves.isEmpty() || target == null) return;
-        for (int i = 0; i < moves.size(); i++) {
-            if (sameMove(moves.get(i), target)) {
-                if (i > 0) {
-                    Zug z = moves.remove(i);
-                    moves.add(0, z);
-                }
-                break;
-            }
-        }
-    }
-
-    // Variant that avoids allocating a temporary Zug when using TT best moves.
-    private static void moveToFront(List<Zug> moves, int moveCode) {
-        if (moves == null || moves.isEmpty() || moveCode == 0) return;
-
-        int from = moveCode & 63;
-        int to = (moveCode >>> 6) & 63;
-        int promo = (moveCode >>> 12) & 7;
-
-        int fx = from & 7;
-        int fy = from >>> 3;
-        int tx = to & 7;
-        int ty = to >>> 3;
-        char p = TranspositionTable.promoCharFromCode(promo);
-
-        for (int i = 0; i < moves.size(); i++) {
-            Zug z = moves.get(i);
-            if (z.startX == fx && z.startY == fy && z.endX == tx && z.endY == ty && z.promoteTo == p) {
-                if (i > 0) {
-                    moves.remove(i);
-                    moves.add(0, z);
-                }
+    // Helper to prioritize the TT best move: shift moves[0..i) one slot to the right
+    private static void moveToFront(int[] moves, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = move;
                 break;
             }
         }
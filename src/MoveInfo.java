@@ -1,6 +1,9 @@
 public class MoveInfo {
     public MoveInfo(){ }
 
+    // Squares of the move (set by applyMove)
+    public int from, to;
+
     // Moving piece (type 0..5) and color
     public int movingPieceType;
     public boolean movingPieceWhite;
@@ -16,7 +19,7 @@ public class MoveInfo {
 
     // En passant flags
     public boolean wasEnPassant;
-    public Koordinaten capEnPassantBauerCoords; // square of captured pawn in EP
+    public int epCaptureSq = -1; // square of captured pawn in EP
 
     // Promotion flags
     public boolean wasPromotion;
@@ -25,4 +28,18 @@ public class MoveInfo {
     // Bitboard-related bookkeeping for undo/hash
     public int oldCastlingRightsMask; // bitmask (wK=1,wQ=2,bK=4,bQ=8)
     public int oldEpSquare;           // -1 or 0..63
+
+    // MoveInfo objects are reused by the search; applyMove calls this first
+    void reset() {
+        squareMovedOntoWasEmpty = false;
+        capturedPieceType = 0;
+        capturedPieceWhite = false;
+        rookMoved = false;
+        rookStartX = 0;
+        rookEndX = 0;
+        wasEnPassant = false;
+        epCaptureSq = -1;
+        wasPromotion = false;
+        promotionType = 0;
+    }
 }
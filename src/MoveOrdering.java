@@ -3,48 +3,130 @@ import java.util.ArrayList;
 public class MoveOrdering {
 
     private static final int [] pieceValues = {100, 300, 310, 500, 900, 0};
+    // Exchange values for SEE; the king is "worth" more than any material it could win
+    private static final int [] seeValues = {100, 300, 310, 500, 900, 20000};
 
     public MoveOrdering() {
 
     }
-    private static int evaluateMove(Zug zug, boolean isWhite) {
+    private static int evaluateMove(Bitboards bb, int move, boolean isWhite) {
         int score = 0;
-        // Piece values based on bitboards
-        int from = zug.startY * 8 + zug.startX;
-        boolean moverWhite = (Board.bitboards.occW & (1L << from)) != 0L;
-        int attackerType = Board.bitboards.pieceTypeAt(from, moverWhite);
-
-        boolean isCapture = Board.bitboards.isCapture(zug);
-        if (isCapture) {
-            int to = zug.endY * 8 + zug.endX;
-            int victimType;
-            if (((Board.bitboards.occ >>> to) & 1L) != 0L) {
-                boolean victimWhite = (Board.bitboards.occW & (1L << to)) != 0L;
-                victimType = Board.bitboards.pieceTypeAt(to, victimWhite);
-            } else {
-                victimType = 0; // en passant captures a pawn
-            }
-            int victimValue = pieceValues[victimType];
-            int attackerValue = pieceValues[attackerType];
-            score += 1000 + victimValue - attackerValue;
+        if (Move.isCapture(move)) {
+            score += captureScore(bb, move, isWhite);
         }
-
-        if (attackerType == 0 && Board.bitboards.willPromote(zug)) {
+        if (Move.isPromotion(move)) {
             score += 800;
         }
-
-        // simple castle bonus by king 2-square move
-        if (attackerType == 5 && Math.abs(zug.endX - zug.startX) == 2) {
+        // simple castle bonus
+        if (Move.isCastle(move)) {
             score += 50;
         }
         return score;
     }
+
     public static void orderMoves(ArrayList<Zug> moves, boolean isWhite) {
-        // Züge nach ihrer Bewertung sortieren (absteigende Reihenfolge)
-        moves.sort((move1, move2) -> {
-            int score1 = evaluateMove(move1, isWhite);
-            int score2 = evaluateMove(move2, isWhite);
-            return Integer.compare(score2, score1);
-        });
+        orderMoves(Board.bitboards, moves, isWhite);
+    }
+
+    /** List variant for tools and tests; the search orders int move buffers directly. */
+    public static void orderMoves(Bitboards bb, ArrayList<Zug> moves, boolean isWhite) {
+        int n = moves.size();
+        int[] buf = new int[n];
+        for (int i = 0; i < n; i++) buf[i] = Move.fromZug(bb, moves.get(i));
+        orderMoves(bb, buf, n, isWhite, new int[n]);
+        for (int i = 0; i < n; i++) moves.set(i, Move.toZug(buf[i]));
+    }
+
+    /** Orders moves[0..n) in place; scores is a caller-owned buffer of at least n entries. */
+    public static void orderMoves(Bitboards bb, int[] moves, int n, boolean isWhite, int[] scores) {
+        // Jeden Zug genau einmal bewerten, dann stabil absteigend sortieren (Insertion Sort, Listen sind kurz)
+        for (int i = 0; i < n; i++) scores[i] = evaluateMove(bb, moves[i], isWhite);
+        for (int i = 1; i < n; i++) {
+            int s = scores[i];
+            int m = moves[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < s) {
+                scores[j + 1] = scores[j];
+                moves[j + 1] = moves[j];
+                j--;
+            }
+            scores[j + 1] = s;
+            moves[j + 1] = m;
+        }
+    }
+
+    /** MVV-LVA score of a capture (same scale as evaluateMove: 1000 + victim - attacker). */
+    static int captureScore(Bitboards bb, int move, boolean isWhite) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int attackerType = bb.pieceTypeAt(from, isWhite);
+        int victimType = Move.isEnPassant(move) ? 0 : bb.pieceTypeAt(to, !isWhite);
+        return 1000 + pieceValues[victimType] - pieceValues[attackerType];
+    }
+
+    /**
+     * Static exchange evaluation of a capture on the destination square (swap algorithm incl. x-rays).
+     * Returns the expected material balance for the side making the capture.
+     * gain is a caller-owned scratch buffer (at least 32 entries) so the search does not allocate.
+     */
+    static int see(Bitboards bb, int move, boolean isWhite, int[] gain) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int attackerType = bb.pieceTypeAt(from, isWhite);
+
+        long occ = bb.occ;
+        int victimType;
+        if (!Move.isEnPassant(move)) {
+            victimType = bb.pieceTypeAt(to, !isWhite);
+        } else {
+            // En passant: remove the captured pawn behind the target square
+            victimType = 0;
+            occ ^= 1L << (isWhite ? to + 8 : to - 8);
+        }
+
+        long diagSliders = bb.w[2] | bb.b[2] | bb.w[4] | bb.b[4];
+        long orthoSliders = bb.w[3] | bb.b[3] | bb.w[4] | bb.b[4];
+
+        int d = 0;
+        gain[0] = seeValues[victimType];
+        long fromSet = 1L << from;
+        long attackers = attackersTo(bb, to, occ);
+        boolean side = isWhite;
+        do {
+            d++;
+            gain[d] = seeValues[attackerType] - gain[d - 1];
+            if (Math.max(-gain[d - 1], gain[d]) < 0) break; // neither side can improve by continuing
+            occ ^= fromSet;
+            attackers &= ~fromSet;
+            // X-rays: sliders behind the piece that just captured
+            attackers |= (Attacks.bishopAttacks(to, occ) & diagSliders) | (Attacks.rookAttacks(to, occ) & orthoSliders);
+            attackers &= occ;
+            side = !side;
+            fromSet = 0L;
+            long[] pcs = side ? bb.w : bb.b;
+            for (int t = 0; t < 6; t++) {
+                long set = attackers & pcs[t];
+                if (set != 0) {
+                    fromSet = set & -set;
+                    attackerType = t;
+                    break;
+                }
+            }
+        } while (fromSet != 0 && d < gain.length - 1);
+
+        while (--d > 0) {
+            gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+        }
+        return gain[0];
+    }
+
+    // All pieces of both colours attacking sq, given an occupancy (for sliders)
+    private static long attackersTo(Bitboards bb, int sq, long occ) {
+        return (Attacks.pawnAttack[0][sq] & bb.w[0])
+                | (Attacks.pawnAttack[1][sq] & bb.b[0])
+                | (Attacks.knight[sq] & (bb.w[1] | bb.b[1]))
+                | (Attacks.king[sq] & (bb.w[5] | bb.b[5]))
+                | (Attacks.bishopAttacks(sq, occ) & (bb.w[2] | bb.b[2] | bb.w[4] | bb.b[4]))
+                | (Attacks.rookAttacks(sq, occ) & (bb.w[3] | bb.b[3] | bb.w[4] | bb.b[4]));
     }
 }
@@ -0,0 +1,253 @@
+/**
+ * Staged, lazy move picker for the main search.
+ *
+ * Moves are produced in this order, each stage generated only when the previous one is exhausted:
+ *  1. TT move (validated with {@link BitboardMoveGen#isPseudoLegal}/{@link BitboardMoveGen#isLegal}, nothing generated yet)
+ *  2. good captures (MVV-LVA, incl. capture-promotions; captures losing material by SEE are deferred)
+ *  3. non-capturing promotions
+ *  4. killer moves of this ply (quiet moves that caused a cutoff in a sibling node)
+ *  5. remaining quiet moves by butterfly history (castling bonus on top)
+ *  6. bad captures
+ *
+ * Every move is scored once when its stage is generated; within a stage the best remaining
+ * move is picked by selection sort, so a cutoff never pays for sorting the rest. All moves
+ * returned are legal {@link Move} ints.
+ *
+ * Pickers are owned by the per-ply search stack in {@link SearchContext} and re-initialised
+ * with {@link #init} at every node, so the search does not allocate.
+ */
+final class MovePicker {
+    private static final int STAGE_TT = 0;
+    private static final int STAGE_GEN_CAPTURES = 1;
+    private static final int STAGE_GOOD_CAPTURES = 2;
+    private static final int STAGE_GEN_PROMOTIONS = 3;
+    private static final int STAGE_PROMOTIONS = 4;
+    private static final int STAGE_KILLERS = 5;
+    private static final int STAGE_GEN_QUIETS = 6;
+    private static final int STAGE_QUIETS = 7;
+    private static final int STAGE_BAD_CAPTURES = 8;
+    private static final int STAGE_DONE = 9;
+
+    private static final int PROMO_BONUS = 800;
+    private static final int CASTLE_BONUS = 50;
+
+    private Bitboards bb;
+    private boolean white;
+    private int ttMove;
+    // Killers/history source; null when ordering without search state
+    private SearchContext ctx;
+    private int ply;
+    private final int[] killers = new int[2];
+    private int killerIndex;
+
+    private final int[] moves = new int[BitboardMoveGen.MAX_MOVES];
+    private final int[] scores = new int[BitboardMoveGen.MAX_MOVES];
+    private int count;
+    private int index;
+    private final int[] badCaptures = new int[BitboardMoveGen.MAX_MOVES];
+    private int badCount;
+    private int badIndex;
+    private final int[] seeGain = new int[32];
+
+    private int stage;
+    private boolean currentQuiet;
+    // Move taken by hasMove() and not yet returned by next()
+    private int peeked;
+
+    MovePicker() { }
+
+    /** @param ttMoveCode best move from the TT in {@link Move} format, 0 if none */
+    MovePicker(Bitboards bb, boolean white, int ttMoveCode) {
+        init(bb, null, 0, white, ttMoveCode);
+    }
+
+    /** Picker for a search node: uses the context's killers at this ply and its history table. */
+    MovePicker(SearchContext ctx, int ply, boolean white, int ttMoveCode) {
+        init(ctx, ply, white, ttMoveCode);
+    }
+
+    MovePicker init(SearchContext ctx, int ply, boolean white, int ttMoveCode) {
+        return init(ctx.board, ctx.useQuietHeuristics ? ctx : null, ply, white, ttMoveCode);
+    }
+
+    private MovePicker init(Bitboards bb, SearchContext ctx, int ply, boolean white, int ttMoveCode) {
+        this.bb = bb;
+        this.ctx = ctx;
+        this.ply = ply;
+        this.white = white;
+        this.stage = STAGE_TT;
+        this.count = 0;
+        this.index = 0;
+        this.badCount = 0;
+        this.badIndex = 0;
+        this.killerIndex = 0;
+        this.killers[0] = Move.NONE;
+        this.killers[1] = Move.NONE;
+        this.peeked = Move.NONE;
+        this.ttMove = ttMoveCode != Move.NONE && BitboardMoveGen.isPseudoLegal(ttMoveCode, white, bb)
+                && BitboardMoveGen.isLegal(ttMoveCode, white, bb) ? ttMoveCode : Move.NONE;
+        return this;
+    }
+
+    /** TT move after validation ({@link Move#NONE} if there was none or it is not legal here). */
+    int ttMove() {
+        return ttMove;
+    }
+
+    /**
+     * True if the side to move has a legal move (false: mate or stalemate). Takes the first move
+     * of the picker, which next() then returns as usual; cheap once a TT move is there.
+     */
+    boolean hasMove() {
+        if (peeked == Move.NONE) peeked = next();
+        return peeked != Move.NONE;
+    }
+
+    /** Next legal move, or {@link Move#NONE} when all stages are exhausted. */
+    int next() {
+        if (peeked != Move.NONE) {
+            // isQuiet() still describes it: nothing was picked since
+            int m = peeked;
+            peeked = Move.NONE;
+            return m;
+        }
+        while (true) {
+            switch (stage) {
+                case STAGE_TT -> {
+                    stage = STAGE_GEN_CAPTURES;
+                    if (ttMove != Move.NONE) {
+                        currentQuiet = Move.isQuiet(ttMove);
+                        return ttMove;
+                    }
+                }
+                case STAGE_GEN_CAPTURES -> {
+                    generate(BitboardMoveGen.CAPTURES);
+                    for (int i = 0; i < count; i++) {
+                        int s = MoveOrdering.captureScore(bb, moves[i], white);
+                        if (Move.isPromotion(moves[i])) s += PROMO_BONUS;
+                        scores[i] = s;
+                    }
+                    stage = STAGE_GOOD_CAPTURES;
+                }
+                case STAGE_GOOD_CAPTURES -> {
+                    int m = pickBest();
+                    if (m == Move.NONE) {
+                        stage = STAGE_GEN_PROMOTIONS;
+                        continue;
+                    }
+                    // Only captures of a cheaper piece can lose material; check those with SEE
+                    if (scores[index - 1] < 1000 && MoveOrdering.see(bb, m, white, seeGain) < 0) {
+                        badCaptures[badCount++] = m;
+                        continue;
+                    }
+                    currentQuiet = false;
+                    return m;
+                }
+                case STAGE_GEN_PROMOTIONS -> {
+                    generate(BitboardMoveGen.PROMOTIONS);
+                    for (int i = 0; i < count; i++) scores[i] = PROMO_BONUS;
+                    stage = STAGE_PROMOTIONS;
+                }
+                case STAGE_PROMOTIONS -> {
+                    int m = pickBest();
+                    if (m == Move.NONE) {
+                        stage = STAGE_KILLERS;
+                        continue;
+                    }
+                    currentQuiet = false;
+                    return m;
+                }
+                case STAGE_KILLERS -> {
+                    int m = nextKiller();
+                    if (m == Move.NONE) {
+                        stage = STAGE_GEN_QUIETS;
+                        continue;
+                    }
+                    currentQuiet = true;
+                    return m;
+                }
+                case STAGE_GEN_QUIETS -> {
+                    generate(BitboardMoveGen.QUIETS);
+                    for (int i = 0; i < count; i++) scores[i] = quietScore(moves[i]);
+                    stage = STAGE_QUIETS;
+                }
+                case STAGE_QUIETS -> {
+                    int m = pickBest();
+                    if (m == Move.NONE) {
+                        stage = STAGE_BAD_CAPTURES;
+                        continue;
+                    }
+                    currentQuiet = true;
+                    return m;
+                }
+                case STAGE_BAD_CAPTURES -> {
+                    if (badIndex < badCount) {
+                        currentQuiet = false;
+                        return badCaptures[badIndex++];
+                    }
+                    stage = STAGE_DONE;
+                }
+                default -> {
+                    return Move.NONE;
+                }
+            }
+        }
+    }
+
+    /** True if the move last returned by {@link #next()} is neither a capture nor a promotion. */
+    boolean isQuiet() {
+        return currentQuiet;
+    }
+
+    private void generate(int mode) {
+        int n = BitboardMoveGen.generateLegal(white, bb, moves, mode);
+        // Drop moves already yielded by the TT and killer stages
+        int kept = 0;
+        for (int i = 0; i < n; i++) {
+            int m = moves[i];
+            if (m == ttMove || m == killers[0] || m == killers[1]) continue;
+            moves[kept++] = m;
+        }
+        count = kept;
+        index = 0;
+    }
+
+    // Selection sort step: swap the best remaining move to 'index' and return it
+    private int pickBest() {
+        if (index >= count) return Move.NONE;
+        int best = index;
+        for (int i = index + 1; i < count; i++) {
+            if (scores[i] > scores[best]) best = i;
+        }
+        if (best != index) {
+            int tm = moves[best];
+            moves[best] = moves[index];
+            moves[index] = tm;
+            int ts = scores[best];
+            scores[best] = scores[index];
+            scores[index] = ts;
+        }
+        return moves[index++];
+    }
+
+    // Killers come from sibling positions: only play them if they are quiet and legal here
+    private int nextKiller() {
+        if (ctx == null || ply >= SearchContext.MAX_PLY) return Move.NONE;
+        while (killerIndex < 2) {
+            int k = ctx.killers[ply][killerIndex];
+            int slot = killerIndex++;
+            if (k == Move.NONE || k == ttMove || k == killers[0]) continue;
+            if (!Move.isQuiet(k) || !BitboardMoveGen.isPseudoLegal(k, white, bb)) continue;
+            if (!BitboardMoveGen.isLegal(k, white, bb)) continue;
+            killers[slot] = k;
+            return k;
+        }
+        return Move.NONE;
+    }
+
+    private int quietScore(int m) {
+        int score = ctx != null ? ctx.historyScore(m, white) : 0;
+        if (Move.isCastle(m)) score += CASTLE_BONUS;
+        return score;
+    }
+}
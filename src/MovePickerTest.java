@@ -0,0 +1,87 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Checks that {@link BitboardMoveGen#generateLegal} matches pseudo-legal generation filtered by
+ * make/unmake, and that the staged {@link MovePicker} yields exactly those legal moves, each
+ * once and with the flags of the position, with and without a (possibly bogus) TT move and killer
+ * moves taken from other positions.
+ *
+ * Walks random games from a few positions and compares the move sets at every ply.
+ *
+ * Usage:
+ *   java -cp out MovePickerTest [games] [plies]
+ */
+public final class MovePickerTest {
+    // Bench positions and one full of promotions, en passant and castling
+    private static final String[] FENS = BenchPositions.with(
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1");
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 80;
+        Random rnd = new Random(12345);
+        long positions = 0;
+
+        for (String fen : FENS) {
+            for (int g = 0; g < games; g++) {
+                Bitboards bb = new Bitboards();
+                boolean white = Board.loadFEN(bb, fen);
+                int staleKiller = Move.NONE;
+                for (int ply = 0; ply < plies; ply++) {
+                    ArrayList<Zug> all = BitboardMoveGen.generate(white, bb);
+                    HashSet<String> expected = new HashSet<>();
+                    for (Zug z : all) if (bb.isLegalMove(z, white)) expected.add(z.processZug());
+
+                    ArrayList<Zug> legalGen = BitboardMoveGen.generateLegal(white, bb);
+                    HashSet<String> legalSet = new HashSet<>();
+                    for (Zug z : legalGen) legalSet.add(z.processZug());
+                    if (legalSet.size() != legalGen.size() || !legalSet.equals(expected)) {
+                        fail("legal generator: expected " + expected + " got " + legalGen.size() + " " + legalSet, fen, ply);
+                    }
+
+                    // TT move: none, a generated move, or a random (usually illegal) code
+                    int ttCode = 0;
+                    int r = rnd.nextInt(3);
+                    if (r == 1 && !all.isEmpty()) ttCode = Move.fromZug(bb, all.get(rnd.nextInt(all.size())));
+                    else if (r == 2) ttCode = rnd.nextInt(1 << 19);
+
+                    check(new MovePicker(bb, white, ttCode), bb, white, ttCode, expected, fen, ply);
+
+                    // Same with killers: one from this position, one from an earlier one (may be illegal here)
+                    SearchContext ctx = new SearchContext(0, bb, null);
+                    ctx.killers[ply][0] = all.isEmpty() ? Move.NONE : Move.fromZug(bb, all.get(rnd.nextInt(all.size())));
+                    ctx.killers[ply][1] = staleKiller;
+                    check(new MovePicker(ctx, ply, white, ttCode), bb, white, ttCode, expected, fen, ply);
+                    if (!all.isEmpty()) staleKiller = Move.fromZug(bb, all.get(rnd.nextInt(all.size())));
+                    positions++;
+
+                    if (legalGen.isEmpty()) break;
+                    bb.applyMove(legalGen.get(rnd.nextInt(legalGen.size())), new MoveInfo());
+                    white = !white;
+                }
+            }
+        }
+        System.out.println("OK: legal generator and picker match in " + positions + " positions");
+    }
+
+    private static void check(MovePicker picker, Bitboards bb, boolean white, int ttCode, HashSet<String> expected, String fen, int ply) {
+        HashSet<String> seen = new HashSet<>();
+        int m;
+        while ((m = picker.next()) != Move.NONE) {
+            String uci = Move.toUci(m);
+            if (m != Move.encode(bb, Move.from(m), Move.to(m), Move.promo(m))) fail("wrong flags on " + uci + ": " + Integer.toHexString(m), fen, ply);
+            boolean quiet = !bb.isOccupied(Move.to(m)) && !Move.isEnPassant(m) && Move.promo(m) == 0;
+            if (!seen.add(uci)) fail("duplicate " + uci, fen, ply);
+            if (!expected.contains(uci)) fail("unexpected " + uci + " (tt=" + ttCode + ")", fen, ply);
+            if (picker.isQuiet() != quiet) fail("wrong quiet flag for " + uci, fen, ply);
+        }
+        if (!seen.equals(expected)) fail("missing moves, expected " + expected + " got " + seen, fen, ply);
+    }
+
+    private static void fail(String msg, String fen, int ply) {
+        System.err.println("FAIL: " + msg + " [" + fen + " ply " + ply + "]");
+        System.exit(1);
+    }
+}
@@ -1,26 +1,121 @@
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * NNUE integration for the engine using the "simple" bullet layout:
- *   - l0w:  HIDDEN_SIZE x 768 i16, column-major by feature
+ *   - l0w:  HIDDEN_SIZE x 768 i16, column-major by feature (kept as one flat short[]: row f at f * H)
  *   - l0b:  HIDDEN_SIZE i16
  *   - l1w:  (2 * HIDDEN_SIZE) i16
  *   - l1b:  1 i16
  * File is padded to a multiple of 64 bytes (ignored).
+ * HalfKA nets with king buckets (a {@code <net>.buckets} layout file next to the net) have one
+ * 768 x H block of l0w per bucket; see {@link #readKingBuckets}.
  * Quantisation constants: QA=255, QB=64, SCALE=400.
+ *
+ * The hot loops (accumulator add/sub, SCReLU dot product) run through {@link Kernels}: the
+ * Vector API implementation {@link NnueVector} when jdk.incubator.vector is available and
+ * nnue.simd is not off, else {@link ScalarKernels}. Both give bit-identical results.
+ *
+ * Several nets can be loaded at once (nnue.nets): every position's accumulators belong to one of
+ * them, and {@link #selectNet} rebuilds the search position with the net for the think time
+ * (small fast nets for bullet, the large one for longer controls).
  */
 public final class Nnue {
     private static volatile boolean usable = false;     // true when network parsed OK
     private static volatile String loadedPath = null;
-    private static volatile NnueNetwork NET = null;
+    private static volatile NnueNetwork NET = null;      // default net for rebuilds: the last of NETS
+    // All loaded nets, by ascending minimum think time (NET_MIN_MS); one entry without nnue.nets
+    private static volatile NnueNetwork[] NETS = new NnueNetwork[0];
+    private static volatile long[] NET_MIN_MS = new long[0];
+    // Think time the net is picked by for the whole game (nnue.nets.select=game), -1: per search
+    private static volatile long gameThinkMs = -1;
+    private static long loads = 0L;
+
+    static final int QA = 255;
+
+    // Chosen once at startup; a constant for the JIT, so the calls inline
+    static final Kernels KERNELS = selectKernels(Config.getInstance().isNnueSimd());
+
+    // false: compute the accumulators on every applied move instead of at evaluation
+    // (same results; for NnueLazyBench)
+    static boolean lazyUpdates = true;
 
     private Nnue() {}
 
+    /** Name of the active kernel backend, e.g. "vector 512-bit" or "scalar". */
+    public static String backend() {
+        return KERNELS.name();
+    }
+
+    static Kernels selectKernels(boolean simd) {
+        if (simd) {
+            try {
+                return new NnueVector();
+            } catch (LinkageError | RuntimeException e) {
+                // Module not added (--add-modules jdk.incubator.vector) or no usable vector shape
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /** Inner loops of the network over short accumulators/weights of length n. */
+    interface Kernels {
+        String name();
+        /** acc[i] += w[wOff + i] */
+        void add(short[] acc, short[] w, int wOff, int n);
+        /** acc[i] -= w[wOff + i] */
+        void sub(short[] acc, short[] w, int wOff, int n);
+        /** dst[i] = src[i] + w[addOff + i] - w[subOff + i] (dst may be src) */
+        void addSub(short[] dst, short[] src, short[] w, int addOff, int subOff, int n);
+        /**
+         * Sum of screlu(acc[i]) * w[wOff + i]. safeTerms: how many terms per lane an int
+         * accumulator can take for this network's weights without overflow.
+         */
+        long screluDot(short[] acc, short[] w, int wOff, int n, int safeTerms);
+    }
+
+    /** Plain loops, the reference for {@link NnueVector}. */
+    static final class ScalarKernels implements Kernels {
+        @Override public String name() { return "scalar"; }
+
+        @Override
+        public void add(short[] acc, short[] w, int wOff, int n) {
+            for (int h = 0; h < n; h++) acc[h] += w[wOff + h];
+        }
+
+        @Override
+        public void sub(short[] acc, short[] w, int wOff, int n) {
+            for (int h = 0; h < n; h++) acc[h] -= w[wOff + h];
+        }
+
+        @Override
+        public void addSub(short[] dst, short[] src, short[] w, int addOff, int subOff, int n) {
+            for (int h = 0; h < n; h++) dst[h] = (short) (src[h] + w[addOff + h] - w[subOff + h]);
+        }
+
+        @Override
+        public long screluDot(short[] acc, short[] w, int wOff, int n, int safeTerms) {
+            long out = 0;
+            for (int h = 0; h < n; h++) out += (long) screlu(acc[h]) * (long) w[wOff + h];
+            return out;
+        }
+    }
+
+    static int screlu(short x) {
+        int y = x;
+        if (y < 0) y = 0; if (y > QA) y = QA; return y * y;
+    }
+
     public static boolean isUsable() {
         return usable;
     }
@@ -30,6 +125,11 @@ public final class Nnue {
         Config cfg = Config.getInstance();
         if (!cfg.isNnueEnabled()) return;
         if (usable) return;
+        TreeMap<Long, String> nets = cfg.getNnueNets();
+        if (!nets.isEmpty()) {
+            loadNets(nets);
+            return;
+        }
         // Read debug knobs as well
         String path = cfg.getNnuePath();
         if (path == null) {
@@ -41,73 +141,300 @@ public final class Nnue {
 
     /** Load and parse quantised.bin written by bullet. */
     public static synchronized boolean loadFromPath(String path) {
+        NnueNetwork net = readNetwork(path);
+        if (net == null) {
+            usable = false; loadedPath = null; NET = null; NETS = new NnueNetwork[0]; return false;
+        }
+        install(new NnueNetwork[]{net}, new long[]{0});
+        loadedPath = new File(path).getAbsolutePath();
+        return true;
+    }
+
+    /** Load several nets (minimum think time in ms -> path); usable if at least one loads. */
+    public static synchronized boolean loadNets(Map<Long, String> nets) {
+        java.util.ArrayList<NnueNetwork> ok = new java.util.ArrayList<>();
+        java.util.ArrayList<Long> minMs = new java.util.ArrayList<>();
+        String last = null;
+        for (Map.Entry<Long, String> e : new TreeMap<>(nets).entrySet()) {
+            NnueNetwork net = readNetwork(e.getValue());
+            if (net == null) continue;
+            ok.add(net);
+            minMs.add(ok.size() == 1 ? 0L : e.getKey()); // the smallest covers every think time
+            last = e.getValue();
+        }
+        if (ok.isEmpty()) {
+            usable = false; loadedPath = null; NET = null; NETS = new NnueNetwork[0]; return false;
+        }
+        long[] min = new long[minMs.size()];
+        for (int i = 0; i < min.length; i++) min[i] = minMs.get(i);
+        install(ok.toArray(new NnueNetwork[0]), min);
+        loadedPath = new File(last).getAbsolutePath();
+        return true;
+    }
+
+    private static void install(NnueNetwork[] nets, long[] minMs) {
+        NET_MIN_MS = minMs;
+        NETS = nets;
+        NET = nets[nets.length - 1];
+        usable = true;
+    }
+
+    private static NnueNetwork readNetwork(String path) {
         File f = new File(path);
         if (!f.exists() || !f.isFile()) {
             System.err.println("NNUE file not found: " + path);
-            usable = false; loadedPath = null; NET = null; return false;
+            return null;
         }
-        try (FileInputStream fis = new FileInputStream(f)) {
-            long len = f.length();
+        // One bulk read (not mapped: a mapping keeps the file locked on Windows until GC)
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            long len = ch.size();
             if (len <= 0 || len > Integer.MAX_VALUE) {
                 System.err.println("NNUE file has unsupported size: " + len);
-                usable = false; loadedPath = null; NET = null; return false;
+                return null;
             }
-            byte[] data = new byte[(int) len];
-            int read = fis.read(data);
-            if (read != len) {
-                System.err.println("Failed to read full NNUE file: read=" + read + " expected=" + len);
-                usable = false; loadedPath = null; NET = null; return false;
+            ByteBuffer data = ByteBuffer.allocate((int) len);
+            while (data.hasRemaining() && ch.read(data) > 0) { }
+            if (data.hasRemaining()) {
+                System.err.println("Failed to read full NNUE file: read=" + data.position() + " expected=" + len);
+                return null;
             }
-            NnueNetwork net = NnueNetwork.loadRaw(ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN));
-            NET = net;
-            loadedPath = f.getAbsolutePath();
-            usable = true;
+            byte[] layout = readKingBuckets(new File(path + ".buckets"));
+            NnueNetwork net = NnueNetwork.loadRaw(data.flip().order(ByteOrder.LITTLE_ENDIAN), layout);
+            warmUpInBackground(net);
             // Print requested simplified load message for easy parsing
-            System.out.println("nnue loaded H : " + net.H);
-            return true;
+            System.out.println("nnue loaded H : " + net.H + (net.buckets > 1 ? " king buckets : " + net.buckets : ""));
+            return net;
         } catch (Exception e) {
             System.err.println("Error loading NNUE file: " + e.getMessage());
-            usable = false; loadedPath = null; NET = null; return false;
+            return null;
+        }
+    }
+
+    /**
+     * King bucket layout of a HalfKA net (bullet ChessBucketsMirrored without the mirroring): the
+     * sidecar file {@code <net>.buckets} holds 64 bucket numbers for the own king square from the
+     * side's view, a1, b1, ..., h8 (the order of bullet's layout array), '#' starts a comment.
+     * Null if there is no such file: plain Chess768 net.
+     */
+    static byte[] readKingBuckets(File f) throws IOException {
+        if (!f.isFile()) return null;
+        String text = new String(Files.readAllBytes(f.toPath()), StandardCharsets.US_ASCII).replaceAll("#[^\\n]*", " ");
+        String[] tokens = text.trim().split("[\\s,]+");
+        if (tokens.length != 64) throw new IOException("king bucket layout needs 64 entries: " + f);
+        byte[] layout = new byte[64];
+        for (int sq = 0; sq < 64; sq++) {
+            int b = Integer.parseInt(tokens[sq]);
+            if (b < 0 || b > 63) throw new IOException("bad king bucket " + b + " in " + f);
+            layout[sq] = (byte) b;
+        }
+        return layout;
+    }
+
+    /**
+     * Build the position's accumulators with the net for this think time (the last net whose
+     * minimum think time is reached), unless they already use it. With nnue.nets.select=game the
+     * think time fixed by {@link #setGameThinkTime} counts instead. No-op with a single net.
+     * Returns the hidden size of the net now in use, 0 if none.
+     */
+    public static int selectNet(Bitboards bitboards, long thinkMs) {
+        NnueNetwork[] nets = NETS;
+        long[] minMs = NET_MIN_MS;
+        if (!usable || nets.length == 0) return 0;
+        Accumulator inc = bitboards.nnue;
+        if (nets.length == 1) return inc != null ? inc.net.H : nets[0].H;
+        long ms = gameThinkMs >= 0 ? gameThinkMs : thinkMs;
+        NnueNetwork pick = nets[0];
+        for (int i = 1; i < nets.length && i < minMs.length; i++) {
+            if (ms >= minMs[i]) pick = nets[i];
+        }
+        if (inc == null || inc.net != pick) {
+            bitboards.nnue = pick.rebuildIncrementalFromBoard(bitboards);
         }
+        return pick.H;
+    }
+
+    /** Pick the net for the whole game by this think time (e.g. from the initial clock); -1: per search. */
+    public static void setGameThinkTime(long thinkMs) {
+        gameThinkMs = thinkMs;
+    }
+
+    /** Hidden sizes of all loaded nets, by ascending minimum think time. */
+    public static int[] loadedHiddenSizes() {
+        NnueNetwork[] nets = NETS;
+        int[] h = new int[nets.length];
+        for (int i = 0; i < nets.length; i++) h[i] = nets[i].H;
+        return h;
+    }
+
+    // Vector API code is very slow until C2 has compiled it. Run the kernels on the side so that
+    // happens during the game start handshake rather than inside the first search (the search
+    // itself is correct either way; a few hundred ms on one core, less with spare cores).
+    private static void warmUpInBackground(NnueNetwork net) {
+        if (KERNELS instanceof ScalarKernels) return;
+        Thread t = new Thread(net::warmUpKernels, "nnue-warmup");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    /** Eval cache salt of the net the position is evaluated with. */
+    static long netSalt(Bitboards bitboards) {
+        Accumulator inc = bitboards.nnue;
+        NnueNetwork net = inc != null ? inc.net : NET;
+        return net == null ? 0L : net.salt;
+    }
+
+    /** Hidden layer size of the loaded network, 0 if none. */
+    public static int hiddenSize() {
+        NnueNetwork net = NET;
+        return net == null ? 0 : net.H;
     }
 
     /** Evaluate the current Board from the perspective of isWhite. */
     public static int evaluate(boolean isWhite) {
-        if (!usable || NET == null) {
+        return evaluate(Board.bitboards, isWhite);
+    }
+
+    /** Evaluate the given position from the perspective of isWhite, with its own accumulators and their net. */
+    public static int evaluate(Bitboards bitboards, boolean isWhite) {
+        Accumulator inc = bitboards.nnue;
+        NnueNetwork net = inc != null ? inc.net : NET;
+        if (!usable || net == null) {
             throw new IllegalStateException("NNUE evaluate called but NNUE is not usable");
         }
-        BoardApi boardApi = new BoardAdapter(isWhite);
-        return NET.evaluate(boardApi);
+        // Search positions always have accumulators: no adapter (allocation) per eval
+        if (inc != null) return net.evaluate(inc, isWhite);
+        return net.evaluate(new BoardAdapter(bitboards, isWhite));
     }
 
     /** Rebuild incremental accumulators from the current Board state. */
     public static void rebuildIncremental() {
-        if (!usable || NET == null) return;
-        BoardApi boardApi = new BoardAdapter(Board.whiteToMove);
-        NET.rebuildIncrementalFromBoard(boardApi);
+        rebuildIncremental(Board.bitboards);
+    }
+
+    /** Rebuild the incremental accumulators owned by the given position. */
+    public static void rebuildIncremental(Bitboards bitboards) {
+        NnueNetwork net = NET;
+        if (!usable || net == null) return;
+        bitboards.nnue = net.rebuildIncrementalFromBoard(bitboards);
+    }
+
+    /** Push the accumulators of the position after an executed move (call after bitboards apply). */
+    public static void onMoveApplied(Bitboards bitboards, MoveInfo info) {
+        Accumulator inc = bitboards.nnue;
+        if (inc == null) return;
+        inc.net.onMoveApplied(inc, info, bitboards);
     }
 
-    /** Apply NNUE incremental delta for an executed move (call after bitboards apply). */
-    public static void onMoveApplied(Zug z, MoveInfo info) {
-        if (!usable || NET == null) return;
-        NET.onMoveApplied(z, info);
+    /** Pop back to the accumulators before a reverted move (call after bitboards undo). */
+    public static void onMoveUndone(Bitboards bitboards, MoveInfo info) {
+        Accumulator inc = bitboards.nnue;
+        if (inc == null) return;
+        inc.net.onMoveUndone(inc, bitboards);
     }
 
-    /** Undo NNUE incremental delta for a reverted move (call after bitboards undo). */
-    public static void onMoveUndone(Zug z, MoveInfo info) {
-        if (!usable || NET == null) return;
-        NET.onMoveUndone(z, info);
+    /**
+     * Incremental accumulator state (absolute, STM-independent). Owned by a {@link Bitboards}
+     * instance so that every search thread updates its own copy against the shared weights.
+     *
+     * One slot per applied move since the last rebuild. Applying a move only records its feature
+     * delta for the next slot; the sums are computed when the position is evaluated, from the
+     * nearest computed ancestor (parent + delta per slot). Nodes that are never evaluated (TT and
+     * null-move cutoffs, the make/unmake in isLegalMove) cost no accumulator work. Undoing a move
+     * just steps back, the parent keeps its sums.
+     *
+     * With king buckets a king move into another bucket invalidates its side's sums; that slot is
+     * computed at once from the refresh cache ("Finny table"): per perspective and bucket the sums
+     * of the pieces it held when last used, so a refresh costs the piece difference to the
+     * current board instead of a rebuild.
+     */
+    public static final class Accumulator {
+        final NnueNetwork net; // network these sums were built for
+        short[] stmAcc;        // absolute mapping 'stm' bucket of the current position (= stmStack[ply])
+        short[] ntmAcc;        // absolute mapping 'ntm' bucket of the current position (= ntmStack[ply])
+        private short[][] stmStack = new short[64][];
+        private short[][] ntmStack = new short[64][];
+        private boolean[] computed = new boolean[64];
+        // Per slot the delta from its parent as 'stm' feature indices: add0, sub0, add1, sub1 (-1 = none)
+        private int[] delta = new int[64 * 4];
+        // Per slot the king bucket of white ('stm') and black ('ntm'), as weight offsets
+        private int[] stmBucketOff = new int[64];
+        private int[] ntmBucketOff = new int[64];
+        private int ply;       // moves applied since the rebuild
+
+        // Refresh cache: [perspective][bucket] sums, and the 12 piece bitboards they contain
+        private final short[][][] finnyAcc;
+        private final long[][][] finnyPieces;
+
+        // Profile counters (per search thread): moves applied, slots computed, evaluations, refreshes
+        long moves, updates, evals, refreshes;
+
+        Accumulator(NnueNetwork net, int H) {
+            this.net = net;
+            stmAcc = stmStack[0] = new short[H];
+            ntmAcc = ntmStack[0] = new short[H];
+            computed[0] = true;
+            finnyAcc = new short[2][net.buckets][];
+            finnyPieces = new long[2][net.buckets][];
+        }
+
+        /** Make the next slot current, its sums not yet computed; returns the delta offset to fill. */
+        private int push(int stmOff, int ntmOff) {
+            if (++ply == stmStack.length) {
+                stmStack = java.util.Arrays.copyOf(stmStack, ply * 2);
+                ntmStack = java.util.Arrays.copyOf(ntmStack, ply * 2);
+                computed = java.util.Arrays.copyOf(computed, ply * 2);
+                delta = java.util.Arrays.copyOf(delta, ply * 8);
+                stmBucketOff = java.util.Arrays.copyOf(stmBucketOff, ply * 2);
+                ntmBucketOff = java.util.Arrays.copyOf(ntmBucketOff, ply * 2);
+            }
+            if (stmStack[ply] == null) {
+                stmStack[ply] = new short[stmAcc.length];
+                ntmStack[ply] = new short[ntmAcc.length];
+            }
+            stmAcc = stmStack[ply];
+            ntmAcc = ntmStack[ply];
+            computed[ply] = false;
+            stmBucketOff[ply] = stmOff;
+            ntmBucketOff[ply] = ntmOff;
+            moves++;
+            return ply * 4;
+        }
+
+        /** Step back to the previous slot; false at the rebuild position (nothing to pop). */
+        private boolean pop() {
+            if (ply == 0) return false;
+            ply--;
+            stmAcc = stmStack[ply];
+            ntmAcc = ntmStack[ply];
+            return true;
+        }
+
+        /** Copy of the current position only (a search started from it never pops below it). */
+        Accumulator copy() {
+            net.materialize(this);
+            Accumulator c = new Accumulator(net, stmAcc.length);
+            System.arraycopy(stmAcc, 0, c.stmAcc, 0, stmAcc.length);
+            System.arraycopy(ntmAcc, 0, c.ntmAcc, 0, ntmAcc.length);
+            c.stmBucketOff[0] = stmBucketOff[ply];
+            c.ntmBucketOff[0] = ntmBucketOff[ply];
+            return c;
+        }
     }
 
     /** Adapter from engine bitboards to NNUE BoardApi. */
     private static final class BoardAdapter implements BoardApi {
+        private final Bitboards bitboards;
         private final boolean stmWhite;
-        BoardAdapter(boolean isWhiteToMove) { this.stmWhite = isWhiteToMove; }
+        BoardAdapter(Bitboards bitboards, boolean isWhiteToMove) { this.bitboards = bitboards; this.stmWhite = isWhiteToMove; }
         @Override public boolean sideToMoveIsWhite() { return stmWhite; }
+        @Override public int kingSquare(boolean white) {
+            return Long.numberOfTrailingZeros(white ? bitboards.w[5] : bitboards.b[5]);
+        }
         @Override public void forEachPiece(PieceConsumer consumer) {
             // White pieces
             for (int t = 0; t < 6; t++) {
-                long bb = Board.bitboards.w[t];
+                long bb = bitboards.w[t];
                 while (bb != 0) {
                     int sq = Long.numberOfTrailingZeros(bb);
                     bb &= bb - 1;
@@ -116,7 +443,7 @@ public final class Nnue {
             }
             // Black pieces
             for (int t = 0; t < 6; t++) {
-                long bb = Board.bitboards.b[t];
+                long bb = bitboards.b[t];
                 while (bb != 0) {
                     int sq = Long.numberOfTrailingZeros(bb);
                     bb &= bb - 1;
@@ -129,6 +456,8 @@ public final class Nnue {
     // --- Minimal interfaces for the evaluator ---
     public interface BoardApi {
         boolean sideToMoveIsWhite();
+        /** Square (a8 = 0) of the king, 64 if there is none. */
+        int kingSquare(boolean white);
         void forEachPiece(PieceConsumer consumer);
     }
     public interface PieceConsumer { void accept(Piece piece, int sq0to63); }
@@ -139,85 +468,106 @@ public final class Nnue {
 
     // --- The network representation and evaluator ---
     private static final class NnueNetwork {
-        // Quantisation constants from simple.rs
-        private static final int QA = 255;
+        // Quantisation constants from simple.rs (QA is Nnue.QA)
         private static final int QB = 64;
         private static final int SCALE = 400;
 
-        // Incremental accumulator state (absolute, STM-independent)
-        private static final class Inc {
-            short[] stmAcc; // absolute mapping 'stm' bucket
-            short[] ntmAcc; // absolute mapping 'ntm' bucket
-            Inc(int H) { this.stmAcc = new short[H]; this.ntmAcc = new short[H]; }
-        }
-
         final int H;                // hidden size
-        final short[][] l0w;        // [768][H] feature weights (feature-major)
+        final int buckets;          // king buckets, 1 for the plain Chess768 layout
+        final byte[] kingBucket;    // [64] bucket by the perspective's own king square (a1 = 0)
+        final short[] l0w;          // [buckets * 768 * H] feature weights, row of feature f at f * H
         final short[] l0b;          // H bias
         final short[] l1w;          // 2 * H output weights
         final short  l1b;           // 1 output bias
+        final int safeTerms;        // SCReLU terms per int lane without overflow, see Kernels
+        final long salt;            // different for every loaded net, so the eval cache never mixes nets
 
-        private NnueNetwork(int H, short[][] l0w, short[] l0b, short[] l1w, short l1b) {
+        private NnueNetwork(int H, byte[] kingBucket, short[] l0w, short[] l0b, short[] l1w, short l1b) {
             this.H = H; this.l0w = l0w; this.l0b = l0b; this.l1w = l1w; this.l1b = l1b;
+            this.kingBucket = kingBucket;
+            int b = 0;
+            for (byte k : kingBucket) b = Math.max(b, k);
+            this.buckets = b + 1;
+            synchronized (Nnue.class) { this.salt = 0x9E3779B97F4A7C15L * ++loads; }
+            int maxW = 1;
+            for (short w : l1w) maxW = Math.max(maxW, Math.abs(w));
+            this.safeTerms = (int) Math.max(1, Integer.MAX_VALUE / ((long) QA * QA * maxW));
         }
 
-        // Current incremental accumulators (built from Board), or null if not initialized
-        private Inc inc;
-
-        static NnueNetwork loadRaw(ByteBuffer bb) {
+        /** Parse a net; kingBucket: bucket layout (64 entries) or null for plain Chess768. */
+        static NnueNetwork loadRaw(ByteBuffer bb, byte[] kingBucket) {
             int totalBytes = bb.remaining();
+            if (kingBucket == null) kingBucket = new byte[64];
+            int inputs = 768;
+            for (byte k : kingBucket) inputs = Math.max(inputs, 768 * (k + 1));
 
             // Infer H from totalBytes with allowance for 64-byte padding at file end.
-            // Data layout (shorts): 768*H + H + 2H + 1 = 771H + 1
-            // Required bytes: 2 * (771H + 1); the writer pads to the next 64-byte boundary,
+            // Data layout (shorts): inputs*H + H + 2H + 1 (inputs = 768 per king bucket)
+            // Required bytes: 2 * ((inputs + 3)H + 1); the writer pads to the next 64-byte boundary,
             // so pad = totalBytes - requiredBytes is in [0, 63].
             int H = -1;
             for (int h = 1; h <= 4096; h++) {
-                long requiredBytes = 2L * (771L * h + 1L);
+                long requiredBytes = 2L * ((inputs + 3L) * h + 1L);
                 long pad = (long) totalBytes - requiredBytes;
                 if (pad >= 0 && pad < 64) { H = h; break; }
             }
             if (H < 0) {
-                throw new IllegalArgumentException("Cannot infer NNUE hidden size (H) from file size " + totalBytes);
+                throw new IllegalArgumentException("Cannot infer NNUE hidden size (H) from file size " + totalBytes
+                        + " with " + inputs / 768 + " king bucket(s)");
             }
-            return loadRawWithH(bb, H);
+            return loadRawWithH(bb, H, kingBucket, inputs);
         }
 
-        private static NnueNetwork loadRawWithH(ByteBuffer bb, int H) {
-            bb.rewind();
-            // Load weights in column-major order (feature-major) as bullet stores them
-            short[][] l0w = new short[768][H]; // [feature][hidden]
-            for (int feat = 0; feat < 768; feat++) {
-                for (int h = 0; h < H; h++) {
-                    l0w[feat][h] = bb.getShort();
-                }
-            }
+        private static NnueNetwork loadRawWithH(ByteBuffer bb, int H, byte[] kingBucket, int inputs) {
+            // Weights in column-major order (feature-major) as bullet stores them, i.e. exactly
+            // the flat layout: bulk copies instead of one getShort() per weight
+            ShortBuffer sb = bb.rewind().asShortBuffer();
+            short[] l0w = new short[inputs * H];
+            sb.get(l0w);
             short[] l0b = new short[H];
-            for (int i = 0; i < H; i++) l0b[i] = bb.getShort();
+            sb.get(l0b);
             short[] l1w = new short[2 * H];
-            for (int i = 0; i < 2 * H; i++) l1w[i] = bb.getShort();
-            short l1b = bb.getShort();
-            return new NnueNetwork(H, l0w, l0b, l1w, l1b);
+            sb.get(l1w);
+            short l1b = sb.get();
+            return new NnueNetwork(H, kingBucket, l0w, l0b, l1w, l1b);
         }
 
-        int evaluate(BoardApi board) {
-            // If incremental accumulators are available, use them (absolute, STM-independent)
-            if (inc != null) {
-                boolean whiteToMove = board.sideToMoveIsWhite();
-                short[] us = whiteToMove ? inc.stmAcc : inc.ntmAcc;
-                short[] them = whiteToMove ? inc.ntmAcc : inc.stmAcc;
-                return evaluateBuckets(us, them);
+        // ~20k calls of each kernel on scratch accumulators, see Nnue.warmUpInBackground
+        void warmUpKernels() {
+            short[] acc = l0b.clone();
+            long sink = 0;
+            for (int i = 0; i < 20_000; i++) {
+                KERNELS.add(acc, l0w, (i % 768) * H, H);
+                KERNELS.sub(acc, l0w, (i % 768) * H, H);
+                KERNELS.addSub(acc, acc, l0w, (i % 768) * H, ((i + 1) % 768) * H, H);
+                sink += KERNELS.screluDot(acc, l1w, (i & 1) * H, H, safeTerms);
             }
+            if (sink == 42) System.out.print("");
+        }
 
-            // Fallback: build STM-aware accumulators on the fly (slower)
+        // From the incremental accumulators of this network (absolute, STM-independent)
+        int evaluate(Accumulator inc, boolean whiteToMove) {
+            materialize(inc);
+            inc.evals++;
+            short[] us = whiteToMove ? inc.stmAcc : inc.ntmAcc;
+            short[] them = whiteToMove ? inc.ntmAcc : inc.stmAcc;
+            return evaluateBuckets(us, them);
+        }
+
+        // Without accumulators: build STM-aware accumulators on the fly (slower)
+        int evaluate(BoardApi board) {
             short[] stmAcc = new short[H];
             short[] ntmAcc = new short[H];
             System.arraycopy(l0b, 0, stmAcc, 0, H);
             System.arraycopy(l0b, 0, ntmAcc, 0, H);
 
             boolean whiteToMove = board.sideToMoveIsWhite();
-            
-            // Extract features exactly as bullet Chess768 does (STM-aware)
+            // King buckets from each side's own view (a1 = 0, board flipped for black)
+            int ourKing = whiteToMove ? board.kingSquare(true) ^ 56 : board.kingSquare(false);
+            int theirKing = whiteToMove ? board.kingSquare(false) : board.kingSquare(true) ^ 56;
+            int stmBase = bucketOf(ourKing) * 768, ntmBase = bucketOf(theirKing) * 768;
+
+            // Extract features exactly as bullet Chess768 (ChessBuckets) does (STM-aware)
             board.forEachPiece((piece, sq) -> {
                 int bulletPiece = (piece.isWhite ? 0 : 8) + piece.typeIndex;
                 boolean pieceIsStm = (whiteToMove && piece.isWhite) || (!whiteToMove && !piece.isWhite);
@@ -225,21 +575,18 @@ public final class Nnue {
                 int pc = 64 * (bulletPiece & 7);
                 int sqA1 = sq ^ 56;
                 int sqStm = whiteToMove ? sqA1 : (sqA1 ^ 56);
-                int stmIdx = (cRel == 0 ? 0 : 384) + pc + sqStm;
-                int ntmIdx = (cRel == 0 ? 384 : 0) + pc + (sqStm ^ 56);
-                for (int h = 0; h < H; h++) {
-                    stmAcc[h] += l0w[stmIdx][h];
-                    ntmAcc[h] += l0w[ntmIdx][h];
-                }
+                int stmIdx = stmBase + (cRel == 0 ? 0 : 384) + pc + sqStm;
+                int ntmIdx = ntmBase + (cRel == 0 ? 384 : 0) + pc + (sqStm ^ 56);
+                KERNELS.add(stmAcc, l0w, stmIdx * H, H);
+                KERNELS.add(ntmAcc, l0w, ntmIdx * H, H);
             });
 
             return evaluateBuckets(stmAcc, ntmAcc);
         }
 
         private int evaluateBuckets(short[] usAcc, short[] themAcc) {
-            long output = 0;
-            for (int h = 0; h < H; h++) output += (long)screlu(usAcc[h]) * (long)l1w[h];
-            for (int h = 0; h < H; h++) output += (long)screlu(themAcc[h]) * (long)l1w[H + h];
+            long output = KERNELS.screluDot(usAcc, l1w, 0, H, safeTerms)
+                    + KERNELS.screluDot(themAcc, l1w, H, H, safeTerms);
             output /= QA;
             output += l1b;
             output = output * SCALE / ((long)QA * (long)QB);
@@ -247,118 +594,173 @@ public final class Nnue {
             if (output < Integer.MIN_VALUE) return Integer.MIN_VALUE;
             return (int)output;
         }
-        private static int screlu(short x) {
-            int y = x;
-            if (y < 0) y = 0; if (y > QA) y = QA; return y * y;
-        }
 
         // ---- Incremental API ----
-        void rebuildIncrementalFromBoard(BoardApi board) {
-            inc = new Inc(H);
-            // start from bias
-            System.arraycopy(l0b, 0, inc.stmAcc, 0, H);
-            System.arraycopy(l0b, 0, inc.ntmAcc, 0, H);
-            // Add all pieces with absolute mapping (STM-independent)
-            board.forEachPiece((piece, sq) -> addPieceAbs(piece.isWhite, piece.typeIndex, sq));
-        }
-
-        private void addPieceAbs(boolean isWhite, int pieceType, int sq) {
-            int c = isWhite ? 0 : 1;
-            int pc = 64 * pieceType;
-            int sqA1 = sq ^ 56;
-            int stmIdx = (c == 0 ? 0 : 384) + pc + sqA1;
-            int ntmIdx = (c == 0 ? 384 : 0) + pc + (sqA1 ^ 56);
-            for (int h = 0; h < H; h++) {
-                inc.stmAcc[h] += l0w[stmIdx][h];
-                inc.ntmAcc[h] += l0w[ntmIdx][h];
-            }
+        Accumulator rebuildIncrementalFromBoard(Bitboards bitboards) {
+            Accumulator inc = new Accumulator(this, H);
+            inc.stmBucketOff[0] = stmBucketOff(bitboards);
+            inc.ntmBucketOff[0] = ntmBucketOff(bitboards);
+            // All pieces from the (still empty) refresh cache: bias plus every piece
+            refresh(inc, 0, bitboards, inc.stmAcc, inc.stmBucketOff[0]);
+            refresh(inc, 1, bitboards, inc.ntmAcc, inc.ntmBucketOff[0]);
+            return inc;
         }
 
-        private void removePieceAbs(boolean isWhite, int pieceType, int sq) {
-            int c = isWhite ? 0 : 1;
-            int pc = 64 * pieceType;
-            int sqA1 = sq ^ 56;
-            int stmIdx = (c == 0 ? 0 : 384) + pc + sqA1;
-            int ntmIdx = (c == 0 ? 384 : 0) + pc + (sqA1 ^ 56);
-            for (int h = 0; h < H; h++) {
-                inc.stmAcc[h] -= l0w[stmIdx][h];
-                inc.ntmAcc[h] -= l0w[ntmIdx][h];
-            }
+        private int bucketOf(int kingSqA1) {
+            return kingSqA1 < 64 ? kingBucket[kingSqA1] : 0;
         }
 
-        void onMoveApplied(Zug z, MoveInfo info) {
-            if (inc == null) return;
-            int from = infoSquareFrom(z);
-            int to = infoSquareTo(z);
-            boolean moverW = info.movingPieceWhite;
-            int movingType = info.movingPieceType;
+        // Weight offset of the 'stm' (white) perspective's king bucket
+        private int stmBucketOff(Bitboards bitboards) {
+            long k = bitboards.w[5];
+            return k == 0 ? 0 : bucketOf(Long.numberOfTrailingZeros(k) ^ 56) * 768 * H;
+        }
 
-            // Remove moving piece at from
-            removePieceAbs(moverW, movingType, from);
+        // Weight offset of the 'ntm' (black) perspective's king bucket (its view is rank mirrored)
+        private int ntmBucketOff(Bitboards bitboards) {
+            long k = bitboards.b[5];
+            return k == 0 ? 0 : bucketOf(Long.numberOfTrailingZeros(k)) * 768 * H;
+        }
 
-            // Handle captures (normal or en passant)
-            if (!info.squareMovedOntoWasEmpty || info.wasEnPassant) {
-                int capSq;
-                if (info.wasEnPassant && info.capEnPassantBauerCoords != null) {
-                    capSq = info.capEnPassantBauerCoords.y * 8 + info.capEnPassantBauerCoords.x;
-                } else {
-                    capSq = to;
+        /**
+         * Sums of one perspective (0 = 'stm'/white, 1 = 'ntm'/black) for the board into out, via the
+         * refresh cache entry of the bucket: only pieces added or removed since its last use.
+         */
+        private void refresh(Accumulator inc, int persp, Bitboards bitboards, short[] out, int bucketOff) {
+            int b = bucketOff / (768 * H);
+            short[] acc = inc.finnyAcc[persp][b];
+            long[] pieces = inc.finnyPieces[persp][b];
+            if (acc == null) {
+                acc = inc.finnyAcc[persp][b] = l0b.clone();
+                pieces = inc.finnyPieces[persp][b] = new long[12];
+            }
+            for (int i = 0; i < 12; i++) {
+                boolean white = i < 6;
+                int type = i % 6;
+                long cur = white ? bitboards.w[type] : bitboards.b[type];
+                long old = pieces[i];
+                for (long x = cur & ~old; x != 0; x &= x - 1) {
+                    int f = feature(white, type, Long.numberOfTrailingZeros(x));
+                    KERNELS.add(acc, l0w, bucketOff + (persp == 0 ? f : ntmFeature(f)) * H, H);
+                }
+                for (long x = old & ~cur; x != 0; x &= x - 1) {
+                    int f = feature(white, type, Long.numberOfTrailingZeros(x));
+                    KERNELS.sub(acc, l0w, bucketOff + (persp == 0 ? f : ntmFeature(f)) * H, H);
                 }
-                removePieceAbs(info.capturedPieceWhite, info.capturedPieceType, capSq);
+                pieces[i] = cur;
             }
+            System.arraycopy(acc, 0, out, 0, H);
+            inc.refreshes++;
+        }
 
-            // Handle rook move in castling
-            if (info.rookMoved) {
-                int y = moverW ? 7 : 0;
-                int rookFrom = Bitboards.sq(info.rookStartX, y);
-                int rookTo   = Bitboards.sq(info.rookEndX, y);
-                removePieceAbs(moverW, 3, rookFrom);
-                addPieceAbs(moverW, 3, rookTo);
-            }
+        // Feature index of a piece in the 'stm' bucket; its 'ntm' index is ntmFeature() of that
+        private static int feature(boolean isWhite, int pieceType, int sq) {
+            return (isWhite ? 0 : 384) + 64 * pieceType + (sq ^ 56);
+        }
 
-            // Add moving piece at destination (promotion if any)
-            if (info.wasPromotion) {
-                addPieceAbs(moverW, info.promotionType, to);
-            } else {
-                addPieceAbs(moverW, movingType, to);
-            }
+        // Other colour half, rank mirrored (the square bits are the low 6 bits of the index)
+        private static int ntmFeature(int f) {
+            return (f < 384 ? f + 384 : f - 384) ^ 56;
         }
 
-        void onMoveUndone(Zug z, MoveInfo info) {
-            if (inc == null) return;
-            int from = infoSquareFrom(z);
-            int to = infoSquareTo(z);
+        // Record the feature delta of the move for the next slot; computed on demand by materialize,
+        // except when the king changed bucket: that slot is refreshed now, while the board matches it
+        void onMoveApplied(Accumulator inc, MoveInfo info, Bitboards bitboards) {
+            if (inc == null || inc.net != this) return;
+            int from = info.from;
+            int to = info.to;
             boolean moverW = info.movingPieceWhite;
             int movingType = info.movingPieceType;
-
-            // Undo moving piece at destination
-            if (info.wasPromotion) {
-                removePieceAbs(moverW, info.promotionType, to);
-                addPieceAbs(moverW, 0, from); // restore pawn
-            } else {
-                removePieceAbs(moverW, movingType, to);
-                addPieceAbs(moverW, movingType, from);
+            int placedType = info.wasPromotion ? info.promotionType : movingType;
+
+            int stmOff = inc.stmBucketOff[inc.ply], ntmOff = inc.ntmBucketOff[inc.ply];
+            boolean refresh = false;
+            if (movingType == 5 && buckets > 1) {
+                int off = moverW ? stmBucketOff(bitboards) : ntmBucketOff(bitboards);
+                refresh = off != (moverW ? stmOff : ntmOff);
+                if (moverW) stmOff = off; else ntmOff = off;
             }
+            if (refresh) materialize(inc);
+
+            int d = inc.push(stmOff, ntmOff);
+            int[] delta = inc.delta;
+            delta[d] = feature(moverW, placedType, to);
+            delta[d + 1] = feature(moverW, movingType, from);
+            delta[d + 2] = -1;
+            delta[d + 3] = -1;
 
-            // Restore rook for castling
-            if (info.rookMoved) {
+            if (!info.squareMovedOntoWasEmpty || info.wasEnPassant) {
+                // Captures (normal or en passant)
+                int capSq = info.wasEnPassant ? info.epCaptureSq : to;
+                delta[d + 3] = feature(info.capturedPieceWhite, info.capturedPieceType, capSq);
+            } else if (info.rookMoved) {
+                // Rook move in castling
                 int y = moverW ? 7 : 0;
-                int rookFrom = Bitboards.sq(info.rookStartX, y);
-                int rookTo   = Bitboards.sq(info.rookEndX, y);
-                removePieceAbs(moverW, 3, rookTo);
-                addPieceAbs(moverW, 3, rookFrom);
+                delta[d + 2] = feature(moverW, 3, Bitboards.sq(info.rookEndX, y));
+                delta[d + 3] = feature(moverW, 3, Bitboards.sq(info.rookStartX, y));
             }
 
-            // Restore captured piece
-            if (info.wasEnPassant && info.capEnPassantBauerCoords != null) {
-                int capSq = info.capEnPassantBauerCoords.y * 8 + info.capEnPassantBauerCoords.x;
-                addPieceAbs(!moverW, 0, capSq);
-            } else if (!info.squareMovedOntoWasEmpty) {
-                addPieceAbs(info.capturedPieceWhite, info.capturedPieceType, to);
+            if (refresh) {
+                // The mover's side from the refresh cache, the other side as parent + delta
+                int p = inc.ply;
+                if (moverW) {
+                    refresh(inc, 0, bitboards, inc.stmStack[p], stmOff);
+                    applyDelta(inc.ntmStack[p], inc.ntmStack[p - 1], delta, d, ntmOff, true);
+                } else {
+                    refresh(inc, 1, bitboards, inc.ntmStack[p], ntmOff);
+                    applyDelta(inc.stmStack[p], inc.stmStack[p - 1], delta, d, stmOff, false);
+                }
+                inc.computed[p] = true;
+                inc.updates++;
+            } else if (!lazyUpdates) {
+                materialize(inc);
             }
         }
 
-        private static int infoSquareFrom(Zug z) { return z.startY * 8 + z.startX; }
-        private static int infoSquareTo(Zug z) { return z.endY * 8 + z.endX; }
+        /**
+         * Compute the sums of the current slot: walk back to the nearest computed ancestor, then
+         * parent + delta forward (slots with a king bucket change are always computed already).
+         */
+        void materialize(Accumulator inc) {
+            int top = inc.ply;
+            if (inc.computed[top]) return;
+            int p = top;
+            while (!inc.computed[p - 1]) p--;
+            for (; p <= top; p++) {
+                int d = p * 4;
+                applyDelta(inc.stmStack[p], inc.stmStack[p - 1], inc.delta, d, inc.stmBucketOff[p], false);
+                applyDelta(inc.ntmStack[p], inc.ntmStack[p - 1], inc.delta, d, inc.ntmBucketOff[p], true);
+                inc.computed[p] = true;
+                inc.updates++;
+            }
+        }
+
+        // dst = src + delta at d of one perspective. The moved piece goes in one fused pass that also
+        // does the copy; capture or castling rook are then applied in place.
+        private void applyDelta(short[] dst, short[] src, int[] delta, int d, int bucketOff, boolean ntm) {
+            int add0 = delta[d], sub0 = delta[d + 1], add1 = delta[d + 2], sub1 = delta[d + 3];
+            if (ntm) {
+                add0 = ntmFeature(add0); sub0 = ntmFeature(sub0);
+                if (add1 >= 0) add1 = ntmFeature(add1);
+                if (sub1 >= 0) sub1 = ntmFeature(sub1);
+            }
+            KERNELS.addSub(dst, src, l0w, bucketOff + add0 * H, bucketOff + sub0 * H, H);
+            if (add1 >= 0) {
+                KERNELS.addSub(dst, dst, l0w, bucketOff + add1 * H, bucketOff + sub1 * H, H);
+            } else if (sub1 >= 0) {
+                KERNELS.sub(dst, l0w, bucketOff + sub1 * H, H);
+            }
+        }
+
+        // Undo past the rebuild position (or the copy a search thread started from): recompute the
+        // base slot for the restored board from the refresh cache
+        void onMoveUndone(Accumulator inc, Bitboards bitboards) {
+            if (inc == null || inc.net != this) return;
+            if (inc.pop()) return;
+            inc.stmBucketOff[0] = stmBucketOff(bitboards);
+            inc.ntmBucketOff[0] = ntmBucketOff(bitboards);
+            refresh(inc, 0, bitboards, inc.stmAcc, inc.stmBucketOff[0]);
+            refresh(inc, 1, bitboards, inc.ntmAcc, inc.ntmBucketOff[0]);
+        }
     }
 }
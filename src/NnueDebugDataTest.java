@@ -95,7 +95,7 @@ public final class NnueDebugDataTest {
         int H = (int) reflectGetField(net, "H");
         short[] l0b = (short[]) reflectGetField(net, "l0b");
         short l1b = (short) reflectGetField(net, "l1b");
-        short[][] l0w = (short[][]) reflectGetField(net, "l0w");
+        short[] l0w = (short[]) reflectGetField(net, "l0w"); // flat, row of feature f at f * H
         short[] l1w = (short[]) reflectGetField(net, "l1w");
 
         // 1) Network constants
@@ -162,6 +162,15 @@ public final class NnueDebugDataTest {
         System.out.println("Final evaluation kiwipete: " + finalKiwipete);
         checkEq("Final evaluation kiwipete", finalKiwipete, -116);
 
+        // 5) The engine's own evaluation (incremental accumulators, active kernel backend) must
+        //    give exactly the values recomputed above
+        Board.loadFEN(FEN_STARTPOS);
+        Nnue.rebuildIncremental();
+        checkEq("Nnue.evaluate startpos (" + Nnue.backend() + ")", Nnue.evaluate(true), finalStart);
+        Board.loadFEN(FEN_KIWIPETE_W);
+        Nnue.rebuildIncremental();
+        checkEq("Nnue.evaluate kiwipete (" + Nnue.backend() + ")", Nnue.evaluate(true), finalKiwipete);
+
         if (mismatches == 0) {
             System.out.println("All NNUE debug checks matched.");
         } else {
@@ -209,7 +218,7 @@ public final class NnueDebugDataTest {
     // Accumulator pair (stm, ntm) for STM-aware fallback path
     private static final class AccPair { final int[] stm; final int[] ntm; AccPair(int H){ stm=new int[H]; ntm=new int[H]; } }
 
-    private static AccPair computeAccumulators(int H, short[] l0b, short[][] l0w, boolean whiteToMove) {
+    private static AccPair computeAccumulators(int H, short[] l0b, short[] l0w, boolean whiteToMove) {
         AccPair acc = new AccPair(H);
         for (int i = 0; i < H; i++) { acc.stm[i] = l0b[i]; acc.ntm[i] = l0b[i]; }
         // White pieces
@@ -233,7 +242,7 @@ public final class NnueDebugDataTest {
         return acc;
     }
 
-    private static void contribAcc(boolean whiteToMove, boolean isWhite, int pieceType, int sq, int H, short[][] l0w, AccPair acc) {
+    private static void contribAcc(boolean whiteToMove, boolean isWhite, int pieceType, int sq, int H, short[] l0w, AccPair acc) {
         int bulletPiece = (isWhite ? 0 : 8) + pieceType;
         boolean pieceIsStm = (whiteToMove && isWhite) || (!whiteToMove && !isWhite);
         int cRel = pieceIsStm ? 0 : 1;
@@ -243,8 +252,8 @@ public final class NnueDebugDataTest {
         int stmIdx = (cRel == 0 ? 0 : 384) + pc + sqStm;
         int ntmIdx = (cRel == 0 ? 384 : 0) + pc + (sqStm ^ 56);
         for (int h = 0; h < H; h++) {
-            acc.stm[h] += l0w[stmIdx][h];
-            acc.ntm[h] += l0w[ntmIdx][h];
+            acc.stm[h] += l0w[stmIdx * H + h];
+            acc.ntm[h] += l0w[ntmIdx * H + h];
         }
     }
 
@@ -4,10 +4,19 @@ import java.util.*;
  * NnueIncrementalTest
  *
  * Compares NNUE incremental evaluation against a full recompute over a
- * sequence of random legal moves from a given position.
+ * sequence of random legal moves from a given position, then checks that
+ * undoing the moves returns the same evals (accumulator stack pops).
+ * Finally reports the accumulator update cost: ns per make+unmake of every
+ * legal move in the visited positions, i.e. the work isLegalMove and the
+ * search pay per node.
+ *
+ * With --buckets the configured net is replaced by a random HalfKA net with
+ * 4 king buckets (written to a temp file with its .buckets layout), so king
+ * moves across buckets go through the refresh cache; use an endgame FEN with
+ * active kings, e.g. "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1".
  *
  * Usage (PowerShell/CMD):
- *   java -cp out NnueIncrementalTest [FEN|startpos] [steps] [seed]
+ *   java -cp out NnueIncrementalTest [--buckets] [FEN|startpos] [steps] [seed]
  *
  * Defaults:
  *   position = startpos
@@ -29,6 +38,12 @@ public class NnueIncrementalTest {
             int steps = 100;
             Long seed = null;
 
+            if (args.length > 0 && args[0].equals("--buckets")) {
+                args = Arrays.copyOfRange(args, 1, args.length);
+                java.io.File net = writeBucketNet(64, 4, 12345);
+                if (!Nnue.loadFromPath(net.getPath())) return;
+            }
+
             if (args.length > 0) {
                 // Join all args first, then try to split last two as steps/seed if numeric
                 String joined = String.join(" ", args).trim();
@@ -87,6 +102,9 @@ public class NnueIncrementalTest {
             Deque<Zug> moveStack = new ArrayDeque<>();
             Deque<MoveInfo> infoStack = new ArrayDeque<>();
             Deque<Long> hashStack = new ArrayDeque<>();
+            Deque<Integer> evalStack = new ArrayDeque<>();
+            ArrayList<Bitboards> visited = new ArrayList<>();
+            ArrayList<Boolean> visitedSide = new ArrayList<>();
 
             // Walk a random path of legal moves; at each ply compare inc vs full
             for (int i = 0; i < steps; i++) {
@@ -101,13 +119,19 @@ public class NnueIncrementalTest {
                     break;
                 }
 
+                Bitboards snapshot = new Bitboards();
+                snapshot.copyFrom(Board.bitboards);
+                visited.add(snapshot);
+                visitedSide.add(isWhite);
+
                 Zug z = moves.get(rng.nextInt(moves.size()));
                 MoveInfo inf = MoveFinder.saveMoveInfo(z);
+                evalStack.push(Nnue.evaluate(isWhite));
                 hashStack.push(hash);
                 moveStack.push(z);
                 infoStack.push(inf);
 
-                hash = MoveFinder.doMoveUpdateHash(z, inf, hash);
+                hash = MoveFinder.doMoveUpdateHash(z, inf);
 
                 // Eval after move
                 int inc = Nnue.evaluate(!isWhite);
@@ -123,13 +147,15 @@ public class NnueIncrementalTest {
                 isWhite = !isWhite;
             }
 
-            // Undo all moves to clean up
+            // Undo all moves; every position must evaluate as it did on the way down
+            int undoDiffs = 0;
             while (!moveStack.isEmpty()) {
                 Zug z = moveStack.pop();
                 MoveInfo inf = infoStack.pop();
                 MoveFinder.undoMove(z, inf);
                 hash = hashStack.pop();
                 isWhite = !isWhite;
+                if (Nnue.evaluate(isWhite) != evalStack.pop()) undoDiffs++;
             }
 
             double avgAbs = posCount > 0 ? (sumAbsDiff / (double) posCount) : 0.0;
@@ -137,30 +163,80 @@ public class NnueIncrementalTest {
             System.out.println("Average |inc - full|: " + String.format("%.2f", avgAbs) + " cp");
             System.out.println("Max |inc - full|: " + maxAbsDiff + " cp");
             System.out.println(">4 cp diffs: " + bigDiffs);
+            System.out.println("Undo diffs: " + undoDiffs);
+            System.out.println("Bucket refreshes: " + Board.bitboards.nnue.refreshes
+                    + " (" + Board.bitboards.nnue.moves + " moves)");
+            System.out.println("Accumulator update: " + String.format("%.1f", makeUnmakeNs(visited, visitedSide))
+                    + " ns per make+unmake (" + Nnue.backend() + ", H=" + Nnue.hiddenSize() + ")");
         } catch (Throwable t) {
             t.printStackTrace();
         }
     }
 
+    // Best of 5 rounds over all legal moves of the positions; the first round is JIT warm-up
+    private static double makeUnmakeNs(List<Bitboards> positions, List<Boolean> sides) {
+        int[] buf = new int[BitboardMoveGen.MAX_MOVES];
+        MoveInfo info = new MoveInfo();
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long moves = 0;
+            long t0 = System.nanoTime();
+            for (int rep = 0; rep < 50; rep++) {
+                for (int i = 0; i < positions.size(); i++) {
+                    Bitboards p = positions.get(i);
+                    int n = BitboardMoveGen.generateLegal(sides.get(i), p, buf, BitboardMoveGen.ALL);
+                    for (int j = 0; j < n; j++) {
+                        p.applyMove(buf[j], info);
+                        p.undoMove(buf[j], info);
+                    }
+                    moves += n;
+                }
+            }
+            best = Math.min(best, (System.nanoTime() - t0) / (double) Math.max(1, moves));
+        }
+        return best;
+    }
+
+    // Random HalfKA net in bullet's raw layout: buckets x 768 x H feature weights, bias, output
+    // weights, output bias, padded to 64 bytes. Layout from the own view: ranks 1-2 / 3-8 times
+    // files a-d / e-h.
+    private static java.io.File writeBucketNet(int H, int buckets, long seed) throws java.io.IOException {
+        Random rng = new Random(seed);
+        int shorts = buckets * 768 * H + H + 2 * H + 1;
+        java.nio.ByteBuffer bb = java.nio.ByteBuffer.allocate((shorts * 2 + 63) & ~63).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < buckets * 768 * H; i++) bb.putShort((short) (rng.nextInt(61) - 30));
+        for (int i = 0; i < H; i++) bb.putShort((short) rng.nextInt(100));
+        for (int i = 0; i < 2 * H; i++) bb.putShort((short) (rng.nextInt(121) - 60));
+        bb.putShort((short) 0);
+        java.io.File f = java.io.File.createTempFile("nnue-buckets", ".bin");
+        f.deleteOnExit();
+        java.nio.file.Files.write(f.toPath(), bb.array());
+
+        StringBuilder layout = new StringBuilder("# a1..h8\n");
+        for (int sq = 0; sq < 64; sq++) {
+            layout.append((sq / 8 >= 2 ? 2 : 0) + (sq % 8 >= 4 ? 1 : 0)).append(sq % 8 == 7 ? "\n" : " ");
+        }
+        java.io.File lf = new java.io.File(f.getPath() + ".buckets");
+        lf.deleteOnExit();
+        java.nio.file.Files.write(lf.toPath(), layout.toString().getBytes(java.nio.charset.StandardCharsets.US_ASCII));
+        return f;
+    }
+
     // Use reflection to force a full recompute path inside NNUE by temporarily
-    // nulling the private 'inc' field on the loaded Nnue.NET instance.
+    // nulling the package-private 'nnue' accumulator field on Board.bitboards.
     private static int evalFullViaReflection(boolean isWhite) throws Exception {
-        // Access Nnue.NET
-        Class<?> clsNnue = Nnue.class;
-        java.lang.reflect.Field fNET = clsNnue.getDeclaredField("NET");
-        fNET.setAccessible(true);
-        Object net = fNET.get(null);
-        if (net == null) throw new IllegalStateException("NNUE NET is null");
+        // Access Bitboards.nnue
+        java.lang.reflect.Field fInc = Bitboards.class.getDeclaredField("nnue");
+        fInc.setAccessible(true);
+        Object oldInc = fInc.get(Board.bitboards);
+        if (oldInc == null) throw new IllegalStateException("NNUE accumulators are not built");
 
         // Flip inc to null, evaluate, then restore
-        java.lang.reflect.Field fInc = net.getClass().getDeclaredField("inc");
-        fInc.setAccessible(true);
-        Object oldInc = fInc.get(net);
         try {
-            fInc.set(net, null);
+            fInc.set(Board.bitboards, null);
             return Nnue.evaluate(isWhite);
         } finally {
-            fInc.set(net, oldInc);
+            fInc.set(Board.bitboards, oldInc);
         }
     }
 }
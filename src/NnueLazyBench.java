@@ -0,0 +1,70 @@
+/**
+ * Accumulator work per evaluated node: eager vs. lazy NNUE updates ({@link Nnue#lazyUpdates}).
+ *
+ * Fixed-depth single-thread searches on the bench positions, once with the accumulators computed
+ * on every applied move and once only when a position is evaluated. Per mode it reports
+ *   moves     moves applied on the search board (search, qsearch, isLegalMove)
+ *   updates   accumulator slots computed (parent + delta)
+ *   evals     Nnue.evaluate calls
+ * and the time. Both modes must search the same tree: nodes and best move have to match.
+ *
+ * Usage:
+ *   java -cp out NnueLazyBench [depth]
+ */
+public final class NnueLazyBench {
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+
+        Zobrist.initZobrist();
+        Nnue.tryAutoLoad();
+        if (!Nnue.isUsable()) {
+            System.err.println("NNUE not usable, nothing to measure");
+            return;
+        }
+
+        // JIT warm-up in both modes
+        for (boolean lazy : new boolean[]{false, true}) {
+            Nnue.lazyUpdates = lazy;
+            run(BenchPositions.FENS[1], depth - 1);
+        }
+
+        System.out.println("=== NNUE lazy updates: depth " + depth + ", H=" + Nnue.hiddenSize() + " ===");
+        boolean failed = false;
+        long[][] total = new long[2][4];
+        for (String fen : BenchPositions.FENS) {
+            long[][] r = new long[2][];
+            String[] best = new String[2];
+            for (int mode = 0; mode < 2; mode++) {
+                Nnue.lazyUpdates = mode == 1;
+                Engine e = run(fen, 0);
+                long t0 = System.nanoTime();
+                Zug z = e.searchDepth(depth);
+                long ms = (System.nanoTime() - t0) / 1_000_000L;
+                Nnue.Accumulator acc = e.board().nnue;
+                r[mode] = new long[]{acc.moves, acc.updates, acc.evals, ms};
+                best[mode] = z == null ? "-" : z.processZug();
+                for (int i = 0; i < 4; i++) total[mode][i] += r[mode][i];
+                System.out.printf("%-6s %-72s nodes %8d best %s%n", mode == 0 ? "eager" : "lazy",
+                        fen, e.getNodeCounter(), best[mode]);
+            }
+            if (r[0][0] != r[1][0] || r[0][2] != r[1][2] || !best[0].equals(best[1])) {
+                System.out.println("  MISMATCH between eager and lazy search");
+                failed = true;
+            }
+        }
+        for (int mode = 0; mode < 2; mode++) {
+            long[] t = total[mode];
+            System.out.printf("%-6s moves %9d  updates %9d  evals %9d  updates/eval %.2f  time %d ms%n",
+                    mode == 0 ? "eager" : "lazy", t[0], t[1], t[2], t[1] / (double) Math.max(1, t[2]), t[3]);
+        }
+        Nnue.lazyUpdates = true;
+        if (failed) System.exit(1);
+    }
+
+    // Fresh engine (empty TT, zeroed counters) on the position; searches to depth if > 0
+    private static Engine run(String fen, int depth) {
+        Engine e = BenchPositions.engine(fen);
+        if (depth > 0) e.searchDepth(depth);
+        return e;
+    }
+}
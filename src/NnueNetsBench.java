@@ -0,0 +1,66 @@
+import java.io.File;
+import java.util.TreeMap;
+
+/**
+ * NPS versus hidden size H across the shipped nets, to choose the nnue.nets think-time limits.
+ *
+ * For every net: fixed-depth single-thread searches on the bench positions (fresh engine and TT
+ * each), reporting total nodes, the best time of 3 rounds and NPS. Then all nets are loaded
+ * together (the order given = ascending think time, limits spread over the budgets) and the
+ * net Nnue.selectNet picks is printed for typical think times.
+ *
+ * Usage:
+ *   java --add-modules jdk.incubator.vector -cp out NnueNetsBench [depth] [net.bin...]
+ */
+public final class NnueNetsBench {
+    private static final String[] NETS = {
+            "nnue2/quantised.bin", "nnue3/quantised.bin", "debugnnue/beans.bin", "nnue/quantised.bin"};
+    private static final long[] THINK_MS = {50, 200, 1000, 5000};
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        String[] nets = NETS;
+        if (args.length > 1) {
+            nets = new String[args.length - 1];
+            System.arraycopy(args, 1, nets, 0, nets.length);
+        }
+        Zobrist.initZobrist();
+
+        System.out.println("=== NNUE nets: depth " + depth + ", backend " + Nnue.backend() + " ===");
+        for (String path : nets) {
+            if (!Nnue.loadFromPath(path)) continue;
+            // JIT warm-up for this H (the kernels are specialised per loop length)
+            for (String fen : BenchPositions.FENS) BenchPositions.engine(fen).searchDepth(depth - 2);
+            long nodes = 0, ms = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long time = 0;
+                nodes = 0;
+                for (String fen : BenchPositions.FENS) {
+                    Engine e = BenchPositions.engine(fen);
+                    long t0 = System.nanoTime();
+                    e.searchDepth(depth);
+                    time += (System.nanoTime() - t0) / 1_000_000L;
+                    nodes += e.getNodeCounter();
+                }
+                ms = Math.min(ms, time);
+            }
+            System.out.printf("%-24s H=%-4d %4d KB  nodes %9d  time %6d ms  NPS %8.0f%n", path, Nnue.hiddenSize(),
+                    new File(path).length() / 1024, nodes, ms, nodes * 1000.0 / Math.max(1, ms));
+        }
+
+        // Selection with all nets loaded: limits 0, 100, 400, 1600, ... ms in the order given
+        TreeMap<Long, String> byMs = new TreeMap<>();
+        long limit = 0;
+        for (String path : nets) {
+            byMs.put(limit, path);
+            limit = limit == 0 ? 100 : limit * 4;
+        }
+        if (!Nnue.loadNets(byMs)) return;
+        System.out.println("selection with nnue.nets=" + byMs);
+        Engine e = BenchPositions.engine(BenchPositions.FENS[0]);
+        for (long ms : THINK_MS) {
+            System.out.printf("  think %5d ms -> H=%d%n", ms, Nnue.selectNet(e.board(), ms));
+        }
+    }
+}
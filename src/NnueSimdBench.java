@@ -0,0 +1,172 @@
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Scalar vs. Vector API NNUE kernels ({@link Nnue.ScalarKernels}, {@link NnueVector}).
+ *
+ * For every network file:
+ *  1. equality: both backends on random accumulators/weights of the net's H (full short range,
+ *     so the overflow flushes of the vector dot product are exercised) must agree bit for bit
+ *  2. kernels: ns per accumulator update (add + sub of one feature row) and per SCReLU dot
+ *     product of one perspective, for both backends
+ *  3. engine: ns per Nnue.evaluate and per make/unmake (accumulator push + pop) on positions
+ *     from random games, with the backend the engine selected at startup (NNUE_SIMD=0: scalar)
+ *
+ * Usage (the vector backend needs the incubator module):
+ *   java --add-modules jdk.incubator.vector -cp out NnueSimdBench [positions] [net.bin...]
+ */
+public final class NnueSimdBench {
+    private static final String[] NETS = {"nnue3/quantised.bin", "nnue/quantised.bin", "nnue2/quantised.bin"};
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int positions = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        String[] nets = NETS;
+        if (args.length > 1) {
+            nets = new String[args.length - 1];
+            System.arraycopy(args, 1, nets, 0, nets.length);
+        }
+
+        Nnue.Kernels scalar = new Nnue.ScalarKernels();
+        Nnue.Kernels vector = Nnue.selectKernels(true);
+        System.out.println("=== NNUE SIMD bench: engine backend " + Nnue.backend() + ", available: " + vector.name() + " ===");
+
+        boolean failed = false;
+        for (String path : nets) {
+            if (!Nnue.loadFromPath(path)) continue;
+            int h = Nnue.hiddenSize();
+
+            int mismatches = compare(scalar, vector, h, 20_000);
+            failed |= mismatches != 0;
+            System.out.printf("%s  H=%d  equality: %s%n", path, h, mismatches == 0 ? "OK" : mismatches + " MISMATCHES");
+
+            for (Nnue.Kernels k : new Nnue.Kernels[]{scalar, vector}) {
+                if (k == vector && vector.name().equals("scalar")) break;
+                double[] ns = kernelNs(k, h);
+                System.out.printf("  %-16s update %6.1f ns  dot %6.1f ns%n", k.name(), ns[0], ns[1]);
+            }
+
+            double[] ns = engineNs(positions);
+            System.out.printf("  engine (%s)  evaluate %6.1f ns  make+unmake %6.1f ns%n", Nnue.backend(), ns[0], ns[1]);
+        }
+        if (failed) {
+            System.err.println("FAIL: vector kernels differ from scalar kernels");
+            System.exit(1);
+        }
+    }
+
+    // Random inputs incl. lengths with a scalar tail; returns the number of differing results
+    private static int compare(Nnue.Kernels a, Nnue.Kernels b, int h, int trials) {
+        Random rnd = new Random(h);
+        int bad = 0;
+        for (int t = 0; t < trials; t++) {
+            int n = t % 4 == 0 ? h - 1 - rnd.nextInt(Math.min(h, 7)) : h;
+            short[] acc = randomShorts(rnd, 2 * h), w = randomShorts(rnd, 2 * h);
+            int maxW = 1;
+            for (short x : w) maxW = Math.max(maxW, Math.abs(x));
+            int safeTerms = (int) Math.max(1, Integer.MAX_VALUE / ((long) Nnue.QA * Nnue.QA * maxW));
+            if (a.screluDot(acc, w, h, n, safeTerms) != b.screluDot(acc, w, h, n, safeTerms)) bad++;
+
+            short[] x = acc.clone(), y = acc.clone();
+            a.add(x, w, h, n);
+            b.add(y, w, h, n);
+            a.sub(x, w, 1, n - 1);
+            b.sub(y, w, 1, n - 1);
+            a.addSub(x, acc, w, 2, h - 3, n - 2);
+            b.addSub(y, acc, w, 2, h - 3, n - 2);
+            if (!java.util.Arrays.equals(x, y)) bad++;
+        }
+        return bad;
+    }
+
+    private static short[] randomShorts(Random rnd, int n) {
+        short[] s = new short[n];
+        for (int i = 0; i < n; i++) {
+            // Mostly accumulator-like values, sometimes the extremes
+            s[i] = (short) (rnd.nextInt(8) == 0 ? rnd.nextInt(65536) : rnd.nextInt(1200) - 400);
+        }
+        return s;
+    }
+
+    // [ns per add+sub of one row, ns per dot product over H]
+    private static double[] kernelNs(Nnue.Kernels k, int h) {
+        Random rnd = new Random(1);
+        short[] rows = randomShorts(rnd, 768 * h); // flat like Nnue's l0w
+        short[] acc = randomShorts(rnd, h), l1w = randomShorts(rnd, 2 * h);
+        int iters = 4_000_000 / Math.max(1, h / 32);
+        double upd = Double.MAX_VALUE, dot = Double.MAX_VALUE;
+        long sink = 0;
+        for (int r = 0; r < ROUNDS; r++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < iters; i++) {
+                k.add(acc, rows, (i & 511) * h, h);
+                k.sub(acc, rows, ((i + 7) & 511) * h, h);
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < iters; i++) {
+                sink += k.screluDot(acc, l1w, (i & 1) * h, h, 1 + (i & 63));
+            }
+            long t2 = System.nanoTime();
+            upd = Math.min(upd, (t1 - t0) / (double) iters);
+            dot = Math.min(dot, (t2 - t1) / (double) iters);
+        }
+        if (sink == 42) System.out.print("");
+        return new double[]{upd, dot};
+    }
+
+    // [ns per Nnue.evaluate, ns per applyMove+undoMove] over positions of random games
+    private static double[] engineNs(int count) {
+        Random rnd = new Random(5);
+        ArrayList<Bitboards> boards = new ArrayList<>();
+        ArrayList<Boolean> sides = new ArrayList<>();
+        int[] buf = new int[BitboardMoveGen.MAX_MOVES];
+        Bitboards bb = new Bitboards();
+        boolean white = true;
+        int ply = 0;
+        bb.initStartPosition();
+        Nnue.rebuildIncremental(bb);
+        while (boards.size() < count) {
+            int n = BitboardMoveGen.generateLegal(white, bb, buf, BitboardMoveGen.ALL);
+            if (n == 0 || ply == 120) { // next game
+                bb.initStartPosition();
+                Nnue.rebuildIncremental(bb);
+                white = true;
+                ply = 0;
+                continue;
+            }
+            bb.applyMove(buf[rnd.nextInt(n)], new MoveInfo());
+            white = !white;
+            ply++;
+            Bitboards copy = new Bitboards();
+            copy.copyFrom(bb);
+            boards.add(copy);
+            sides.add(white);
+        }
+
+        double eval = Double.MAX_VALUE, make = Double.MAX_VALUE;
+        long sink = 0;
+        MoveInfo info = new MoveInfo();
+        for (int r = 0; r < ROUNDS; r++) {
+            long t0 = System.nanoTime();
+            for (int rep = 0; rep < 20; rep++) {
+                for (int i = 0; i < boards.size(); i++) sink += Nnue.evaluate(boards.get(i), sides.get(i));
+            }
+            long t1 = System.nanoTime();
+            long moves = 0;
+            for (int i = 0; i < boards.size(); i++) {
+                Bitboards p = boards.get(i);
+                int n = BitboardMoveGen.generateLegal(sides.get(i), p, buf, BitboardMoveGen.ALL);
+                for (int j = 0; j < n; j++) {
+                    p.applyMove(buf[j], info);
+                    p.undoMove(buf[j], info);
+                }
+                moves += n;
+            }
+            long t2 = System.nanoTime();
+            eval = Math.min(eval, (t1 - t0) / (20.0 * boards.size()));
+            make = Math.min(make, (t2 - t1) / (double) Math.max(1, moves));
+        }
+        if (sink == 42) System.out.print("");
+        return new double[]{eval, make};
+    }
+}
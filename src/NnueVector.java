@@ -0,0 +1,93 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * NNUE kernels on the Vector API (jdk.incubator.vector), selected by {@link Nnue} at startup when
+ * the module is present (compile and run with --add-modules jdk.incubator.vector).
+ *
+ * Integer arithmetic only, so the results are bit-identical to {@link Nnue.ScalarKernels}:
+ *  - accumulator add/sub/addSub: lane-wise short add/sub (wraps exactly like the scalar += on shorts)
+ *  - SCReLU dot product: clamp to [0, QA] as shorts, widen to int, c * w * c per lane. A term is
+ *    at most 255^2 * 32768 < 2^31, and the int lanes are added into long lanes every
+ *    {@code safeTerms} steps, before any lane can overflow; the long lanes are summed at the end.
+ * Lengths that are not a multiple of the vector length finish with a scalar tail.
+ */
+final class NnueVector implements Nnue.Kernels {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    // Dot product: as many shorts as the preferred int vector has lanes, widened in one step
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORTS_HALF =
+            VectorSpecies.of(short.class, VectorShape.forBitSize(INTS.vectorBitSize() / 2));
+    private static final VectorSpecies<Long> LONGS =
+            VectorSpecies.of(long.class, VectorShape.forBitSize(INTS.vectorBitSize()));
+
+    NnueVector() {
+        // Fail here (and fall back to scalar) if the module or a usable shape is missing
+        if (SHORTS_HALF.length() != INTS.length()) throw new UnsupportedOperationException("vector shapes");
+    }
+
+    @Override
+    public String name() {
+        return "vector " + SHORTS.vectorBitSize() + "-bit";
+    }
+
+    @Override
+    public void add(short[] acc, short[] w, int wOff, int n) {
+        int h = 0;
+        for (int bound = SHORTS.loopBound(n); h < bound; h += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, acc, h).add(ShortVector.fromArray(SHORTS, w, wOff + h)).intoArray(acc, h);
+        }
+        for (; h < n; h++) acc[h] += w[wOff + h];
+    }
+
+    @Override
+    public void sub(short[] acc, short[] w, int wOff, int n) {
+        int h = 0;
+        for (int bound = SHORTS.loopBound(n); h < bound; h += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, acc, h).sub(ShortVector.fromArray(SHORTS, w, wOff + h)).intoArray(acc, h);
+        }
+        for (; h < n; h++) acc[h] -= w[wOff + h];
+    }
+
+    @Override
+    public void addSub(short[] dst, short[] src, short[] w, int addOff, int subOff, int n) {
+        int h = 0;
+        for (int bound = SHORTS.loopBound(n); h < bound; h += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, src, h)
+                    .add(ShortVector.fromArray(SHORTS, w, addOff + h))
+                    .sub(ShortVector.fromArray(SHORTS, w, subOff + h))
+                    .intoArray(dst, h);
+        }
+        for (; h < n; h++) dst[h] = (short) (src[h] + w[addOff + h] - w[subOff + h]);
+    }
+
+    @Override
+    public long screluDot(short[] acc, short[] w, int wOff, int n, int safeTerms) {
+        IntVector sum = IntVector.zero(INTS);
+        LongVector lo = LongVector.zero(LONGS), hi = LongVector.zero(LONGS);
+        int h = 0, pending = 0;
+        for (int bound = SHORTS_HALF.loopBound(n); h < bound; h += SHORTS_HALF.length()) {
+            IntVector c = (IntVector) ShortVector.fromArray(SHORTS_HALF, acc, h)
+                    .max((short) 0).min((short) Nnue.QA)
+                    .convertShape(VectorOperators.S2I, INTS, 0);
+            IntVector wv = (IntVector) ShortVector.fromArray(SHORTS_HALF, w, wOff + h)
+                    .convertShape(VectorOperators.S2I, INTS, 0);
+            sum = sum.add(c.mul(wv).mul(c));
+            if (++pending == safeTerms) {
+                lo = lo.add(sum.convertShape(VectorOperators.I2L, LONGS, 0));
+                hi = hi.add(sum.convertShape(VectorOperators.I2L, LONGS, 1));
+                sum = IntVector.zero(INTS);
+                pending = 0;
+            }
+        }
+        lo = lo.add(sum.convertShape(VectorOperators.I2L, LONGS, 0));
+        hi = hi.add(sum.convertShape(VectorOperators.I2L, LONGS, 1));
+        long out = lo.add(hi).reduceLanes(VectorOperators.ADD);
+        for (; h < n; h++) out += (long) Nnue.screlu(acc[h]) * (long) w[wOff + h];
+        return out;
+    }
+}
@@ -0,0 +1,196 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Transposition table outside the Java heap (tt.impl=offheap).
+ *
+ * Each cluster of {@link #CLUSTER_SIZE} entries is one 64-byte block aligned to a cache line,
+ * so a probe costs a single cache miss instead of one per field array. An entry is two longs:
+ * the full 64-bit Zobrist key and the packed entry ({@link TranspositionTable}), which probe
+ * returns as is. Generation 0 still means "empty slot"; replacement is the same as
+ * {@link ArrayTranspositionTable}.
+ *
+ * Memory comes from direct ByteBuffers of at most 1 GB each (a cluster never straddles two), so
+ * tables above 4 GB work; the slot index stays an int, which allows up to 32 GB. Direct memory is
+ * zero-filled on allocation, i.e. every page is touched before the first search. It counts against
+ * -XX:MaxDirectMemorySize (default: the max heap size), so big tables need e.g.
+ * -XX:MaxDirectMemorySize=9g for tt.size.mb=8192. Large pages are up to the OS (Linux THP).
+ */
+final class OffHeapTranspositionTable extends TranspositionTable {
+
+    private static final int CLUSTER_BYTES = 64;
+    private static final int ENTRY_BYTES = 16;
+    // 2^24 clusters * 64 bytes = 1 GB per buffer
+    private static final int CHUNK_SHIFT = 24;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    private static final long MAX_CLUSTERS = Integer.MAX_VALUE / CLUSTER_SIZE;
+
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    private long clusterCount;
+    private ByteBuffer[] chunks;
+
+    OffHeapTranspositionTable(int sizeMb) {
+        resizeMB(sizeMb);
+    }
+
+    @Override
+    public String impl() {
+        return "offheap";
+    }
+
+    @Override
+    public int sizeMB() {
+        return (int) (clusterCount * CLUSTER_BYTES / (1024L * 1024L));
+    }
+
+    @Override
+    public int capacityEntries() {
+        return (int) (clusterCount * CLUSTER_SIZE);
+    }
+
+    @Override
+    public void resizeMB(int sizeMb) {
+        if (sizeMb <= 0) {
+            sizeMb = 1;
+        }
+        long clusters = (long) sizeMb * 1024L * 1024L / CLUSTER_BYTES;
+        if (clusters > MAX_CLUSTERS) clusters = MAX_CLUSTERS;
+
+        // Let the old buffers go before reserving the new ones
+        chunks = null;
+        clusterCount = 0;
+
+        int n = (int) ((clusters + CHUNK_MASK) >>> CHUNK_SHIFT);
+        ByteBuffer[] c = new ByteBuffer[n];
+        for (int i = 0; i < n; i++) {
+            long inChunk = Math.min(clusters - ((long) i << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+            int bytes = (int) (inChunk * CLUSTER_BYTES);
+            c[i] = ByteBuffer.allocateDirect(bytes + CLUSTER_BYTES - 1)
+                    .alignedSlice(CLUSTER_BYTES)
+                    .limit(bytes)
+                    .slice()
+                    .order(ByteOrder.nativeOrder());
+        }
+        chunks = c;
+        clusterCount = clusters;
+        generation = 1;
+    }
+
+    @Override
+    public void clear() {
+        if (chunks != null) {
+            for (ByteBuffer b : chunks) {
+                for (int off = 0, cap = b.capacity(); off < cap; off += ZEROS.length) {
+                    b.put(off, ZEROS, 0, Math.min(ZEROS.length, cap - off));
+                }
+            }
+        }
+        generation = 1;
+    }
+
+    @Override
+    long probeEntry(long key) {
+        long c = clusterOf(key, clusterCount);
+        ByteBuffer b = chunks[(int) (c >>> CHUNK_SHIFT)];
+        int base = (int) ((c & CHUNK_MASK) * CLUSTER_BYTES);
+        for (int i = 0; i < CLUSTER_SIZE; i++) {
+            int off = base + i * ENTRY_BYTES;
+            long data = b.getLong(off + 8);
+            if ((data & GEN_BITS) != 0 && b.getLong(off) == key) {
+                data = withGeneration(data); // refresh age on use
+                b.putLong(off + 8, data);
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+
+    @Override
+    int slotAge(int slot) {
+        int g = generation(chunks[0].getLong(slot * ENTRY_BYTES + 8));
+        return g == 0 ? -1 : (generation - g) & 0xFF;
+    }
+
+    @Override
+    long dataBytes() {
+        return clusterCount * CLUSTER_BYTES;
+    }
+
+    @Override
+    void writeData(FileChannel ch, long pos) throws IOException {
+        for (ByteBuffer b : chunks) {
+            ByteBuffer src = b.duplicate().clear();
+            while (src.hasRemaining()) pos += ch.write(src, pos);
+        }
+    }
+
+    @Override
+    void readData(FileChannel ch, long pos) throws IOException {
+        for (ByteBuffer b : chunks) {
+            ByteBuffer dst = b.duplicate().clear();
+            while (dst.hasRemaining()) {
+                int r = ch.read(dst, pos);
+                if (r < 0) throw new EOFException("truncated TT file");
+                pos += r;
+            }
+        }
+    }
+
+    @Override
+    void storeEntry(long key, int depth, int flag, int value, int bestMoveCode) {
+        long c = clusterOf(key, clusterCount);
+        ByteBuffer b = chunks[(int) (c >>> CHUNK_SHIFT)];
+        int base = (int) ((c & CHUNK_MASK) * CLUSTER_BYTES);
+
+        // 1) Update if key already present
+        for (int i = 0; i < CLUSTER_SIZE; i++) {
+            int off = base + i * ENTRY_BYTES;
+            long data = b.getLong(off + 8);
+            if ((data & GEN_BITS) != 0 && b.getLong(off) == key) {
+                int oldDepth = depth(data);
+                int move = bestMoveCode != 0 ? bestMoveCode : move(data);
+
+                // Keep deeper info unless the new info is exact (same rule as the array table)
+                if (depth >= oldDepth || flag == 0 /* EXACT */) {
+                    b.putLong(off + 8, pack(value, depth, flag, move));
+                } else {
+                    b.putLong(off + 8, withGeneration(data & ~MOVE_MASK | move));
+                }
+                return;
+            }
+        }
+
+        // 2) Use an empty slot if available, 3) else the lowest (depth - 8*age)
+        int victim = base;
+        int worstScore = Integer.MAX_VALUE;
+        int gNow = generation & 0xFF;
+        for (int i = 0; i < CLUSTER_SIZE; i++) {
+            int off = base + i * ENTRY_BYTES;
+            long data = b.getLong(off + 8);
+            int g = generation(data);
+            if (g == 0) {
+                victim = off;
+                break;
+            }
+            int d = depth(data);
+            int age = (gNow - g) & 0xFF;
+            int score = d - (age * 8);
+            if (score < worstScore) {
+                worstScore = score;
+                victim = off;
+            }
+        }
+
+        if (stats != null) {
+            long old = b.getLong(victim + 8);
+            if (generation(old) != 0) countOverwrite(depth(old));
+        }
+        b.putLong(victim, key);
+        b.putLong(victim + 8, pack(value, depth, flag, bestMoveCode));
+    }
+}
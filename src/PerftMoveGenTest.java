@@ -4,35 +4,43 @@ import java.security.NoSuchAlgorithmException;
 public class PerftMoveGenTest {
     private static long startTime = 0;
     private static long startHash;
+    // "pseudo" on the command line: old path (pseudo-legal generation + make/unmake legality filter)
+    private static boolean pseudoLegalFilter = false;
+    // "check" on the command line: verify mailbox, occupancy and PST totals after every make/unmake (slow)
     public static void main(String[] args) throws NoSuchAlgorithmException {
+        // A number on the command line sets the depth (default 5)
+        int depth = 5;
+        for (String a : args) {
+            if (a.equals("pseudo")) pseudoLegalFilter = true;
+            else if (a.equals("check")) Bitboards.setConsistencyChecks(true);
+            else depth = Integer.parseInt(a);
+        }
         Board.loadFEN("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - ");
         
         System.out.println("Running Perft test with PieceTracker optimization...");
         System.out.println("White pieces: " + Long.bitCount(Board.bitboards.occW));
         System.out.println("Black pieces: " + Long.bitCount(Board.bitboards.occB));
+        if (Bitboards.consistencyChecks()) System.out.println("Mailbox/occupancy consistency checks enabled");
         System.out.println();
 
         Zobrist.initZobrist();
         startHash = Zobrist.computeHash(Board.bitboards, true);
         
-        perftDivide(5, true, startHash); // Will show all root moves and their node counts
+        perftDivide(depth, true, startHash); // Will show all root moves and their node counts
     }
 
     public static void perftDivide(int depth, boolean isWhite, long hash) throws NoSuchAlgorithmException {
         startTime = System.currentTimeMillis();
 
-        ArrayList<Zug> moves = MoveFinder.possibleMoves(isWhite);
-
-        moves.removeIf(zug -> !Board.bitboards.isLegalMove(zug, isWhite));
+        ArrayList<Zug> moves = legalMoves(isWhite);
 
         MoveOrdering.orderMoves(moves, isWhite);
 
         int total = 0;
         for (Zug zug : moves) {
-            long oldHash = hash;
             MoveInfo info = MoveFinder.saveMoveInfo(zug);
 
-            long newHash = MoveFinder.doMoveUpdateHash(zug, info, oldHash);
+            long newHash = MoveFinder.doMoveUpdateHash(zug, info);
             long recomputed = Zobrist.computeHash(Board.bitboards, !isWhite);
             if (newHash != recomputed) {
                 throw new RuntimeException("Hash mismatch at root move " + zug.processZug() + ": newHash=" + newHash + ", recomputed=" + recomputed);
@@ -42,6 +50,9 @@ public class PerftMoveGenTest {
             System.out.println(zug.processZug() + ": " + nodes);
 
             MoveFinder.undoMove(zug, info);
+            if (Board.bitboards.key() != hash) {
+                throw new RuntimeException("Key not restored after undo of root move " + zug.processZug());
+            }
             total += nodes;
         }
         long elapsed = System.currentTimeMillis() - startTime;
@@ -56,17 +67,14 @@ public class PerftMoveGenTest {
     private static int perft(int depth, boolean isWhite, long hash) {
         if (depth == 0) return 1;
 
-        ArrayList<Zug> moves = MoveFinder.possibleMoves(isWhite);
-
-        moves.removeIf(zug -> !Board.bitboards.isLegalMove(zug, isWhite));
+        ArrayList<Zug> moves = legalMoves(isWhite);
 
         MoveOrdering.orderMoves(moves, isWhite);
 
         int count = 0;
         for (Zug zug : moves) {
-            long oldHash = hash;
             MoveInfo info = MoveFinder.saveMoveInfo(zug);
-            long newHash = MoveFinder.doMoveUpdateHash(zug, info, oldHash);
+            long newHash = MoveFinder.doMoveUpdateHash(zug, info);
 
             long recomputed = Zobrist.computeHash(Board.bitboards, !isWhite);
             if (newHash != recomputed) {
@@ -75,7 +83,17 @@ public class PerftMoveGenTest {
 
             count += perft(depth - 1, !isWhite, newHash);
             MoveFinder.undoMove(zug, info);
+            if (Board.bitboards.key() != hash) {
+                throw new RuntimeException("Key not restored after undo of " + zug.processZug());
+            }
         }
         return count;
     }
+
+    private static ArrayList<Zug> legalMoves(boolean isWhite) {
+        if (!pseudoLegalFilter) return BitboardMoveGen.generateLegal(isWhite, Board.bitboards);
+        ArrayList<Zug> moves = MoveFinder.possibleMoves(isWhite);
+        moves.removeIf(zug -> !Board.bitboards.isLegalMove(zug, isWhite));
+        return moves;
+    }
 }
@@ -0,0 +1,115 @@
+import java.util.*;
+
+/**
+ * PstIncrementalTest
+ *
+ * Compares the PST eval from the running totals of Bitboards (evaluatePstOnly)
+ * against a full recompute over all pieces (evaluatePstFull) over random games
+ * of legal moves, for both sides to move, then checks the same on the way back
+ * while undoing the moves. Covers captures, castling, en passant and promotions
+ * as far as the random games reach them; the bench positions and a promotion
+ * race start close to those. Finally reports ns per call of both.
+ *
+ * Usage (PowerShell/CMD):
+ *   java -cp out PstIncrementalTest [FEN|startpos] [steps] [seed]
+ *
+ * Defaults:
+ *   positions = BenchPositions.FENS and a promotion race
+ *   steps     = 200 per game
+ *   seed      = random
+ */
+public class PstIncrementalTest {
+    // Bench positions and a promotion race
+    private static final String[] FENS = BenchPositions.with("n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1");
+
+    public static void main(String[] args) {
+        String[] fens = FENS;
+        int steps = 200;
+        long seed = new Random().nextLong();
+        if (args.length > 0) {
+            // Trailing numbers are steps and seed, the rest is the FEN or 'startpos'
+            String[] parts = String.join(" ", args).trim().split("\\s+");
+            int n = parts.length;
+            try { seed = Long.parseLong(parts[n - 1]); n--; } catch (NumberFormatException ignored) {}
+            if (n < parts.length && n > 0) {
+                try { steps = Integer.parseInt(parts[n - 1]); n--; } catch (NumberFormatException ignored) {}
+            }
+            if (n > 0) fens = new String[]{String.join(" ", Arrays.copyOf(parts, n))};
+        }
+        System.out.println("seed " + seed);
+        Random rng = new Random(seed);
+
+        int positions = 0, diffs = 0, undoDiffs = 0;
+        ArrayList<Bitboards> visited = new ArrayList<>();
+        int[] buf = new int[BitboardMoveGen.MAX_MOVES];
+        for (String fen : fens) {
+            Bitboards bb = new Bitboards();
+            boolean isWhite = true;
+            if (fen.equalsIgnoreCase("startpos")) bb.initStartPosition();
+            else isWhite = Board.loadFEN(bb, fen);
+
+            Deque<Integer> moveStack = new ArrayDeque<>();
+            Deque<MoveInfo> infoStack = new ArrayDeque<>();
+            Deque<Integer> evalStack = new ArrayDeque<>();
+            diffs += check(bb);
+            positions++;
+            for (int i = 0; i < steps; i++) {
+                int n = BitboardMoveGen.generateLegal(isWhite, bb, buf, BitboardMoveGen.ALL);
+                if (n == 0) break;
+                int move = buf[rng.nextInt(n)];
+                MoveInfo info = new MoveInfo();
+                evalStack.push(Evaluation.evaluatePstOnly(bb, true));
+                bb.applyMove(move, info);
+                moveStack.push(move);
+                infoStack.push(info);
+                isWhite = !isWhite;
+
+                diffs += check(bb);
+                positions++;
+                Bitboards snapshot = new Bitboards();
+                snapshot.copyFrom(bb);
+                visited.add(snapshot);
+            }
+
+            // Undo all moves; every position must evaluate as it did on the way down
+            while (!moveStack.isEmpty()) {
+                bb.undoMove(moveStack.pop(), infoStack.pop());
+                if (Evaluation.evaluatePstOnly(bb, true) != evalStack.pop()) undoDiffs++;
+                undoDiffs += check(bb);
+            }
+        }
+
+        System.out.println("Positions checked: " + positions);
+        System.out.println("Diffs vs full recompute: " + diffs);
+        System.out.println("Undo diffs: " + undoDiffs);
+        System.out.printf("PST eval: %.1f ns incremental, %.1f ns full recompute%n",
+                nsPerCall(visited, true), nsPerCall(visited, false));
+        if (diffs != 0 || undoDiffs != 0) System.exit(1);
+    }
+
+    // 1 if the running totals disagree with the full recompute for either side to move
+    private static int check(Bitboards bb) {
+        boolean ok = Evaluation.evaluatePstOnly(bb, true) == Evaluation.evaluatePstFull(bb, true)
+                && Evaluation.evaluatePstOnly(bb, false) == Evaluation.evaluatePstFull(bb, false);
+        return ok ? 0 : 1;
+    }
+
+    // Best of 5 rounds over the visited positions; the first round is JIT warm-up
+    private static double nsPerCall(List<Bitboards> positions, boolean incremental) {
+        double best = Double.MAX_VALUE;
+        long sink = 0;
+        for (int round = 0; round < 5; round++) {
+            long calls = 0;
+            long t0 = System.nanoTime();
+            for (int rep = 0; rep < 200; rep++) {
+                for (Bitboards p : positions) {
+                    sink += incremental ? Evaluation.evaluatePstOnly(p, true) : Evaluation.evaluatePstFull(p, true);
+                    calls++;
+                }
+            }
+            best = Math.min(best, (System.nanoTime() - t0) / (double) Math.max(1, calls));
+        }
+        if (sink == 42) System.out.print("");
+        return best;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Node-count benchmark for killer/history ordering of quiet moves.
+ *
+ * Searches every bench position to a fixed depth (single thread, TT cleared before each
+ * search) once without and once with killers + history, and prints nodes, time and the
+ * relative node reduction per position and in total.
+ *
+ * Usage:
+ *   java -cp out QuietOrderingBench [depth]
+ */
+public final class QuietOrderingBench {
+    private static final String[] FENS = BenchPositions.with(
+            "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10");
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+
+        Zobrist.initZobrist();
+        try { Nnue.tryAutoLoad(); } catch (Throwable ignored) {}
+        MoveFinder.setThreads(1);
+
+        // Warm up the JIT so the first configuration is not penalised
+        run(FENS[1], Math.max(1, depth - 1), true);
+
+        long totalOff = 0, totalOn = 0, msOff = 0, msOn = 0;
+        System.out.println("=== Quiet ordering bench: depth " + depth + " ===");
+        for (String fen : FENS) {
+            long[] off = run(fen, depth, false);
+            long[] on = run(fen, depth, true);
+            totalOff += off[0]; msOff += off[1];
+            totalOn += on[0]; msOn += on[1];
+            System.out.printf("off=%9d (%5d ms)  on=%9d (%5d ms)  %+.1f%%  %s%n",
+                    off[0], off[1], on[0], on[1], change(off[0], on[0]), fen);
+        }
+        System.out.printf("total: off=%d nodes (%d ms)  on=%d nodes (%d ms)  nodes %+.1f%%%n",
+                totalOff, msOff, totalOn, msOn, change(totalOff, totalOn));
+        MoveFinder.setQuietHeuristics(true);
+    }
+
+    // Returns {nodes, elapsed ms} for one fixed-depth search
+    private static long[] run(String fen, int depth, boolean heuristics) {
+        MoveFinder.setQuietHeuristics(heuristics);
+        Board.loadFEN(fen);
+        MoveFinder.tt().clear();
+        MoveFinder.resetNodeCounter();
+        long start = System.nanoTime();
+        MoveFinder.iterativeDeepening(Board.whiteToMove, Long.MAX_VALUE / 4, depth);
+        long ms = (System.nanoTime() - start) / 1_000_000L;
+        return new long[]{MoveFinder.getNodeCounter(), ms};
+    }
+
+    private static double change(long before, long after) {
+        return before == 0 ? 0.0 : (after - before) * 100.0 / before;
+    }
+}
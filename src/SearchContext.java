@@ -0,0 +1,123 @@
+import java.util.Arrays;
+
+/**
+ * Per-thread search state.
+ *
+ * Every search thread owns one context: its own copy of the position (including the
+ * NNUE accumulators stored inside {@link Bitboards}), its node counter, deadline and abort
+ * flags. The transposition table is owned by the {@link Engine}; all threads of one engine
+ * share it (Lazy SMP), and several engines may share one table as well.
+ */
+public final class SearchContext {
+    final int id;
+    final Bitboards board;
+    TranspositionTable tt;
+
+    // Time control for search (set by the main thread, copied to its helpers)
+    volatile long searchEndTimeMs = Long.MAX_VALUE;
+
+    // Node counter for benchmarking
+    long nodes;
+
+    // Set when the deadline passed or the main thread asked us to stop
+    boolean timeUp;
+    // Set to true if an iteration was aborted due to timeout inside the search
+    boolean depthAborted;
+
+    // Written by the main thread to stop a helper; read by the helper at every node
+    volatile boolean stop;
+
+    // Deepest iteration this context fully completed in the current search
+    volatile int completedDepth;
+
+    // Quiet move ordering: two killer slots per ply and butterfly history [color][from][to]
+    static final int MAX_PLY = 128;
+    private static final int HISTORY_MAX = 1 << 20;
+    final int[][] killers = new int[MAX_PLY][2];
+    final int[][][] history = new int[2][64][64];
+    // Switch for benchmarks (node count with/without killers and history)
+    boolean useQuietHeuristics = true;
+
+    // Per-ply search stack, allocated once: move pickers, undo records, null-move state and
+    // qsearch move/score buffers, so the steady-state search allocates nothing per node
+    final MovePicker[] pickers = new MovePicker[MAX_PLY];
+    final MoveInfo[] undo = new MoveInfo[MAX_PLY];
+    final int[] nullMoveEp = new int[MAX_PLY];
+    final int[][] qMoves = new int[MAX_PLY][BitboardMoveGen.MAX_MOVES];
+    final int[][] qScores = new int[MAX_PLY][BitboardMoveGen.MAX_MOVES];
+
+    // Root move list of the current search and its score/result buffers (one set per context,
+    // reused by every iteration), and undo records for moves played on the board between searches
+    final int[] rootMoves = new int[BitboardMoveGen.MAX_MOVES];
+    final int[] rootScores = new int[BitboardMoveGen.MAX_MOVES];
+    final MoveFinder.SearchResult rootResult = new MoveFinder.SearchResult();
+    private MoveInfo[] gameUndo = new MoveInfo[256];
+
+    SearchContext(int id, Bitboards board, TranspositionTable tt) {
+        this.id = id;
+        this.board = board;
+        this.tt = tt;
+        for (int i = 0; i < MAX_PLY; i++) {
+            pickers[i] = new MovePicker();
+            undo[i] = new MoveInfo();
+        }
+    }
+
+    boolean isMainThread() { return id == 0; }
+
+    /**
+     * Undo record for the next move played on the board: one per position of the game history
+     * (by {@link Bitboards#historyLength}), reused once that move is undone. Created on first use.
+     */
+    MoveInfo gameUndo() {
+        int i = board.historyLength();
+        if (i >= gameUndo.length) gameUndo = Arrays.copyOf(gameUndo, Math.max(i + 1, gameUndo.length * 2));
+        if (gameUndo[i] == null) gameUndo[i] = new MoveInfo();
+        return gameUndo[i];
+    }
+
+    void resetForSearch() {
+        nodes = 0;
+        timeUp = false;
+        depthAborted = false;
+        stop = false;
+        completedDepth = 0;
+    }
+
+    /** Called between searches: killers are position specific, history is halved so old results fade. */
+    void ageHeuristics() {
+        for (int[] k : killers) { k[0] = Move.NONE; k[1] = Move.NONE; }
+        halveHistory();
+    }
+
+    /** Record a quiet move that caused a beta cutoff at this ply. */
+    void updateQuietCutoff(int move, boolean white, int depth, int ply) {
+        if (!useQuietHeuristics) return;
+        if (ply < MAX_PLY) {
+            int[] k = killers[ply];
+            if (k[0] != move) {
+                k[1] = k[0];
+                k[0] = move;
+            }
+        }
+        int[] row = history[white ? 0 : 1][Move.from(move)];
+        int to = Move.to(move);
+        row[to] += depth * depth;
+        if (row[to] > HISTORY_MAX) {
+            // Keep the scale bounded without losing relative order
+            halveHistory();
+        }
+    }
+
+    private void halveHistory() {
+        for (int[][] side : history) {
+            for (int[] row : side) {
+                for (int i = 0; i < 64; i++) row[i] >>= 1;
+            }
+        }
+    }
+
+    int historyScore(int move, boolean white) {
+        return history[white ? 0 : 1][Move.from(move)][Move.to(move)];
+    }
+}
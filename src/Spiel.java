@@ -2,8 +2,10 @@ public class Spiel {
 
     public static void newGame(){
         Board.setupStartPosition();
-        MoveFinder.tt.clear();
+        // tt.keep.warm: positions from earlier games stay in the table (they age out by generation)
+        if (!Config.getInstance().isTtKeepWarm()) {
+            MoveFinder.tt().clear();
+        }
         Zobrist.initZobrist();
-        LichessBotStream.startHash = Zobrist.computeHash(Board.bitboards, true);
     }
 }
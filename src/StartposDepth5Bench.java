@@ -21,10 +21,10 @@ public final class StartposDepth5Bench {
 
         // Legacy PST only
         Evaluation.setForcePstOnly(true);
-        MoveFinder.tt.clear();
+        MoveFinder.tt().clear();
         MoveFinder.resetNodeCounter();
         long start = System.nanoTime();
-        int pstScore = MoveFinder.negamax(depth, -1000000, 1000000, Board.whiteToMove, 0L);
+        int pstScore = MoveFinder.negamax(depth, -1000000, 1000000, Board.whiteToMove);
         long pstTimeNs = System.nanoTime() - start;
         long pstNodes = MoveFinder.getNodeCounter();
         double pstNps = pstNodes / (pstTimeNs / 1e9);
@@ -33,10 +33,10 @@ public final class StartposDepth5Bench {
         Evaluation.setForcePstOnly(false);
         // Rebuild NNUE incremental accumulators for startpos
         try { if (Nnue.isUsable()) Nnue.rebuildIncremental(); } catch (Throwable ignored) {}
-        MoveFinder.tt.clear();
+        MoveFinder.tt().clear();
         MoveFinder.resetNodeCounter();
         start = System.nanoTime();
-        int nnueScore = MoveFinder.negamax(depth, -1000000, 1000000, Board.whiteToMove, 0L);
+        int nnueScore = MoveFinder.negamax(depth, -1000000, 1000000, Board.whiteToMove);
         long nnueTimeNs = System.nanoTime() - start;
         long nnueNodes = MoveFinder.getNodeCounter();
         double nnueNps = nnueNodes / (nnueTimeNs / 1e9);
@@ -1,95 +1,110 @@
-import java.util.Arrays;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 
 /**
- * Fixed-size transposition table.
+ * Fixed-size transposition table shared by all search threads of an engine.
  *
- * Design notes:
- * - Uses clusters (buckets) of multiple entries, similar to top engines.
- * - Replacement is based on a simple depth-vs-age score, inspired by Stockfish's
- *   "depth minus 8 * age" style heuristic.
- * - Stores best move in a compact int encoding to avoid allocating millions of Zug objects.
+ * The search only sees this API: {@link #probe} returns a snapshot of the entry packed into one
+ * long (or {@link #MISS}), read with {@link #value}/{@link #depth}/{@link #flag}/{@link #move},
+ * and results are written back with {@link #store}. {@link #newSearch} advances the generation
+ * once per root search so entries from earlier moves age out.
+ *
+ * Packed entry:
+ *   bits  0-18 move ({@link Move} int), 19-20 bound flag, 21-28 generation,
+ *   29-36 depth (0..255), 37-63 value (signed, 27 bits)
+ * Stored entries always have a generation != 0, so a packed entry is never 0.
+ *
+ * Implementations (selected with tt.impl / TT_IMPL, see {@link #create}):
+ *  - array:    {@link ArrayTranspositionTable}, one Java array per field (default for 1 thread)
+ *  - offheap:  {@link OffHeapTranspositionTable}, one 64-byte cluster per cache line outside the heap
+ *  - lockless: {@link LocklessTranspositionTable}, key XOR data per entry so concurrent writers never
+ *              produce a torn hit (default with threads > 1)
+ *  - compact:  {@link CompactTranspositionTable}, 8 bytes per entry with a 16-bit key check
+ *
+ * A table can be written to a file with {@link #save} and read back with {@link #load} (same
+ * implementation and capacity): a 4 KB header followed by the raw table memory.
+ *
+ * With {@link #enableStats} the table counts probes, hits, stores and overwrites ({@link TtStats});
+ * implementations provide {@link #probeEntry}/{@link #storeEntry}, the counting happens here.
  */
-public final class TranspositionTable {
+public abstract class TranspositionTable {
 
     // Keep a small cluster size to reduce collisions without hurting locality too much.
     public static final int CLUSTER_SIZE = 4;
 
-    // Approx bytes per entry (arrays only, object headers not counted):
-    // key(8) + value(4) + depth(2) + flag(1) + gen(1) + move(4) = 20 bytes
-    private static final int BYTES_PER_ENTRY_APPROX = 20;
+    /** Result of {@link #probe} when the key is not in the table. */
+    public static final long MISS = 0L;
+
+    static final long MOVE_MASK = (1L << 19) - 1;
+    static final int FLAG_SHIFT = 19;
+    static final int GEN_SHIFT = 21;
+    static final int DEPTH_SHIFT = 29;
+    static final int VALUE_SHIFT = 37;
+    static final long GEN_BITS = 0xFFL << GEN_SHIFT;
 
-    private int clusterCount;
+    // Entries sampled by hashfull(), as UCI engines do
+    static final int HASHFULL_SAMPLE = 1000;
 
-    private long[] keys;
-    private int[] values;
-    private short[] depths;
-    private byte[] flags;
-    private int[] moves;
+    // Saved table file: header page, then the table data (page aligned, so it can be mapped)
+    private static final long FILE_MAGIC = 0x5454_4142_4C45_0001L; // "TTABLE", version 1
+    static final int FILE_HEADER_BYTES = 4096;
+    // Block size for reading/writing table files
+    static final int IO_BLOCK = 1 << 20;
 
     /**
      * Generation byte. 0 is reserved to mean "empty slot".
      * We advance the generation each root search so older entries can be replaced.
      */
-    private byte generation = 1;
-    private byte[] gens;
+    protected byte generation = 1;
 
-    public TranspositionTable(int sizeMb) {
-        resizeMB(sizeMb);
-    }
+    // tt.size.mb the table was created with (sizeMB() reports what the layout actually uses)
+    private int requestedMb;
 
-    public int sizeMB() {
-        // Approximate; not exact accounting of JVM overhead.
-        int entries = (keys == null) ? 0 : keys.length;
-        long bytes = (long) entries * (long) BYTES_PER_ENTRY_APPROX;
-        return (int) (bytes / (1024L * 1024L));
-    }
+    // Usage counters, null while switched off
+    TtStats stats;
 
-    public int capacityEntries() {
-        return keys == null ? 0 : keys.length;
+    /** Table of the implementation configured in tt.impl. */
+    public static TranspositionTable create(int sizeMb) {
+        return create(Config.getInstance().getTtImpl(), sizeMb);
     }
 
-    public void resizeMB(int sizeMb) {
-        if (sizeMb <= 0) {
-            // Minimal table (still functional).
-            sizeMb = 1;
-        }
-
-        long sizeBytes = (long) sizeMb * 1024L * 1024L;
-        long entries = sizeBytes / BYTES_PER_ENTRY_APPROX;
-        long clusters = entries / CLUSTER_SIZE;
-        if (clusters < 1) clusters = 1;
+    public static TranspositionTable create(String impl, int sizeMb) {
+        TranspositionTable t = switch (impl) {
+            case "array" -> new ArrayTranspositionTable(sizeMb);
+            case "offheap" -> new OffHeapTranspositionTable(sizeMb);
+            case "lockless" -> new LocklessTranspositionTable(sizeMb);
+            case "compact" -> new CompactTranspositionTable(sizeMb);
+            default -> throw new IllegalArgumentException("Unknown tt.impl: " + impl);
+        };
+        t.requestedMb = sizeMb;
+        if (Config.getInstance().isTtStats()) t.enableStats(true);
+        return t;
+    }
 
-        // Keep the requested size as closely as possible (no power-of-two rounding).
-        int c = (clusters > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) clusters;
-        if (c < 1) c = 1;
+    /** Size requested in {@link #create}, to compare with a newly configured size. */
+    public int requestedMB() {
+        return requestedMb;
+    }
 
-        // Ensure arrays fit into Java's int-indexed arrays.
-        long totalEntriesL = (long) c * (long) CLUSTER_SIZE;
-        if (totalEntriesL > Integer.MAX_VALUE) {
-            c = Integer.MAX_VALUE / CLUSTER_SIZE;
-            totalEntriesL = (long) c * (long) CLUSTER_SIZE;
-        }
+    /** Implementation name as used in tt.impl. */
+    public abstract String impl();
 
-        this.clusterCount = c;
+    public abstract int sizeMB();
 
-        int totalEntries = (int) totalEntriesL;
-        keys = new long[totalEntries];
-        values = new int[totalEntries];
-        depths = new short[totalEntries];
-        flags = new byte[totalEntries];
-        moves = new int[totalEntries];
-        gens = new byte[totalEntries];
+    public abstract int capacityEntries();
 
-        clear();
-    }
+    public abstract void resizeMB(int sizeMb);
 
-    public void clear() {
-        // gens==0 means "empty"; keys can be left as-is.
-        if (gens != null) {
-            Arrays.fill(gens, (byte) 0);
-        }
-        generation = 1;
-    }
+    public abstract void clear();
 
     /** Call once per root search (i.e., once per move). */
     public void newSearch() {
@@ -99,36 +114,106 @@ public final class TranspositionTable {
     }
 
     /**
-     * Probe for a key. Returns the slot index, or -1 on miss.
+     * Probe for a key. Returns the packed entry, or {@link #MISS}.
      * On a hit, refreshes the entry generation to make it "younger".
      */
-    public int probe(long key) {
-        int base = baseIndex(key);
-        for (int i = 0; i < CLUSTER_SIZE; i++) {
-            int idx = base + i;
-            byte g = gens[idx];
-            if (g != 0 && keys[idx] == key) {
-                gens[idx] = generation; // refresh age on use
-                return idx;
-            }
+    public final long probe(long key) {
+        long e = probeEntry(key);
+        TtStats s = stats;
+        if (s != null) {
+            s.probes++;
+            if (e != MISS) s.hits++;
         }
-        return -1;
+        return e;
     }
 
-    public int valueAt(int idx) {
-        return values[idx];
+    abstract long probeEntry(long key);
+
+    public static int value(long entry) {
+        return (int) (entry >> VALUE_SHIFT);
     }
 
-    public int depthAt(int idx) {
-        return depths[idx] & 0xFFFF;
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
     }
 
-    public int flagAt(int idx) {
-        return flags[idx];
+    public static int flag(long entry) {
+        return (int) (entry >>> FLAG_SHIFT) & 3;
     }
 
-    public int moveAt(int idx) {
-        return moves[idx];
+    public static int move(long entry) {
+        return (int) (entry & MOVE_MASK);
+    }
+
+    static int generation(long entry) {
+        return (int) (entry >>> GEN_SHIFT) & 0xFF;
+    }
+
+    /**
+     * Best move of a probed entry as a {@link Move} int for the given position (the position the
+     * entry was probed for). Tables that store moves without flags derive them again here.
+     */
+    public int bestMove(long entry, Bitboards bb) {
+        return move(entry);
+    }
+
+    /**
+     * Table fill in per mille: entries of the current search among the first
+     * {@link #HASHFULL_SAMPLE} slots (the UCI "hashfull" figure).
+     */
+    public int hashfull() {
+        int n = Math.min(HASHFULL_SAMPLE, capacityEntries()), used = 0;
+        for (int i = 0; i < n; i++) {
+            if (slotAge(i) == 0) used++;
+        }
+        return used * 1000 / Math.max(1, n);
+    }
+
+    /**
+     * Entries among the first {@link #HASHFULL_SAMPLE} slots by age (searches since last use),
+     * bucketed as in {@link TtStats#AGE_BUCKETS}: empty, 0, 1, 2, 3, 4-7, 8+.
+     */
+    public int[] ageDistribution() {
+        int[] buckets = new int[TtStats.AGE_BUCKETS.length];
+        int n = Math.min(HASHFULL_SAMPLE, capacityEntries());
+        for (int i = 0; i < n; i++) {
+            int age = slotAge(i);
+            buckets[age < 0 ? 0 : age <= 3 ? age + 1 : age <= 7 ? 5 : 6]++;
+        }
+        return buckets;
+    }
+
+    /** Age of the entry in slot i in searches (0 = used in the current one), -1 if empty. */
+    abstract int slotAge(int slot);
+
+    // --- Statistics ---
+
+    /** Switch the usage counters on (kept if already on) or off. */
+    public void enableStats(boolean on) {
+        stats = on ? (stats != null ? stats : new TtStats()) : null;
+    }
+
+    /** Usage counters, or null if switched off. */
+    public TtStats stats() {
+        return stats;
+    }
+
+    /** Called by the search when a hit ended the node. */
+    public final void countCutoff() {
+        TtStats s = stats;
+        if (s != null) s.cutoffs++;
+    }
+
+    /** Called by the search when the move of a hit is not legal in the probed position. */
+    public final void countCollision() {
+        TtStats s = stats;
+        if (s != null) s.collisions++;
+    }
+
+    // Implementations call this when a store replaces the entry of another key
+    final void countOverwrite(int victimDepth) {
+        TtStats s = stats;
+        if (s != null) s.overwrite(victimDepth);
     }
 
     /**
@@ -139,114 +224,143 @@ public final class TranspositionTable {
      * - Else replace an empty slot if available.
      * - Else replace the entry with the lowest (depth - 8*age) score.
      */
-    public void store(long key, int depth, int flag, int value, int bestMoveCode) {
-        int base = baseIndex(key);
-
-        // 1) Update if key already present
-        for (int i = 0; i < CLUSTER_SIZE; i++) {
-            int idx = base + i;
-            if (gens[idx] != 0 && keys[idx] == key) {
-                // Refresh
-                gens[idx] = generation;
-
-                int oldDepth = depths[idx] & 0xFFFF;
-                int oldFlag = flags[idx];
-
-                // Keep deeper info unless the new info is exact.
-                // This is deliberately simple; top engines use slightly more nuanced rules.
-                if (depth >= oldDepth || flag == 0 /* EXACT */) {
-                    values[idx] = value;
-                    depths[idx] = (short) depth;
-                    flags[idx] = (byte) flag;
-                } else {
-                    // If we don't overwrite value/depth, still allow EXACT to upgrade bounds.
-                    if (oldFlag != 0 && flag == 0) {
-                        values[idx] = value;
-                        depths[idx] = (short) depth;
-                        flags[idx] = (byte) flag;
-                    }
-                }
+    public final void store(long key, int depth, int flag, int value, int bestMoveCode) {
+        TtStats s = stats;
+        if (s != null) s.stores++;
+        storeEntry(key, depth, flag, value, bestMoveCode);
+    }
 
-                if (bestMoveCode != 0) {
-                    moves[idx] = bestMoveCode;
-                }
-                return;
-            }
+    abstract void storeEntry(long key, int depth, int flag, int value, int bestMoveCode);
+
+    // --- Persistence ---
+
+    /** Write the whole table (entries and generation) to a file, replacing it. */
+    public void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            byte[] name = impl().getBytes(StandardCharsets.US_ASCII);
+            header.putLong(FILE_MAGIC).putLong(keyFingerprint()).putLong(capacityEntries())
+                    .put(generation).put((byte) name.length).put(name);
+            header.clear();
+            ch.write(header, 0);
+            writeData(ch, FILE_HEADER_BYTES);
         }
-
-        // 2) Use an empty slot if available
-        for (int i = 0; i < CLUSTER_SIZE; i++) {
-            int idx = base + i;
-            if (gens[idx] == 0) {
-                keys[idx] = key;
-                values[idx] = value;
-                depths[idx] = (short) depth;
-                flags[idx] = (byte) flag;
-                moves[idx] = bestMoveCode;
-                gens[idx] = generation;
-                return;
-            }
+        try {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
         }
+    }
 
-        // 3) Choose a victim by lowest (depth - 8*age)
-        int victim = base;
-        int worstScore = Integer.MAX_VALUE;
-        int gNow = generation & 0xFF;
-        for (int i = 0; i < CLUSTER_SIZE; i++) {
-            int idx = base + i;
-            int d = depths[idx] & 0xFFFF;
-            int age = (gNow - (gens[idx] & 0xFF)) & 0xFF;
-            int score = d - (age * 8);
-            if (score < worstScore) {
-                worstScore = score;
-                victim = idx;
+    /**
+     * Read a table saved with {@link #save}. Returns false (table unchanged) if the file was
+     * written by another implementation, at another size or with other Zobrist keys.
+     */
+    public boolean load(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            while (header.hasRemaining() && ch.read(header, header.position()) > 0) { }
+            header.flip();
+            if (header.remaining() < FILE_HEADER_BYTES || header.getLong() != FILE_MAGIC
+                    || header.getLong() != keyFingerprint() || header.getLong() != capacityEntries()) {
+                return false;
             }
+            byte gen = header.get();
+            byte[] name = new byte[header.get()];
+            header.get(name);
+            if (!impl().equals(new String(name, StandardCharsets.US_ASCII))
+                    || ch.size() < FILE_HEADER_BYTES + dataBytes()) {
+                return false;
+            }
+            readData(ch, FILE_HEADER_BYTES);
+            generation = gen;
+            return true;
         }
-
-        keys[victim] = key;
-        values[victim] = value;
-        depths[victim] = (short) depth;
-        flags[victim] = (byte) flag;
-        moves[victim] = bestMoveCode;
-        gens[victim] = generation;
     }
 
-    private int baseIndex(long key) {
-        // Mix to avoid relying only on low bits (though Zobrist keys are already well-distributed).
-        // Map a 32-bit hash to [0, clusterCount) using a multiply-high technique (fast, no modulo).
-        int h = (int) (key ^ (key >>> 32));
-        long uh = Integer.toUnsignedLong(h);
-        int cluster = (int) ((uh * (long) clusterCount) >>> 32);
-        return cluster * CLUSTER_SIZE;
-    }
+    /** Size of the table data in a saved file. */
+    abstract long dataBytes();
 
-    // --- Move encoding helpers ---
+    abstract void writeData(FileChannel ch, long pos) throws IOException;
+
+    abstract void readData(FileChannel ch, long pos) throws IOException;
+
+    // Saved keys are only meaningful with the same Zobrist keys
+    private static long keyFingerprint() {
+        Zobrist.ensureInitialized();
+        return Zobrist.sideToMoveKey ^ Zobrist.pieceSquareKeys[11][63] ^ Zobrist.castleKeys[0];
+    }
 
     /**
-     * Encodes a move as: from(6) | to(6)<<6 | promo(3)<<12
-     * promo: 0=none, 1=q,2=r,3=b,4=n
+     * Copy a primitive array to (write) or from (read) the file at pos in large sequential
+     * blocks; returns the position after it.
      */
-    public static int encodeMove(Zug z) {
-        if (z == null) return 0;
-        int from = z.startY * 8 + z.startX;
-        int to = z.endY * 8 + z.endX;
-        int promo = switch (z.promoteTo) {
-            case 'q' -> 1;
-            case 'r' -> 2;
-            case 'b' -> 3;
-            case 'n' -> 4;
-            default -> 0;
+    static long transfer(FileChannel ch, long pos, Object array, boolean write) throws IOException {
+        int elemBytes = switch (array) {
+            case long[] a -> 8;
+            case int[] a -> 4;
+            case short[] a -> 2;
+            case byte[] a -> 1;
+            default -> throw new IllegalArgumentException("not a primitive array: " + array);
         };
-        return (from & 63) | ((to & 63) << 6) | ((promo & 7) << 12);
+        int length = java.lang.reflect.Array.getLength(array);
+        ByteBuffer buf = ByteBuffer.allocateDirect(IO_BLOCK).order(ByteOrder.nativeOrder());
+        int perBlock = IO_BLOCK / elemBytes;
+        for (int off = 0; off < length; off += perBlock) {
+            int n = Math.min(perBlock, length - off);
+            buf.clear().limit(n * elemBytes);
+            if (write) {
+                switch (array) {
+                    case long[] a -> buf.asLongBuffer().put(a, off, n);
+                    case int[] a -> buf.asIntBuffer().put(a, off, n);
+                    case short[] a -> buf.asShortBuffer().put(a, off, n);
+                    case byte[] a -> buf.put(0, a, off, n);
+                    default -> { }
+                }
+                while (buf.hasRemaining()) pos += ch.write(buf, pos);
+            } else {
+                while (buf.hasRemaining()) {
+                    int r = ch.read(buf, pos);
+                    if (r < 0) throw new EOFException("truncated TT file");
+                    pos += r;
+                }
+                buf.flip();
+                switch (array) {
+                    case long[] a -> buf.asLongBuffer().get(a, off, n);
+                    case int[] a -> buf.asIntBuffer().get(a, off, n);
+                    case short[] a -> buf.asShortBuffer().get(a, off, n);
+                    case byte[] a -> buf.get(0, a, off, n);
+                    default -> { }
+                }
+            }
+        }
+        return pos;
     }
 
-    public static char promoCharFromCode(int promo) {
-        return switch (promo) {
-            case 1 -> 'q';
-            case 2 -> 'r';
-            case 3 -> 'b';
-            case 4 -> 'n';
-            default -> 0;
-        };
+    /** Packed entry of the current generation; depth is clamped to 0..255. */
+    final long pack(int value, int depth, int flag, int move) {
+        int d = Math.max(0, Math.min(255, depth));
+        return (long) value << VALUE_SHIFT
+                | (long) d << DEPTH_SHIFT
+                | (long) (generation & 0xFF) << GEN_SHIFT
+                | (long) (flag & 3) << FLAG_SHIFT
+                | (move & MOVE_MASK);
+    }
+
+    /** The same entry, refreshed to the current generation. */
+    final long withGeneration(long entry) {
+        return entry & ~GEN_BITS | (long) (generation & 0xFF) << GEN_SHIFT;
+    }
+
+    /**
+     * Cluster of a key in [0, clusterCount). Folds the key to 32 bits (Zobrist keys are already
+     * well-distributed) and maps it with a multiply-high instead of a modulo. All implementations
+     * use the same mapping, so they search identical trees at equal cluster counts.
+     */
+    static long clusterOf(long key, long clusterCount) {
+        long uh = Integer.toUnsignedLong((int) (key ^ (key >>> 32)));
+        return (uh * clusterCount) >>> 32;
     }
 }
@@ -0,0 +1,97 @@
+import java.util.Random;
+
+/**
+ * Compares the transposition table implementations (tt.impl) at the same size.
+ *
+ * For each implementation:
+ *  - random-access probe latency on a table far larger than the CPU caches: the table is filled
+ *    with random keys, then random keys (half of them stored) are probed
+ *  - fixed-depth searches of the bench positions with a fresh engine on that table: nodes, NPS
+ *    and the table statistics (counted in a second, identical run so counting does not skew NPS)
+ * Both implementations map keys to clusters the same way, so equal node counts also show that
+ * they store and return the same entries.
+ *
+ * Usage:
+ *   java -cp out TtBench [depth] [sizeMb] [impl...]
+ */
+public final class TtBench {
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        int sizeMb = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        String[] impls = {"array", "offheap", "lockless", "compact"};
+        if (args.length > 2) {
+            impls = new String[args.length - 2];
+            System.arraycopy(args, 2, impls, 0, impls.length);
+        }
+
+        Zobrist.initZobrist();
+        try { Nnue.tryAutoLoad(); } catch (Throwable ignored) {}
+
+        // JIT warm-up of every implementation on a small table, so the first one is not penalised
+        for (String impl : impls) {
+            TranspositionTable tt = TranspositionTable.create(impl, 16);
+            probeLatency(tt, false);
+            for (String fen : BenchPositions.FENS) search(tt, fen, Math.max(1, depth - 1));
+        }
+
+        System.out.println("=== TT bench: " + sizeMb + " MB, search depth " + depth + " ===");
+        for (String impl : impls) {
+            TranspositionTable tt = TranspositionTable.create(impl, sizeMb);
+            System.out.printf("%-8s capacity=%d entries (%d MB)%n", impl, tt.capacityEntries(), tt.sizeMB());
+            probeLatency(tt, true);
+
+            long nodes = 0, ns = 0;
+            for (String fen : BenchPositions.FENS) {
+                Engine e = search(tt, fen, 0);
+                long t0 = System.nanoTime();
+                e.searchDepth(depth);
+                ns += System.nanoTime() - t0;
+                nodes += e.getNodeCounter();
+            }
+
+            tt.enableStats(true);
+            for (String fen : BenchPositions.FENS) search(tt, fen, depth);
+            System.out.printf("         search: nodes=%d  NPS=%d%n", nodes, nodes * 1_000_000_000L / Math.max(1, ns));
+            System.out.println("         " + tt.stats().format(tt));
+            tt.enableStats(false);
+            tt.resizeMB(1); // release the memory before the next implementation
+        }
+    }
+
+    // Fresh single-threaded engine on a cleared table; searches to 'depth' unless it is 0
+    private static Engine search(TranspositionTable tt, String fen, int depth) {
+        Engine e = BenchPositions.engine(tt, fen);
+        tt.clear();
+        e.resetNodeCounter();
+        if (depth > 0) e.searchDepth(depth);
+        return e;
+    }
+
+    private static void probeLatency(TranspositionTable tt, boolean print) {
+        Random rnd = new Random(7);
+        int n = tt.capacityEntries();
+        long[] keys = new long[1 << 20];
+        for (int i = 0; i < keys.length; i++) keys[i] = rnd.nextLong();
+        tt.clear();
+        for (int i = 0; i < n; i++) tt.store(rnd.nextLong(), i & 31, 0, i, 0);
+        for (int i = 0; i < keys.length; i += 2) tt.store(keys[i], 10, 0, i, Move.of(12, 28));
+
+        for (int round = 0; round < 3; round++) {
+            long sink = 0;
+            int hits = 0;
+            long t0 = System.nanoTime();
+            for (long key : keys) {
+                long e = tt.probe(key);
+                if (e != TranspositionTable.MISS) {
+                    hits++;
+                    sink += TranspositionTable.value(e) + TranspositionTable.depth(e) + TranspositionTable.move(e);
+                }
+            }
+            long t1 = System.nanoTime();
+            if (print) {
+                System.out.printf("         probe: %.1f ns  hits=%.1f%%  (%d)%n", (t1 - t0) / (double) keys.length,
+                        100.0 * hits / keys.length, sink & 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures what a saved transposition table is worth for repeated analysis.
+ *
+ *  1. cold:    analyse the bench positions to a fixed depth on an empty table
+ *  2. save:    write the table to a file
+ *  3. restart: new table of the same implementation and size, restored from the file
+ *  4. warm:    analyse the same positions again on the restored table
+ * The speed-up is cold time / (restore time + warm time), per implementation (tt.impl).
+ *
+ * Usage:
+ *   java -cp out TtPersistBench [depth] [sizeMb] [impl...]
+ */
+public final class TtPersistBench {
+    public static void main(String[] args) throws Exception {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int sizeMb = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        String[] impls = {"array", "offheap", "lockless", "compact"};
+        if (args.length > 2) {
+            impls = new String[args.length - 2];
+            System.arraycopy(args, 2, impls, 0, impls.length);
+        }
+
+        Zobrist.initZobrist();
+        try { Nnue.tryAutoLoad(); } catch (Throwable ignored) {}
+
+        // JIT warm-up
+        TranspositionTable warm = TranspositionTable.create(impls[0], sizeMb);
+        analyse(warm, Math.max(1, depth - 2));
+
+        Path file = Files.createTempFile("tt", ".bin");
+        System.out.println("=== TT persistence bench: " + sizeMb + " MB, depth " + depth + " ===");
+        try {
+            for (String impl : impls) {
+                TranspositionTable tt = TranspositionTable.create(impl, sizeMb);
+                long t0 = System.nanoTime();
+                long coldNodes = analyse(tt, depth);
+                long t1 = System.nanoTime();
+                tt.save(file);
+                long t2 = System.nanoTime();
+
+                TranspositionTable restored = TranspositionTable.create(impl, sizeMb);
+                long t3 = System.nanoTime();
+                if (!restored.load(file)) throw new IllegalStateException("saved table not accepted: " + impl);
+                long t4 = System.nanoTime();
+                long warmNodes = analyse(restored, depth);
+                long t5 = System.nanoTime();
+
+                long coldMs = (t1 - t0) / 1_000_000L, saveMs = (t2 - t1) / 1_000_000L;
+                long loadMs = (t4 - t3) / 1_000_000L, warmMs = (t5 - t4) / 1_000_000L;
+                System.out.printf("%-8s cold=%d ms (%d nodes)  save=%d ms  restore=%d ms  warm=%d ms (%d nodes)  speed-up=%.1fx%n",
+                        impl, coldMs, coldNodes, saveMs, loadMs, warmMs, warmNodes,
+                        coldMs / (double) Math.max(1, loadMs + warmMs));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Fixed-depth analysis of all bench positions on one table, like an analysis session
+    private static long analyse(TranspositionTable tt, int depth) {
+        long nodes = 0;
+        for (String fen : BenchPositions.FENS) {
+            Engine e = BenchPositions.engine(tt, fen);
+            e.resetNodeCounter();
+            e.searchDepth(depth);
+            nodes += e.getNodeCounter();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * First-move latency with a large transposition table.
+ *
+ *  small:      search on a 16 MB table (reference)
+ *  blocking:   allocate the large table, then search (what a plain resize costs the first move)
+ *  background: request the large table with Engine.resizeTt and search at once; the search runs
+ *              on the old table while the new one is built, later searches use the new one
+ * Each line reports the time until the first search returned and, for background, when the
+ * large table was ready and the time of a second search on it.
+ *
+ * Usage (heap/direct memory must hold the table):
+ *   java -Xmx5g -XX:MaxDirectMemorySize=5g -cp out TtResizeBench [sizeMb] [depth] [impl]
+ */
+public final class TtResizeBench {
+    private static final int SMALL_MB = 16;
+
+    public static void main(String[] args) throws Exception {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 1024;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        String impl = args.length > 2 ? args[2] : Config.getInstance().getTtImpl();
+
+        Zobrist.initZobrist();
+        try { Nnue.tryAutoLoad(); } catch (Throwable ignored) {}
+
+        // JIT warm-up
+        Engine warm = engine(TranspositionTable.create(impl, SMALL_MB));
+        warm.searchDepth(depth);
+        warm = null;
+
+        System.out.println("=== TT resize bench: " + impl + " " + sizeMb + " MB, depth " + depth + " ===");
+
+        long t0 = System.nanoTime();
+        Engine small = engine(TranspositionTable.create(impl, SMALL_MB));
+        small.searchDepth(depth);
+        System.out.printf("small       first move %5d ms%n", (System.nanoTime() - t0) / 1_000_000L);
+        small = null;
+        System.gc();
+
+        t0 = System.nanoTime();
+        Engine blocking = engine(TranspositionTable.create(impl, sizeMb));
+        blocking.searchDepth(depth);
+        System.out.printf("blocking    first move %5d ms%n", (System.nanoTime() - t0) / 1_000_000L);
+        blocking = null;
+        System.gc();
+
+        Engine background = engine(TranspositionTable.create(impl, SMALL_MB));
+        t0 = System.nanoTime();
+        var ready = background.resizeTt(impl, sizeMb);
+        background.searchDepth(depth);
+        long firstMs = (System.nanoTime() - t0) / 1_000_000L;
+        ready.join();
+        long readyMs = (System.nanoTime() - t0) / 1_000_000L;
+        long t1 = System.nanoTime();
+        background.searchDepth(depth);
+        System.out.printf("background  first move %5d ms  (table ready after %d ms, next move %d ms on %d MB)%n",
+                firstMs, readyMs, (System.nanoTime() - t1) / 1_000_000L, background.tt().sizeMB());
+    }
+
+    private static Engine engine(TranspositionTable tt) {
+        Engine e = new Engine(tt);
+        e.setThreads(1);
+        e.setStartPosition();
+        return e;
+    }
+}
@@ -0,0 +1,65 @@
+import java.util.ArrayList;
+
+/**
+ * Transposition table fill and hit rate over a long self-play game at fixed memory.
+ *
+ * For each implementation (tt.impl) an engine plays a game against itself from the start
+ * position, every move searched to a fixed depth on the same small table. The table is not
+ * cleared between moves, so it fills up and older entries have to be replaced, as in a real
+ * game. Reports every 10 plies the hashfull figure and at the end nodes, time and the table
+ * statistics ({@link TtStats}). The first implementation chooses the moves and the others replay that game, so all
+ * search the same positions: at a fixed depth, fewer nodes mean the table kept more useful
+ * positions.
+ *
+ * Usage:
+ *   java -cp out TtSelfPlayBench [sizeMb] [plies] [depth] [impl...]
+ */
+public final class TtSelfPlayBench {
+    public static void main(String[] args) {
+        int sizeMb = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 7;
+        String[] impls = {"array", "compact"};
+        if (args.length > 3) {
+            impls = new String[args.length - 3];
+            System.arraycopy(args, 3, impls, 0, impls.length);
+        }
+
+        Zobrist.initZobrist();
+        try { Nnue.tryAutoLoad(); } catch (Throwable ignored) {}
+
+        ArrayList<Zug> game = new ArrayList<>();
+        System.out.println("=== TT self-play bench: " + sizeMb + " MB, " + plies + " plies at depth " + depth + " ===");
+        for (String impl : impls) {
+            TranspositionTable tt = TranspositionTable.create(impl, sizeMb);
+            tt.enableStats(true);
+            Engine e = new Engine(tt);
+            e.setThreads(1);
+            e.newGame();
+
+            long nodes = 0;
+            long start = System.nanoTime();
+            StringBuilder fill = new StringBuilder();
+            int played = 0;
+            for (int ply = 1; ply <= plies; ply++) {
+                e.resetNodeCounter();
+                Zug best = e.searchDepth(depth);
+                nodes += e.getNodeCounter();
+                if (ply <= game.size()) {
+                    best = game.get(ply - 1);
+                } else if (best != null) {
+                    game.add(best);
+                }
+                if (best == null) break;
+                e.makeMove(best);
+                played = ply;
+                if (ply % 10 == 0) fill.append(' ').append(ply).append(':').append(tt.hashfull());
+            }
+            long ms = (System.nanoTime() - start) / 1_000_000L;
+
+            System.out.printf("%-8s capacity=%d entries  plies=%d  nodes=%d  time=%d ms  hashfull(ply:permille)%s%n",
+                    impl, tt.capacityEntries(), played, nodes, ms, fill);
+            System.out.println("         " + tt.stats().format(tt));
+        }
+    }
+}
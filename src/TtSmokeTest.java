@@ -18,9 +18,8 @@ public final class TtSmokeTest {
         // Touch TT so we can print configured size/capacity
         int configuredMb = Config.getInstance().getTtSizeMB();
         System.out.println("TT configured MB: " + configuredMb);
-        System.out.println("TT capacity entries: " + MoveFinder.tt.capacityEntries());
+        System.out.println("TT capacity entries: " + MoveFinder.tt().capacityEntries());
 
-        long hash = Zobrist.computeHash(Board.bitboards, true);
         boolean whiteToMove = true;
 
         // Play a few plies with short time limits
@@ -28,7 +27,7 @@ public final class TtSmokeTest {
         long thinkMs = 80;
 
         for (int ply = 1; ply <= plies; ply++) {
-            Zug best = MoveFinder.iterativeDeepening(whiteToMove, hash, thinkMs);
+            Zug best = MoveFinder.iterativeDeepening(whiteToMove, thinkMs);
             if (best == null) {
                 System.out.println("No move found at ply " + ply + " (game over?)");
                 break;
@@ -37,7 +36,11 @@ public final class TtSmokeTest {
             System.out.println("ply " + ply + " " + (whiteToMove ? "w" : "b") + " plays " + best.processZug());
 
             MoveInfo info = MoveFinder.saveMoveInfo(best);
-            hash = MoveFinder.doMoveUpdateHash(best, info, hash);
+            long hash = MoveFinder.doMoveUpdateHash(best, info);
+            // The board's incremental key must survive a whole search (make/unmake, null moves)
+            if (hash != Zobrist.computeHash(Board.bitboards, !whiteToMove)) {
+                throw new IllegalStateException("board key out of sync after ply " + ply);
+            }
 
             whiteToMove = !whiteToMove;
             Board.whiteToMove = whiteToMove;
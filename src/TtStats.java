@@ -0,0 +1,60 @@
+/**
+ * Usage counters of a transposition table, to size tt.size.mb from data.
+ *
+ * Off by default (tt.stats / TT_STATS, or {@link TranspositionTable#enableStats}); when off the
+ * table only pays a null check per probe and store. The counters are plain longs: exact with one
+ * search thread, a slight undercount with Lazy SMP helpers (concurrent increments can be lost).
+ *
+ *  probes/hits   every probe, and the ones that found their key
+ *  cutoffs       hits deep enough and with a bound that ended the node (counted by the search)
+ *  collisions    hits whose move is not legal in the probed position: the entry belongs to another
+ *                position (partial key check, Zobrist collision or torn entry)
+ *  stores        every store, and overwrites of another key's entry by depth of the lost entry
+ * The age distribution of the entries is sampled from the table when printing, see {@link #format}.
+ */
+public final class TtStats {
+
+    // Depth buckets of overwritten entries: 0 (qsearch), 1-3, 4-7, 8-11, 12+
+    static final String[] DEPTH_BUCKETS = {"0", "1-3", "4-7", "8-11", "12+"};
+    // Age buckets (searches since the entry was last used), plus empty slots
+    static final String[] AGE_BUCKETS = {"empty", "0", "1", "2", "3", "4-7", "8+"};
+
+    long probes, hits, cutoffs, collisions, stores;
+    final long[] overwrites = new long[DEPTH_BUCKETS.length];
+
+    void overwrite(int victimDepth) {
+        int b = victimDepth <= 0 ? 0 : victimDepth <= 3 ? 1 : victimDepth <= 7 ? 2 : victimDepth <= 11 ? 3 : 4;
+        overwrites[b]++;
+    }
+
+    public void reset() {
+        probes = hits = cutoffs = collisions = stores = 0;
+        java.util.Arrays.fill(overwrites, 0);
+    }
+
+    public long probes() { return probes; }
+    public long hits() { return hits; }
+
+    public double hitRate() {
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    /** One line with all counters and the sampled age distribution of the table. */
+    public String format(TranspositionTable tt) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("probes %d hits %d (%.1f%%) cutoffs %d (%.1f%% of hits) collisions %d stores %d",
+                probes, hits, 100.0 * hitRate(), cutoffs, 100.0 * cutoffs / Math.max(1, hits), collisions, stores));
+        long overwritten = 0;
+        for (long n : overwrites) overwritten += n;
+        sb.append(" overwrites ").append(overwritten);
+        for (int i = 0; i < overwrites.length; i++) {
+            sb.append(i == 0 ? " [d" : " d").append(DEPTH_BUCKETS[i]).append(':').append(overwrites[i]);
+        }
+        sb.append("] age");
+        int[] ages = tt.ageDistribution();
+        for (int i = 0; i < ages.length; i++) {
+            sb.append(i == 0 ? " [" : " ").append(AGE_BUCKETS[i]).append(':').append(ages[i]);
+        }
+        return sb.append("] hashfull ").append(tt.hashfull()).toString();
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency stress test for the transposition tables.
+ *
+ * Many threads store and probe keys from a pool much larger than a tiny table, so the same
+ * clusters are overwritten all the time. Value and move of every store are derived from key and depth, so a
+ * reader can tell from a hit alone whether its parts come from one store of that key. For the
+ * lockless table any mismatch is a failure; the other implementations are only reported (array
+ * and offheap may show torn entries, more so with real cores than time slices; compact entries
+ * are never torn but its 16-bit key check lets other keys of the cluster match now and then).
+ *
+ * Usage:
+ *   java -cp out TtStressTest [threads] [seconds] [impl...]
+ */
+public final class TtStressTest {
+    private static final int KEY_POOL = 1 << 18;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        String[] impls = {"lockless", "array", "offheap", "compact"};
+        if (args.length > 2) {
+            impls = new String[args.length - 2];
+            System.arraycopy(args, 2, impls, 0, impls.length);
+        }
+
+        long[] keys = new long[KEY_POOL];
+        Random rnd = new Random(99);
+        for (int i = 0; i < keys.length; i++) keys[i] = rnd.nextLong();
+
+        boolean failed = false;
+        for (String impl : impls) {
+            // 1 MB: far fewer slots than keys in the pool
+            TranspositionTable tt = TranspositionTable.create(impl, 1);
+            AtomicLong probes = new AtomicLong(), hits = new AtomicLong(), torn = new AtomicLong();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+            Thread[] workers = new Thread[threads];
+            for (int w = 0; w < threads; w++) {
+                int seed = w;
+                workers[w] = new Thread(() -> hammer(tt, keys, seed, deadline, probes, hits, torn));
+                workers[w].start();
+            }
+            // The main thread ages the table like root searches do
+            while (System.nanoTime() < deadline) {
+                tt.newSearch();
+                Thread.sleep(5);
+            }
+            for (Thread t : workers) t.join();
+
+            System.out.printf("%-8s threads=%d probes=%d hits=%d inconsistent=%d%n",
+                    impl, threads, probes.get(), hits.get(), torn.get());
+            if (impl.equals("lockless") && torn.get() != 0) failed = true;
+        }
+        if (failed) {
+            System.err.println("FAIL: lockless table returned inconsistent entries");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private static void hammer(TranspositionTable tt, long[] keys, int seed, long deadline,
+                               AtomicLong probes, AtomicLong hits, AtomicLong torn) {
+        Random rnd = new Random(seed);
+        long p = 0, h = 0, bad = 0;
+        while (true) {
+            for (int i = 0; i < 4096; i++) {
+                long key = keys[rnd.nextInt(keys.length)];
+                if (rnd.nextBoolean()) {
+                    int depth = rnd.nextInt(64);
+                    tt.store(key, depth, depth % 3, expectedValue(key, depth), expectedMove(key));
+                } else {
+                    p++;
+                    long e = tt.probe(key);
+                    if (e == TranspositionTable.MISS) continue;
+                    h++;
+                    int depth = TranspositionTable.depth(e);
+                    if (TranspositionTable.value(e) != expectedValue(key, depth)
+                            || TranspositionTable.move(e) != expectedMove(key)
+                            || TranspositionTable.flag(e) != depth % 3) {
+                        bad++;
+                    }
+                }
+            }
+            if (System.nanoTime() >= deadline) break;
+        }
+        probes.addAndGet(p);
+        hits.addAndGet(h);
+        torn.addAndGet(bad);
+    }
+
+    private static int expectedValue(long key, int depth) {
+        return (int) (key >>> 40) % 30000 + depth;
+    }
+
+    // Any non-zero move code without flags will do (the compact table keeps only 15 bits)
+    private static int expectedMove(long key) {
+        return (int) (key & 0x7FFF) | 1;
+    }
+}
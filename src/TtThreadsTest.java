@@ -0,0 +1,46 @@
+/**
+ * Lazy SMP must not run on a table that can return torn entries: setThreads(n > 1) on an engine
+ * with its own table and no tt.impl configured switches to the lockless table (same size), and a
+ * later resize (UCI Hash) keeps it lockless. An engine on a shared table keeps that table.
+ *
+ * Usage:
+ *   java -cp out TtThreadsTest
+ */
+public final class TtThreadsTest {
+    public static void main(String[] args) {
+        Config.useTestFile();
+        Zobrist.initZobrist();
+        if (Config.getInstance().isTtImplConfigured()) {
+            System.out.println("tt.impl is configured (" + Config.getInstance().getTtImpl() + "), nothing to test");
+            return;
+        }
+        boolean failed = false;
+
+        Engine own = new Engine(16);
+        own.setStartPosition();
+        own.setThreads(1);
+        own.searchDepth(3);
+        System.out.println("threads 1: " + own.tt().impl() + " " + own.tt().requestedMB() + " MB");
+
+        own.setThreads(4);
+        own.searchDepth(3);
+        System.out.println("threads 4: " + own.tt().impl() + " " + own.tt().requestedMB() + " MB");
+        failed |= !own.tt().impl().equals("lockless") || own.tt().requestedMB() != 16;
+
+        own.resizeTt(8).join();
+        own.searchDepth(3);
+        System.out.println("resize to 8 MB: " + own.tt().impl() + " " + own.tt().requestedMB() + " MB");
+        failed |= !own.tt().impl().equals("lockless") || own.tt().requestedMB() != 8;
+
+        Engine e = new Engine(TranspositionTable.create("array", 16));
+        e.setStartPosition();
+        TranspositionTable shared = e.tt();
+        e.setThreads(4);
+        e.searchDepth(3);
+        System.out.println("shared table, threads 4: " + e.tt().impl());
+        failed |= e.tt() != shared;
+
+        System.out.println(failed ? "FAILED" : "OK: Lazy SMP uses the lockless table");
+        if (failed) System.exit(1);
+    }
+}
@@ -5,7 +5,6 @@ public class UCIWrapper {
 
     static String[] moveList;
     static String moves;
-    public static long startHash;
 
     // UCI time controls (milliseconds)
     private static long wtimeMs = -1;
@@ -17,6 +16,7 @@ public class UCIWrapper {
         // Initial engine state similar to LichessBotStream game start
         Spiel.newGame();
         resetVariables();
+        MoveFinder.enableTtPersistence();
 
         // Attempt to auto-load NNUE if enabled via config/env
         try {
@@ -33,11 +33,16 @@ public class UCIWrapper {
             if (command.equals("uci")) {
                 System.out.println("id name botaccount1234");
                 System.out.println("id author HardBobo, CaroAce");
+                System.out.println("option name Hash type spin default " + Config.getInstance().getTtSizeMB() + " min 1 max 32768");
+                System.out.println("option name Threads type spin default " + MoveFinder.getThreads() + " min 1 max 256");
                 System.out.println("uciok");
             }
             else if (command.equals("isready")) {
                 System.out.println("readyok");
             }
+            else if (command.startsWith("setoption")) {
+                setOption(command);
+            }
             else if (command.startsWith("ucinewgame")) {
                 // Reset full engine state and TT like Lichess game start
                 Spiel.newGame();
@@ -53,7 +58,6 @@ public class UCIWrapper {
                     Board.setupStartPosition();
                     Board.whiteToMove = true;
                     // Do not clear TT here; use ucinewgame for a hard reset
-                    startHash = Zobrist.computeHash(Board.bitboards, true);
                 }
 
                 // load FEN if given
@@ -78,12 +82,12 @@ public class UCIWrapper {
                 if (whiteToMove) {
 
                     long thinkMs = TimeManager.computeThinkTimeMs(wtimeMs, wincMs);
-                    best = MoveFinder.iterativeDeepening(true, startHash, thinkMs);
+                    best = MoveFinder.iterativeDeepening(true, thinkMs);
 
                 } else {
 
                     long thinkMs = TimeManager.computeThinkTimeMs(btimeMs, bincMs);
-                    best = MoveFinder.iterativeDeepening(false, startHash, thinkMs);
+                    best = MoveFinder.iterativeDeepening(false, thinkMs);
 
                 }
 
@@ -94,6 +98,26 @@ public class UCIWrapper {
             }
         }
     }
+    // setoption name <id> value <x>
+    private static void setOption(String command) {
+        int nameIdx = command.indexOf("name ");
+        int valueIdx = command.indexOf(" value ");
+        if (nameIdx < 0 || valueIdx < 0) return;
+        String name = command.substring(nameIdx + 5, valueIdx).trim();
+        String value = command.substring(valueIdx + 7).trim();
+        if (name.equalsIgnoreCase("Threads")) {
+            try {
+                MoveFinder.setThreads(Integer.parseInt(value));
+            } catch (NumberFormatException ignored) {
+            }
+        } else if (name.equalsIgnoreCase("Hash")) {
+            // Built in the background; searches use the old table until the new one is ready
+            try {
+                MoveFinder.resizeTt(Integer.parseInt(value));
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
     private static void resetVariables(){
         Board.whiteToMove = true;
         moves = "";
@@ -112,7 +136,6 @@ public class UCIWrapper {
         } else {
             Board.whiteToMove = true;
         }
-        startHash = Zobrist.computeHash(Board.bitboards, Board.whiteToMove);
     }
     private static void syncGameStateBoard(String command){
         moves = command.substring(command.indexOf("moves") + 6).trim();
@@ -122,7 +145,7 @@ public class UCIWrapper {
         for (int i = 0; i < moveList.length; i++) {
             Zug zug = new Zug(moveList[i]);
             MoveInfo info = MoveFinder.saveMoveInfo(zug);
-            startHash = MoveFinder.doMoveUpdateHash(zug, info, startHash);
+            MoveFinder.doMoveUpdateHash(zug, info);
             Board.whiteToMove = !Board.whiteToMove;
         }
     }
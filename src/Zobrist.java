@@ -5,32 +5,51 @@ public class Zobrist {
     public static long sideToMoveKey;
     public static long[] castleKeys;
     public static long[] enPassantKeys;
-
-    public static void initZobrist() {
+    // XOR of the castle keys for every subset of rights (index = Bitboards.rightsMask() bits),
+    // so a change of rights is one lookup: castleDeltaKeys[maskBefore ^ maskAfter]
+    public static long[] castleDeltaKeys;
+
+    // Keys are derived from a fixed seed, so initializing once is enough. Re-running the
+    // generator while another engine is searching would briefly expose half-filled tables.
+    public static synchronized void initZobrist() {
+        if (pieceSquareKeys != null) return;
         Random random = new Random(239847502); // fester Seed, damit gleiche Zufallszahlen bei jedem Start
-        pieceSquareKeys = new long[12][64];
-        castleKeys = new long[4];
-        enPassantKeys = new long[8];
+        long[][] pieceKeys = new long[12][64];
+        long[] castle = new long[4];
+        long[] enPassant = new long[8];
 
         // Figuren/Felder
         for (int piece = 0; piece < 12; piece++) {
             for (int square = 0; square < 64; square++) {
-                pieceSquareKeys[piece][square] = random.nextLong();
+                pieceKeys[piece][square] = random.nextLong();
             }
         }
 
         // Rochaderechte
         for (int i = 0; i < 4; i++) {
-            castleKeys[i] = random.nextLong();
+            castle[i] = random.nextLong();
         }
 
         // En passant
         for (int i = 0; i < 8; i++) {
-            enPassantKeys[i] = random.nextLong();
+            enPassant[i] = random.nextLong();
+        }
+
+        long[] castleDelta = new long[16];
+        for (int m = 0; m < 16; m++) {
+            for (int i = 0; i < 4; i++) if ((m & (1 << i)) != 0) castleDelta[m] ^= castle[i];
         }
 
         // Seite am Zug
         sideToMoveKey = random.nextLong();
+        castleKeys = castle;
+        castleDeltaKeys = castleDelta;
+        enPassantKeys = enPassant;
+        pieceSquareKeys = pieceKeys; // published last: non-null means fully initialized
+    }
+
+    public static void ensureInitialized() {
+        if (pieceSquareKeys == null) initZobrist();
     }
 
     public static long getPieceSquareKey(int piece, int square) {
@@ -86,78 +105,6 @@ public class Zobrist {
         return hash;
     }
 
-    public static long updateHash(
-            long hash,
-            Zug zug,
-            MoveInfo info,
-            boolean[] castleRightsBefore,
-            boolean[] castleRightsAfter,
-            int enPassantFileBefore,
-            int enPassantFileAfter
-    ) {
-        int fromSq = zug.startY * 8 + zug.startX;
-        int toSq   = zug.endY * 8 + zug.endX;
-
-        int movingIndex = (info.movingPieceWhite ? 0 : 6) + info.movingPieceType;
-
-        if (!info.wasPromotion) {
-            hash ^= getPieceSquareKey(movingIndex, fromSq);
-            hash ^= getPieceSquareKey(movingIndex, toSq);
-        } else {
-            hash ^= getPieceSquareKey(movingIndex, fromSq);
-            int promotionPieceIndex = (info.movingPieceWhite ? 0 : 6) + info.promotionType;
-            hash ^= getPieceSquareKey(promotionPieceIndex, toSq);
-        }
-
-        if (info.rookMoved) {
-            // rook color equals king's color (moving piece)
-            int rookIndex = info.movingPieceWhite ? 3 : 9; // base 0 or 6 + 3 for rook
-            int rToSq = zug.endY * 8 + info.rookEndX;
-            int rFromSq = zug.endY * 8 + info.rookStartX;
-            hash ^=  Zobrist.getPieceSquareKey(rookIndex, rFromSq);
-            hash ^=  Zobrist.getPieceSquareKey(rookIndex, rToSq);
-        }
-
-//        System.out.println("Hash nach Rochade: " + hash);
-
-        // geschlagene Figur (falls vorhanden)
-        if (!info.squareMovedOntoWasEmpty && !info.wasEnPassant) {
-            int capturedIndex = (info.capturedPieceWhite ? 0 : 6) + info.capturedPieceType;
-            hash ^= getPieceSquareKey(capturedIndex, toSq);
-        } else if (info.wasEnPassant) {
-            int capturedIndex = (info.capturedPieceWhite ? 0 : 6) + 0; // pawn
-            int capSq = info.capEnPassantBauerCoords.y * 8 + info.capEnPassantBauerCoords.x;
-            hash ^= getPieceSquareKey(capturedIndex, capSq);
-        }
-
-
-//        System.out.println("Hash nach geschlagener Figur: " + hash);
-
-        // Rochaderechte vor/nach
-        for (int i = 0; i < 4; i++) {
-            if (castleRightsBefore[i] != castleRightsAfter[i]) {
-                hash ^= castleKeys[i];
-            }
-        }
-
-//        System.out.println("Hash nach RochaderechteUpdate Figur: " + hash);
-
-        // En-Passant vor/nach
-        if (enPassantFileBefore != -1)
-            hash ^= enPassantKeys[enPassantFileBefore];
-        if (enPassantFileAfter != -1)
-            hash ^= enPassantKeys[enPassantFileAfter];
-
-//        System.out.println("Hash nach EnPassantUpdate: " + hash);
-
-        // Side to move
-        hash ^= sideToMoveKey;
-
-//        System.out.println("Hash nach SideToMoveKey: " + hash);
-
-        return hash;
-    }
-
     // getPieceIndex(Piece) removed in bitboard-only refactor
 
 